@@ -0,0 +1,68 @@
+package net.scarlettsystems.android.wavefactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Harmonic additive tones rendered in one pass by {@link AdditiveOscillator}, against summing one
+ * {@link WaveFactory#getSineWavePCMFloat} call per partial.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class AdditiveBenchmark
+{
+	private static final float FREQUENCY = 110.0f;
+	private static final float DURATION = 1.0f;
+	private static final int SAMPLE_RATE = 44100;
+	private static final float RAMP = 0.05f;
+
+	@Param({"4", "16", "64"})
+	public int partials;
+
+	private double[] mRatios;
+	private float[] mAmplitudes;
+
+	@Setup
+	public void setup()
+	{
+		mRatios = new double[partials];
+		mAmplitudes = new float[partials];
+		for(int c = 0; c < partials; c++)
+		{
+			mRatios[c] = c + 1;
+			mAmplitudes[c] = 0.5f / (c + 1);
+		}
+	}
+
+	@Benchmark
+	public float[] additive()
+	{
+		return WaveFactory.getAdditiveWavePCMFloat(FREQUENCY, DURATION, SAMPLE_RATE, RAMP, mRatios, mAmplitudes);
+	}
+
+	@Benchmark
+	public float[] sinePerPartial()
+	{
+		float[] output = new float[(int)Math.floor(DURATION * SAMPLE_RATE)];
+		for(int c = 0; c < partials; c++)
+		{
+			float frequency = (float)(mRatios[c] * FREQUENCY);
+			if(frequency >= SAMPLE_RATE / 2f){continue;}
+			float[] partial = WaveFactory.getSineWavePCMFloat(frequency, DURATION, SAMPLE_RATE, RAMP);
+			for(int s = 0; s < output.length; s++)
+			{
+				output[s] += mAmplitudes[c] * partial[s];
+			}
+		}
+		return output;
+	}
+}
@@ -0,0 +1,61 @@
+package net.scarlettsystems.android.wavefactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversions between 16-bit PCM and float in {@link WaveConversion}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class ConversionBenchmark
+{
+	@Param({"0.1", "1.0", "10.0"})
+	public float duration;
+
+	@Param({"22050", "44100", "48000"})
+	public int sampleRate;
+
+	private float[] mFloats;
+	private byte[] mBytes;
+	private ByteBuffer mDirect;
+
+	@Setup
+	public void setup()
+	{
+		mFloats = WaveFactory.getSineWavePCMFloat(440.0f, duration, sampleRate, 0.05f);
+		mBytes = WaveConversion.floatToPcm(mFloats);
+		mDirect = ByteBuffer.allocateDirect(mBytes.length).order(ByteOrder.nativeOrder());
+	}
+
+	@Benchmark
+	public float[] pcmToFloat()
+	{
+		return WaveConversion.pcmToFloat(mBytes);
+	}
+
+	@Benchmark
+	public byte[] floatToPcm()
+	{
+		return WaveConversion.floatToPcm(mFloats);
+	}
+
+	@Benchmark
+	public ByteBuffer floatToPcmDirect()
+	{
+		mDirect.clear();
+		WaveConversion.floatToPcm(mFloats, mDirect);
+		return mDirect;
+	}
+}
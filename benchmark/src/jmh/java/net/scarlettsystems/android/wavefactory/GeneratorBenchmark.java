@@ -0,0 +1,83 @@
+package net.scarlettsystems.android.wavefactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fixed-length generators of {@link WaveFactory}, into new arrays and into a reused direct buffer.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class GeneratorBenchmark
+{
+	private static final float FREQUENCY = 440.0f;
+	private static final float RAMP = 0.05f;
+
+	@Param({"SINE", "SQUARE", "TRIANGULAR", "SAWTOOTH", "SILENCE"})
+	public String waveform;
+
+	@Param({"0.1", "1.0", "10.0"})
+	public float duration;
+
+	@Param({"22050", "44100", "48000"})
+	public int sampleRate;
+
+	private ByteBuffer mDirect;
+
+	@Setup
+	public void setup()
+	{
+		mDirect = ByteBuffer.allocateDirect(2 * (int)Math.floor(duration * sampleRate)).order(ByteOrder.nativeOrder());
+	}
+
+	@Benchmark
+	public float[] pcmFloat()
+	{
+		switch(waveform)
+		{
+			case "SINE": return WaveFactory.getSineWavePCMFloat(FREQUENCY, duration, sampleRate, RAMP);
+			case "SQUARE": return WaveFactory.getSquareWavePCMFloat(FREQUENCY, duration, sampleRate, RAMP);
+			case "TRIANGULAR": return WaveFactory.getTriangularWavePCMFloat(FREQUENCY, duration, sampleRate, RAMP);
+			case "SAWTOOTH": return WaveFactory.getSawtoothWavePCMFloat(FREQUENCY, duration, sampleRate, RAMP);
+			default: return WaveFactory.getSilencePCMFloat(duration, sampleRate);
+		}
+	}
+
+	@Benchmark
+	public byte[] pcm16()
+	{
+		switch(waveform)
+		{
+			case "SINE": return WaveFactory.getSineWavePCM16(FREQUENCY, duration, sampleRate, RAMP);
+			case "SQUARE": return WaveFactory.getSquareWavePCM16(FREQUENCY, duration, sampleRate, RAMP);
+			case "TRIANGULAR": return WaveFactory.getTriangularWavePCM16(FREQUENCY, duration, sampleRate, RAMP);
+			case "SAWTOOTH": return WaveFactory.getSawtoothWavePCM16(FREQUENCY, duration, sampleRate, RAMP);
+			default: return WaveFactory.getSilencePCM16(duration, sampleRate);
+		}
+	}
+
+	@Benchmark
+	public int pcm16Direct()
+	{
+		mDirect.clear();
+		switch(waveform)
+		{
+			case "SINE": return WaveFactory.getSineWavePCM16(FREQUENCY, duration, sampleRate, RAMP, mDirect);
+			case "SQUARE": return WaveFactory.getSquareWavePCM16(FREQUENCY, duration, sampleRate, RAMP, mDirect);
+			case "TRIANGULAR": return WaveFactory.getTriangularWavePCM16(FREQUENCY, duration, sampleRate, RAMP, mDirect);
+			case "SAWTOOTH": return WaveFactory.getSawtoothWavePCM16(FREQUENCY, duration, sampleRate, RAMP, mDirect);
+			default: return WaveFactory.getSilencePCM16(duration, sampleRate, mDirect);
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package net.scarlettsystems.android.wavefactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link WaveConversion#mixWaves} from float arrays and from 16-bit sample buffers. The destination is
+ * mixed into repeatedly; its level does not change the cost of the compression.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class MixBenchmark
+{
+	@Param({"0.1", "1.0", "10.0"})
+	public float duration;
+
+	@Param({"22050", "44100", "48000"})
+	public int sampleRate;
+
+	private float[] mSound;
+	private SampleBuffer mPcm16Sound;
+	private float[] mDestination;
+
+	@Setup
+	public void setup()
+	{
+		mSound = WaveFactory.getSquareWavePCMFloat(440.0f, duration, sampleRate, 0.05f);
+		short[] pcm = new short[mSound.length];
+		ByteBuffer.wrap(WaveConversion.floatToPcm(mSound)).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().get(pcm);
+		mPcm16Sound = SampleBuffer.wrap(pcm);
+		mDestination = WaveFactory.getSineWavePCMFloat(330.0f, duration, sampleRate, 0.05f);
+	}
+
+	@Benchmark
+	public float[] mixFloat()
+	{
+		WaveConversion.mixWaves(mSound, mDestination, 0);
+		return mDestination;
+	}
+
+	@Benchmark
+	public float[] mixPcm16()
+	{
+		WaveConversion.mixWaves(mPcm16Sound, mDestination, 0);
+		return mDestination;
+	}
+}
@@ -0,0 +1,56 @@
+package net.scarlettsystems.android.wavefactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Block rendering by {@link NoiseGenerator} for each colour, against white noise drawn from a
+ * shared {@link Random}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class NoiseBenchmark
+{
+	private static final int SAMPLE_RATE = 44100;
+	private static final int BLOCK_SIZE = 4096;
+	private static final Random SHARED_RANDOM = new Random(1);
+
+	@Param({"0", "1", "2"})
+	public int color;
+
+	private NoiseGenerator mGenerator;
+	private final float[] mBlock = new float[BLOCK_SIZE];
+
+	@Setup
+	public void setup()
+	{
+		mGenerator = new NoiseGenerator(color, SAMPLE_RATE, 1);
+	}
+
+	@Benchmark
+	public float[] generator()
+	{
+		mGenerator.render(mBlock, 0, BLOCK_SIZE);
+		return mBlock;
+	}
+
+	@Benchmark
+	public float[] sharedRandom()
+	{
+		for(int c = 0; c < BLOCK_SIZE; c++)
+		{
+			mBlock[c] = SHARED_RANDOM.nextFloat() * 2 - 1;
+		}
+		return mBlock;
+	}
+}
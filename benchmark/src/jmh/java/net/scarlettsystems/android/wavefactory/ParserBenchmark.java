@@ -0,0 +1,81 @@
+package net.scarlettsystems.android.wavefactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link WaveFileParser} and {@link WaveDecoder} on stereo 16-bit files held in memory, from a
+ * short effect to a minute of music. Each file has a metadata chunk before its sample data, as
+ * written by most editors.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class ParserBenchmark
+{
+	private static final int CHANNELS = 2;
+	private static final int LIST_CHUNK_SIZE = 1024;
+
+	@Param({"0.1", "60.0"})
+	public float duration;
+
+	@Param({"22050", "44100", "48000"})
+	public int sampleRate;
+
+	private byte[] mFile;
+
+	@Setup
+	public void setup()
+	{
+		float[] samples = WaveFactory.getSineWavePCMFloat(440.0f, duration, sampleRate, 0.05f);
+		int dataLength = samples.length * CHANNELS * 2;
+		ByteBuffer file = ByteBuffer.allocate(12 + 24 + 8 + LIST_CHUNK_SIZE + 8 + dataLength).order(ByteOrder.LITTLE_ENDIAN);
+		file.putInt(0x46464952).putInt(file.capacity() - 8).putInt(0x45564157);
+		file.putInt(0x20746D66).putInt(16).putShort((short)WaveFileParser.FMT_PCM).putShort((short)CHANNELS)
+				.putInt(sampleRate).putInt(sampleRate * CHANNELS * 2).putShort((short)(CHANNELS * 2)).putShort((short)16);
+		file.putInt(0x5453494C).putInt(LIST_CHUNK_SIZE).position(file.position() + LIST_CHUNK_SIZE);
+		file.putInt(0x61746164).putInt(dataLength);
+		for(float sample : samples)
+		{
+			short value = (short)(sample * Short.MAX_VALUE);
+			file.putShort(value).putShort(value);
+		}
+		mFile = file.array();
+	}
+
+	@Benchmark
+	public long parseHeader()
+	{
+		return new WaveFileParser(mFile).getDataLength();
+	}
+
+	@Benchmark
+	public long parseStream() throws IOException
+	{
+		return new WaveFileParser(new ByteArrayInputStream(mFile)).getDataLength();
+	}
+
+	@Benchmark
+	public float[] decodeInterleaved() throws IOException
+	{
+		return new WaveDecoder(new ByteArrayInputStream(mFile)).readAll(WaveDecoder.CHANNELS_INTERLEAVED);
+	}
+
+	@Benchmark
+	public float[] decodeMixdown() throws IOException
+	{
+		return new WaveDecoder(new ByteArrayInputStream(mFile)).readAll(WaveDecoder.CHANNELS_MIXDOWN);
+	}
+}
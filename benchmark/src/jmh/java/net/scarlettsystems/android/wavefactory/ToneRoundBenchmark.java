@@ -0,0 +1,65 @@
+package net.scarlettsystems.android.wavefactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loop tone generators of {@link WaveFactory}. The tone cache is disabled, so every call
+ * generates its tone.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class ToneRoundBenchmark
+{
+	//Not a divisor of any tested rate, so the loop search has work to do
+	private static final double FREQUENCY = 441.7;
+	private static final float AMPLITUDE = 0.8f;
+
+	@Param({"SINE", "SQUARE"})
+	public String waveform;
+
+	@Param({"0.1", "1.0", "10.0"})
+	public double duration;
+
+	@Param({"22050", "44100", "48000"})
+	public int sampleRate;
+
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		WaveFactory.setToneCacheCapacity(0);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		WaveFactory.clearToneCache();
+	}
+
+	@Benchmark
+	public float[] pcmFloat()
+	{
+		return waveform.equals("SINE")
+				? WaveFactory.getSineToneRoundPCMFloat(FREQUENCY, duration, sampleRate)
+				: WaveFactory.getSquareToneRoundPCMFloat(FREQUENCY, duration, sampleRate, AMPLITUDE);
+	}
+
+	@Benchmark
+	public byte[] pcm16()
+	{
+		return waveform.equals("SINE")
+				? WaveFactory.getSineToneRoundPCM16(FREQUENCY, duration, sampleRate)
+				: WaveFactory.getSquareToneRoundPCM16(FREQUENCY, duration, sampleRate, AMPLITUDE);
+	}
+}
@@ -0,0 +1,357 @@
+package net.scarlettsystems.android.wavefactory;
+
+import java.util.Arrays;
+
+/**
+ * Additive synthesiser that renders a sum of sine partials in one pass. Each partial has a
+ * frequency ratio to the fundamental, an amplitude and a starting phase.
+ *
+ * Rather than calling {@link Math#sin} for every partial and sample, each partial is a unit
+ * complex number rotated by its phase increment once per sample, which costs a few multiply-adds.
+ * Every partial is resynchronised to its exact fixed-point phase on each multiple of
+ * {@value #RESYNC_INTERVAL} samples, which renormalises the rotation so rounding errors cannot
+ * accumulate, and makes the output independent of how rendering is split into blocks. Partials at
+ * or above the Nyquist frequency are skipped, so they cannot alias.
+ *
+ * Like {@link Oscillator}, phase and envelope position carry over between calls, output is shaped
+ * by an {@link Envelope}, and nothing is allocated while rendering. Partial amplitudes are not
+ * normalised; 16-bit output clamps sums beyond full scale.
+ *
+ * Instances are not thread-safe.
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public class AdditiveOscillator extends BlockGenerator
+{
+	public static final long LENGTH_UNBOUNDED = Envelope.LENGTH_UNBOUNDED;
+
+	static final int RESYNC_INTERVAL = OscillatorEngine.RESYNC_INTERVAL;
+
+	private static final int INITIAL_CAPACITY = 8;
+
+	private final int mSampleRate;
+	private float mFrequency;
+
+	//Partials, in the order they were added
+	private int mPartialCount = 0;
+	private double[] mRatios = new double[INITIAL_CAPACITY];
+	private float[] mAmplitudes = new float[INITIAL_CAPACITY];
+	private long[] mStartPhases = new long[INITIAL_CAPACITY];
+	private long[] mPhases = new long[INITIAL_CAPACITY];
+	private long[] mIncrements = new long[INITIAL_CAPACITY];
+	private double[] mStepCos = new double[INITIAL_CAPACITY];
+	private double[] mStepSin = new double[INITIAL_CAPACITY];
+	//Rotation state of each partial, i.e. the sine and cosine of its current phase
+	private double[] mSin = new double[INITIAL_CAPACITY];
+	private double[] mCos = new double[INITIAL_CAPACITY];
+	//Indices of the partials below Nyquist at the current frequency
+	private int[] mAudible = new int[INITIAL_CAPACITY];
+	private int mAudibleCount = 0;
+
+	/**
+	 * Create an additive oscillator with no partials. The tone is unbounded and has no ramp until
+	 * configured otherwise.
+	 *
+	 * @param frequency fundamental frequency in Hz
+	 * @param sampleRate sample rate in Hz
+	 */
+	public AdditiveOscillator(float frequency, int sampleRate)
+	{
+		if(sampleRate <= 0)
+		{
+			throw new IllegalArgumentException("Sampling rate must be greater than zero.");
+		}
+		mSampleRate = sampleRate;
+		setFrequency(frequency);
+	}
+
+	/**
+	 * Create an additive oscillator with a set of partials.
+	 *
+	 * @param frequency fundamental frequency in Hz
+	 * @param sampleRate sample rate in Hz
+	 * @param ratios frequency of each partial as a multiple of the fundamental
+	 * @param amplitudes amplitude of each partial
+	 * @param phases starting phase of each partial in cycles, or null to start every partial at 0
+	 */
+	public AdditiveOscillator(float frequency, int sampleRate, double[] ratios, float[] amplitudes, double[] phases)
+	{
+		this(frequency, sampleRate);
+		if(ratios.length != amplitudes.length || (phases != null && phases.length != ratios.length))
+		{
+			throw new IllegalArgumentException("Every partial needs a ratio, an amplitude and a phase.");
+		}
+		for(int c = 0; c < ratios.length; c++)
+		{
+			addPartial(ratios[c], amplitudes[c], phases == null ? 0 : phases[c]);
+		}
+	}
+
+	/**
+	 * Add a partial. It starts at its phase from the last {@link #reset()}, as if it had been
+	 * there from the beginning.
+	 *
+	 * @param ratio frequency as a multiple of the fundamental, e.g. 2 for the second harmonic
+	 * @param amplitude amplitude of the partial
+	 * @param phase starting phase in cycles, e.g. 0.25 to start at the peak
+	 */
+	public void addPartial(double ratio, float amplitude, double phase)
+	{
+		if(!(ratio > 0) || Double.isInfinite(ratio))
+		{
+			throw new IllegalArgumentException("Frequency ratio must be greater than zero.");
+		}
+		if(mPartialCount == mRatios.length)
+		{
+			grow();
+		}
+		int index = mPartialCount++;
+		mRatios[index] = ratio;
+		mAmplitudes[index] = amplitude;
+		mStartPhases[index] = OscillatorEngine.toPhase(phase);
+		updatePartial(index);
+		mPhases[index] = mStartPhases[index] + getPosition() * mIncrements[index];
+		resync(index);
+		updateAudible();
+	}
+
+	/**
+	 * Change the amplitude of a partial from the next sample on.
+	 *
+	 * @param index index of the partial, in the order they were added
+	 * @param amplitude amplitude of the partial
+	 */
+	public void setPartialAmplitude(int index, float amplitude)
+	{
+		checkPartial(index);
+		mAmplitudes[index] = amplitude;
+	}
+
+	public float getPartialAmplitude(int index)
+	{
+		checkPartial(index);
+		return mAmplitudes[index];
+	}
+
+	public double getPartialRatio(int index)
+	{
+		checkPartial(index);
+		return mRatios[index];
+	}
+
+	/**
+	 * Remove every partial.
+	 */
+	public void clearPartials()
+	{
+		mPartialCount = 0;
+		mAudibleCount = 0;
+	}
+
+	public int getPartialCount()
+	{
+		return mPartialCount;
+	}
+
+	/**
+	 * @return number of partials below the Nyquist frequency, which are the ones rendered
+	 */
+	public int getAudiblePartialCount()
+	{
+		return mAudibleCount;
+	}
+
+	/**
+	 * Change the fundamental frequency. Every partial keeps its phase, so the change takes effect
+	 * without a discontinuity. Partials that move past the Nyquist frequency fall silent.
+	 *
+	 * @param frequency fundamental frequency in Hz
+	 */
+	public void setFrequency(float frequency)
+	{
+		if(frequency <= 0)
+		{
+			throw new IllegalArgumentException("Frequency must be greater than zero.");
+		}
+		mFrequency = frequency;
+		for(int c = 0; c < mPartialCount; c++)
+		{
+			updatePartial(c);
+			//Partials that were above Nyquist have not been rotating
+			resync(c);
+		}
+		updateAudible();
+	}
+
+	public float getFrequency()
+	{
+		return mFrequency;
+	}
+
+	public int getSampleRate()
+	{
+		return mSampleRate;
+	}
+
+	/**
+	 * Restart every partial at its starting phase and the envelope at its beginning.
+	 */
+	@Override
+	public void reset()
+	{
+		super.reset();
+		System.arraycopy(mStartPhases, 0, mPhases, 0, mPartialCount);
+		for(int c = 0; c < mPartialCount; c++)
+		{
+			resync(c);
+		}
+	}
+
+	@Override
+	void renderRaw(float[] dst, int offset, int length)
+	{
+		Arrays.fill(dst, offset, offset + length, 0);
+		int end = offset + length;
+		long position = getPosition();
+		while(offset < end)
+		{
+			//Resynchronise on absolute boundaries, so output does not depend on block sizes
+			int segmentStart = (int)(position & (RESYNC_INTERVAL - 1));
+			if(segmentStart == 0)
+			{
+				for(int a = 0; a < mAudibleCount; a++)
+				{
+					resync(mAudible[a]);
+				}
+			}
+			int segmentLength = Math.min(end - offset, RESYNC_INTERVAL - segmentStart);
+			//Two independent rotations per pass hide the latency of each one's dependency chain
+			int a = 0;
+			for(; a + 1 < mAudibleCount; a += 2)
+			{
+				renderPartials(mAudible[a], mAudible[a + 1], dst, offset, segmentLength);
+			}
+			if(a < mAudibleCount)
+			{
+				renderPartial(mAudible[a], dst, offset, segmentLength);
+			}
+			offset += segmentLength;
+			position += segmentLength;
+		}
+		//Inaudible partials keep their phase, so they rejoin in step if the frequency falls
+		for(int a = 0, c = 0; c < mPartialCount; c++)
+		{
+			if(a < mAudibleCount && mAudible[a] == c)
+			{
+				a++;
+				continue;
+			}
+			mPhases[c] += mIncrements[c] * length;
+		}
+	}
+
+	private void renderPartial(int index, float[] dst, int offset, int length)
+	{
+		double sin = mSin[index];
+		double cos = mCos[index];
+		double stepCos = mStepCos[index];
+		double stepSin = mStepSin[index];
+		double amplitude = mAmplitudes[index];
+		int end = offset + length;
+		for(int c = offset; c < end; c++)
+		{
+			dst[c] += (float)(amplitude * sin);
+			double nextSin = sin * stepCos + cos * stepSin;
+			cos = cos * stepCos - sin * stepSin;
+			sin = nextSin;
+		}
+		mSin[index] = sin;
+		mCos[index] = cos;
+		mPhases[index] += mIncrements[index] * length;
+	}
+
+	private void renderPartials(int first, int second, float[] dst, int offset, int length)
+	{
+		double sin1 = mSin[first];
+		double cos1 = mCos[first];
+		double stepCos1 = mStepCos[first];
+		double stepSin1 = mStepSin[first];
+		double amplitude1 = mAmplitudes[first];
+		double sin2 = mSin[second];
+		double cos2 = mCos[second];
+		double stepCos2 = mStepCos[second];
+		double stepSin2 = mStepSin[second];
+		double amplitude2 = mAmplitudes[second];
+		int end = offset + length;
+		for(int c = offset; c < end; c++)
+		{
+			dst[c] += (float)(amplitude1 * sin1 + amplitude2 * sin2);
+			double nextSin1 = sin1 * stepCos1 + cos1 * stepSin1;
+			cos1 = cos1 * stepCos1 - sin1 * stepSin1;
+			sin1 = nextSin1;
+			double nextSin2 = sin2 * stepCos2 + cos2 * stepSin2;
+			cos2 = cos2 * stepCos2 - sin2 * stepSin2;
+			sin2 = nextSin2;
+		}
+		mSin[first] = sin1;
+		mCos[first] = cos1;
+		mPhases[first] += mIncrements[first] * length;
+		mSin[second] = sin2;
+		mCos[second] = cos2;
+		mPhases[second] += mIncrements[second] * length;
+	}
+
+	/**
+	 * Restart a partial's rotation from its exact phase, discarding accumulated rounding error.
+	 */
+	private void resync(int index)
+	{
+		double angle = 2 * Math.PI * OscillatorEngine.toCycles(mPhases[index]);
+		mSin[index] = Math.sin(angle);
+		mCos[index] = Math.cos(angle);
+	}
+
+	private void updatePartial(int index)
+	{
+		double frequency = mRatios[index] * mFrequency;
+		mIncrements[index] = OscillatorEngine.phaseIncrement(frequency, mSampleRate);
+		double step = 2 * Math.PI * frequency / mSampleRate;
+		mStepCos[index] = Math.cos(step);
+		mStepSin[index] = Math.sin(step);
+	}
+
+	private void updateAudible()
+	{
+		double nyquist = mSampleRate / 2.0;
+		mAudibleCount = 0;
+		for(int c = 0; c < mPartialCount; c++)
+		{
+			if(mRatios[c] * mFrequency < nyquist)
+			{
+				mAudible[mAudibleCount++] = c;
+			}
+		}
+	}
+
+	private void grow()
+	{
+		int capacity = 2 * mRatios.length;
+		mRatios = Arrays.copyOf(mRatios, capacity);
+		mAmplitudes = Arrays.copyOf(mAmplitudes, capacity);
+		mStartPhases = Arrays.copyOf(mStartPhases, capacity);
+		mPhases = Arrays.copyOf(mPhases, capacity);
+		mIncrements = Arrays.copyOf(mIncrements, capacity);
+		mStepCos = Arrays.copyOf(mStepCos, capacity);
+		mStepSin = Arrays.copyOf(mStepSin, capacity);
+		mSin = Arrays.copyOf(mSin, capacity);
+		mCos = Arrays.copyOf(mCos, capacity);
+		mAudible = Arrays.copyOf(mAudible, capacity);
+	}
+
+	private void checkPartial(int index)
+	{
+		if(index < 0 || index >= mPartialCount)
+		{
+			throw new IndexOutOfBoundsException("Partial " + index + " out of bounds for " + mPartialCount + " partials");
+		}
+	}
+}
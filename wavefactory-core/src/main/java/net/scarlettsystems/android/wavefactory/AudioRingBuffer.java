@@ -0,0 +1,163 @@
+package net.scarlettsystems.android.wavefactory;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free single-producer, single-consumer ring buffer of audio samples, for streaming from a
+ * generator thread to a playback thread. Reads and writes are wait-free: they never block and
+ * never allocate, and transfer as many samples as fit or are available, in one or two bulk
+ * copies.
+ *
+ * Each side owns one free-running index and only reads the other side's index when its cached
+ * copy says the buffer is full or empty. New indices are published with ordered stores, so the
+ * samples written before them are visible to the other side.
+ *
+ * Exactly one thread may write and exactly one thread may read at a time. Writes that do not fit
+ * count as overruns, and reads that cannot be satisfied in full count as underruns.
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public abstract class AudioRingBuffer
+{
+	private static final int MAX_CAPACITY = 1 << 30;
+
+	final int mCapacity;
+	final int mMask;
+
+	private final AtomicLong mWriteIndex = new AtomicLong();
+	private final AtomicLong mReadIndex = new AtomicLong();
+	private final AtomicLong mOverruns = new AtomicLong();
+	private final AtomicLong mUnderruns = new AtomicLong();
+	//Producer's last view of the read index, and consumer's last view of the write index
+	private long mCachedReadIndex = 0;
+	private long mCachedWriteIndex = 0;
+
+	AudioRingBuffer(int capacity)
+	{
+		if(capacity <= 0 || capacity > MAX_CAPACITY)
+		{
+			throw new IllegalArgumentException("Capacity must be between 1 and " + MAX_CAPACITY + ".");
+		}
+		//A power of two lets indices wrap with a mask instead of a division
+		int rounded = Integer.highestOneBit(capacity);
+		mCapacity = rounded < capacity ? rounded << 1 : rounded;
+		mMask = mCapacity - 1;
+	}
+
+	/**
+	 * @return number of samples the buffer holds, which is the requested capacity rounded up to a
+	 * power of two
+	 */
+	public int getCapacity()
+	{
+		return mCapacity;
+	}
+
+	/**
+	 * @return number of samples that can be read now; exact only on the consumer thread
+	 */
+	public int getAvailable()
+	{
+		return (int)(mWriteIndex.get() - mReadIndex.get());
+	}
+
+	/**
+	 * @return number of samples that can be written now; exact only on the producer thread
+	 */
+	public int getFree()
+	{
+		return mCapacity - getAvailable();
+	}
+
+	/**
+	 * @return number of writes that could not store every sample
+	 */
+	public long getOverrunCount()
+	{
+		return mOverruns.get();
+	}
+
+	/**
+	 * @return number of reads that could not fill every sample
+	 */
+	public long getUnderrunCount()
+	{
+		return mUnderruns.get();
+	}
+
+	/**
+	 * @return total number of samples written
+	 */
+	public long getWritePosition()
+	{
+		return mWriteIndex.get();
+	}
+
+	/**
+	 * @return total number of samples read
+	 */
+	public long getReadPosition()
+	{
+		return mReadIndex.get();
+	}
+
+	/**
+	 * Producer side: find how many of {@code length} samples fit, counting an overrun if not all.
+	 *
+	 * @return number of samples to write, starting at {@link #writeIndex()}
+	 */
+	final int claimWrite(int length)
+	{
+		long write = mWriteIndex.get();
+		if(mCapacity - (write - mCachedReadIndex) < length)
+		{
+			mCachedReadIndex = mReadIndex.get();
+		}
+		int count = (int)Math.min(length, mCapacity - (write - mCachedReadIndex));
+		if(count < length)
+		{
+			mOverruns.lazySet(mOverruns.get() + 1);
+		}
+		return count;
+	}
+
+	final long writeIndex()
+	{
+		return mWriteIndex.get();
+	}
+
+	final void publishWrite(int count)
+	{
+		mWriteIndex.lazySet(mWriteIndex.get() + count);
+	}
+
+	/**
+	 * Consumer side: find how many of {@code length} samples are available, counting an underrun
+	 * if not all.
+	 *
+	 * @return number of samples to read, starting at {@link #readIndex()}
+	 */
+	final int claimRead(int length)
+	{
+		long read = mReadIndex.get();
+		if(mCachedWriteIndex - read < length)
+		{
+			mCachedWriteIndex = mWriteIndex.get();
+		}
+		int count = (int)Math.min(length, mCachedWriteIndex - read);
+		if(count < length)
+		{
+			mUnderruns.lazySet(mUnderruns.get() + 1);
+		}
+		return count;
+	}
+
+	final long readIndex()
+	{
+		return mReadIndex.get();
+	}
+
+	final void publishRead(int count)
+	{
+		mReadIndex.lazySet(mReadIndex.get() + count);
+	}
+}
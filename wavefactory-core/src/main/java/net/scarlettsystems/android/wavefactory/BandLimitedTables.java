@@ -0,0 +1,138 @@
+package net.scarlettsystems.android.wavefactory;
+
+/**
+ * Mip-mapped band-limited wavetables for the square, triangular and sawtooth waveforms.
+ *
+ * Each waveform has one table per octave. Table {@code k} is the Fourier series of the waveform
+ * truncated to its first {@code 2^k} harmonics, so a tone whose {@code 2^k}-th harmonic lies below
+ * the Nyquist frequency can be played from it without aliasing. Harmonics are tapered with Lanczos
+ * sigma factors to suppress Gibbs ringing, and every table is normalised to a peak of 1.
+ *
+ * Tables are built on first use of a waveform and shared by all oscillators afterwards. Building
+ * only reads the sine table in {@link OscillatorEngine}, so it involves no trigonometric calls.
+ */
+final class BandLimitedTables
+{
+	static final int TABLE_BITS = 11;
+	static final int TABLE_SIZE = 1 << TABLE_BITS;
+	static final int OCTAVES = TABLE_BITS;
+
+	private static final int FRACTION_SHIFT = 64 - TABLE_BITS - 23;
+	private static final float FRACTION_SCALE = 1f / (1 << 23);
+	private static final int SINE_STRIDE = OscillatorEngine.SINE_TABLE_SIZE / TABLE_SIZE;
+
+	private static final float[][][] TABLES = new float[WaveFactory.WAVEFORM_SAWTOOTH + 1][][];
+
+	private BandLimitedTables(){}
+
+	/**
+	 * Select the table for a tone with the given phase increment.
+	 *
+	 * @param waveform square, triangular or sawtooth waveform
+	 * @param increment fixed-point phase increment per sample
+	 * @return the richest table whose harmonics all lie below the Nyquist frequency
+	 */
+	static float[] select(@WaveFactory.Waveform int waveform, long increment)
+	{
+		float[][] octaves = get(waveform);
+		double cycles = OscillatorEngine.toCycles(increment);
+		int octave = OCTAVES - 1;
+		if(cycles > 0)
+		{
+			int maxHarmonic = (int)Math.min(TABLE_SIZE, Math.floor(0.5 / cycles));
+			octave = maxHarmonic <= 1 ? 0 : Math.min(OCTAVES - 1, 31 - Integer.numberOfLeadingZeros(maxHarmonic));
+		}
+		return octaves[octave];
+	}
+
+	/**
+	 * Render a run of samples from a table, advancing the phase by {@code increment} after each one.
+	 *
+	 * @param table table returned by {@link #select(int, long)}
+	 * @param phase fixed-point phase of the first sample
+	 * @param increment fixed-point phase increment per sample
+	 * @param output destination array
+	 * @param offset index of the first sample to write
+	 * @param length number of samples to write
+	 * @return phase of the sample following the last one written
+	 */
+	static long render(float[] table, long phase, long increment, float[] output, int offset, int length)
+	{
+		int end = offset + length;
+		for(int c = offset; c < end; c++)
+		{
+			int index = (int)(phase >>> (64 - TABLE_BITS));
+			float fraction = (int)((phase >>> FRACTION_SHIFT) & 0x7FFFFF) * FRACTION_SCALE;
+			float a = table[index];
+			output[c] = a + fraction * (table[index + 1] - a);
+			phase += increment;
+		}
+		return phase;
+	}
+
+	private static float[][] get(int waveform)
+	{
+		synchronized(TABLES)
+		{
+			if(TABLES[waveform] == null)
+			{
+				float[][] octaves = new float[OCTAVES][];
+				for(int k = 0; k < OCTAVES; k++)
+				{
+					octaves[k] = build(waveform, Math.min(1 << k, TABLE_SIZE / 2 - 1));
+				}
+				TABLES[waveform] = octaves;
+			}
+			return TABLES[waveform];
+		}
+	}
+
+	private static float[] build(int waveform, int maxHarmonic)
+	{
+		double[] sum = new double[TABLE_SIZE];
+		float[] sine = OscillatorEngine.SINE_TABLE;
+		int sineMask = OscillatorEngine.SINE_TABLE_SIZE - 1;
+		for(int h = 1; h <= maxHarmonic; h++)
+		{
+			double amplitude = harmonicAmplitude(waveform, h);
+			if(amplitude == 0){continue;}
+			//Lanczos sigma factor
+			double x = Math.PI * h / (maxHarmonic + 1);
+			amplitude *= Math.sin(x) / x;
+			int step = h * SINE_STRIDE;
+			for(int n = 0, index = 0; n < TABLE_SIZE; n++, index = (index + step) & sineMask)
+			{
+				sum[n] += amplitude * sine[index];
+			}
+		}
+
+		double peak = 0;
+		for(double value : sum)
+		{
+			peak = Math.max(peak, Math.abs(value));
+		}
+		float[] table = new float[TABLE_SIZE + 1];
+		for(int n = 0; n < TABLE_SIZE; n++)
+		{
+			table[n] = (float)(sum[n] / peak);
+		}
+		table[TABLE_SIZE] = table[0];
+		return table;
+	}
+
+	private static double harmonicAmplitude(int waveform, int h)
+	{
+		switch(waveform)
+		{
+			case WaveFactory.WAVEFORM_SQUARE:
+				return h % 2 == 0 ? 0 : 4 / (Math.PI * h);
+			case WaveFactory.WAVEFORM_TRIANGULAR:
+				if(h % 2 == 0){return 0;}
+				return ((h / 2) % 2 == 0 ? 8 : -8) / (Math.PI * Math.PI * h * h);
+			case WaveFactory.WAVEFORM_SAWTOOTH:
+				return (h % 2 == 0 ? -2 : 2) / (Math.PI * h);
+			default:
+				throw new IllegalArgumentException("No band-limited table for waveform: " + waveform);
+		}
+	}
+}
@@ -0,0 +1,831 @@
+package net.scarlettsystems.android.wavefactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Headless renderer that turns a job file of tone and mix specs into mono WAV files, rendering
+ * independent jobs on all cores. Runs on any JVM:
+ *
+ * <pre>java -cp wavefactory-core.jar net.scarlettsystems.android.wavefactory.BatchRenderer jobs.txt [threads]</pre>
+ *
+ * A job file has one statement per line, each a keyword followed by {@code key=value} arguments.
+ * Blank lines and lines starting with {@code #} are ignored, and relative paths are resolved
+ * against the job file's directory.
+ *
+ * <pre>
+ * rate=48000
+ * tone out=beep.wav waveform=sine frequency=880 duration=0.25 ramp=0.05 amplitude=0.8
+ * mix out=chord.wav saturation=tanh
+ *     tone waveform=sine frequency=261.63 duration=1 ramp=0.1 gain=0.5
+ *     tone waveform=triangular frequency=329.63 duration=1 ramp=0.1 offset=0.1 gain=0.5
+ *     file path=kick.wav offset=0.5 gain=0.8
+ * end
+ * </pre>
+ *
+ * {@code rate} sets the sample rate of the jobs after it, 44100 Hz by default; any job can also
+ * take its own {@code rate}, and an {@code encoding} of pcm16 (the default), pcm24 or float.
+ * Tones take a {@code waveform} of sine, square, triangular or sawtooth, a {@code frequency} in
+ * Hz, a {@code duration} in seconds, and optionally a {@code ramp} fraction and an
+ * {@code amplitude}. Mixes layer tones and wave files, each at an {@code offset} in seconds and
+ * with a {@code gain}, on a {@link Sequencer} with a {@code saturation} of none, tanh (the
+ * default) or limiter. Wave files are mixed down to mono and converted to the job's sample rate.
+ *
+ * A pcm16 tone job matches the corresponding {@code WaveFactory.get*WavePCM16} output byte for
+ * byte, as both scale full scale to 32767. A pcm16 mix is converted like any float audio, scaling
+ * full scale to 32768 before clamping, as {@link WaveWriter#write(float[], int, int)} does.
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public final class BatchRenderer
+{
+	public static final int DEFAULT_SAMPLE_RATE = 44100;
+
+	//Samples rendered and written at a time. Mix layers are streamed too, so memory depends on
+	//how many layers sound at once rather than on the length of the output
+	private static final int RENDER_BLOCK_SIZE = 4096;
+
+	private final int mThreads;
+
+	/**
+	 * Render with one thread per available core.
+	 */
+	public BatchRenderer()
+	{
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param threads number of jobs to render at once
+	 */
+	public BatchRenderer(int threads)
+	{
+		if(threads < 1)
+		{
+			throw new IllegalArgumentException("Thread count must be at least one.");
+		}
+		mThreads = threads;
+	}
+
+	public static void main(String[] args) throws IOException
+	{
+		if(args.length < 1 || args.length > 2)
+		{
+			System.err.println("Usage: BatchRenderer <job file> [threads]");
+			System.exit(2);
+		}
+		BatchRenderer renderer = args.length == 2 ? new BatchRenderer(Integer.parseInt(args[1])) : new BatchRenderer();
+		List<Job> jobs = parse(new File(args[0]));
+		long start = System.nanoTime();
+		List<File> outputs = renderer.render(jobs);
+		System.out.println("Rendered " + outputs.size() + " files in " + (System.nanoTime() - start) / 1000000 + " ms.");
+	}
+
+	/**
+	 * One output file of a job file.
+	 */
+	public abstract static class Job
+	{
+		final File mOutput;
+		final int mSampleRate;
+		final int mEncoding;
+
+		Job(File output, int sampleRate, int encoding)
+		{
+			mOutput = output;
+			mSampleRate = sampleRate;
+			mEncoding = encoding;
+		}
+
+		public File getOutput()
+		{
+			return mOutput;
+		}
+
+		public int getSampleRate()
+		{
+			return mSampleRate;
+		}
+
+		@WaveWriter.Encoding
+		public int getEncoding()
+		{
+			return mEncoding;
+		}
+
+		/**
+		 * @return rough number of samples to render, used to start long jobs first
+		 */
+		abstract long estimateSamples();
+
+		abstract void render(WaveWriter writer) throws IOException;
+	}
+
+	/**
+	 * Read a job file.
+	 *
+	 * @param jobFile job file to read
+	 * @return jobs in the order they appear
+	 * @throws IOException if the file cannot be read
+	 * @throws IllegalArgumentException if a line is malformed, naming the line
+	 */
+	public static List<Job> parse(File jobFile) throws IOException
+	{
+		InputStream stream = new FileInputStream(jobFile);
+		try
+		{
+			return parse(stream, jobFile.getAbsoluteFile().getParentFile());
+		}
+		finally
+		{
+			stream.close();
+		}
+	}
+
+	/**
+	 * Read a job file from a stream.
+	 *
+	 * @param stream job file contents in UTF-8
+	 * @param directory directory that relative paths are resolved against
+	 * @return jobs in the order they appear
+	 * @throws IOException if the stream cannot be read
+	 * @throws IllegalArgumentException if a line is malformed, naming the line
+	 */
+	public static List<Job> parse(InputStream stream, File directory) throws IOException
+	{
+		BufferedReader reader = new BufferedReader(new InputStreamReader(stream, "UTF-8"));
+		List<Job> jobs = new ArrayList<>();
+		int sampleRate = DEFAULT_SAMPLE_RATE;
+		MixJob mix = null;
+		int lineNumber = 0;
+		String line;
+		while((line = reader.readLine()) != null)
+		{
+			lineNumber++;
+			line = line.trim();
+			if(line.isEmpty() || line.startsWith("#")){continue;}
+			String[] tokens = line.split("\\s+");
+			try
+			{
+				String keyword = tokens[0];
+				if(keyword.startsWith("rate="))
+				{
+					sampleRate = parseRate(keyword.substring(5));
+					continue;
+				}
+				Arguments arguments = new Arguments(tokens);
+				if(mix != null)
+				{
+					if(keyword.equals("end"))
+					{
+						arguments.finish();
+						jobs.add(mix);
+						mix = null;
+					}
+					else if(keyword.equals("tone") || keyword.equals("file"))
+					{
+						mix.mLayers.add(parseLayer(keyword, arguments, mix.mSampleRate, directory));
+					}
+					else
+					{
+						throw new IllegalArgumentException("Expected tone, file or end inside a mix, got " + keyword + ".");
+					}
+				}
+				else if(keyword.equals("tone"))
+				{
+					File output = resolve(directory, arguments.require("out"));
+					int rate = arguments.has("rate") ? parseRate(arguments.require("rate")) : sampleRate;
+					int encoding = parseEncoding(arguments.optional("encoding", "pcm16"));
+					jobs.add(new ToneJob(output, rate, encoding, parseTone(arguments, rate)));
+					arguments.finish();
+				}
+				else if(keyword.equals("mix"))
+				{
+					File output = resolve(directory, arguments.require("out"));
+					int rate = arguments.has("rate") ? parseRate(arguments.require("rate")) : sampleRate;
+					int encoding = parseEncoding(arguments.optional("encoding", "pcm16"));
+					mix = new MixJob(output, rate, encoding, parseSaturation(arguments.optional("saturation", "tanh")));
+					arguments.finish();
+				}
+				else
+				{
+					throw new IllegalArgumentException("Unknown statement " + keyword + ".");
+				}
+			}
+			catch (IllegalArgumentException e)
+			{
+				throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage(), e);
+			}
+		}
+		if(mix != null)
+		{
+			throw new IllegalArgumentException("Mix " + mix.mOutput + " is missing its end.");
+		}
+		return jobs;
+	}
+
+	/**
+	 * Render jobs and write their files, several at a time. Output directories are created as
+	 * needed.
+	 *
+	 * @param jobs jobs to render
+	 * @return files written, in the order of {@code jobs}
+	 * @throws IOException if a source cannot be read or an output cannot be written
+	 */
+	public List<File> render(List<Job> jobs) throws IOException
+	{
+		checkOutputs(jobs);
+		//Start the longest jobs first, so a long one is not left running alone at the end
+		List<Job> order = new ArrayList<>(jobs);
+		Collections.sort(order, new Comparator<Job>()
+		{
+			@Override
+			public int compare(Job a, Job b)
+			{
+				long difference = b.estimateSamples() - a.estimateSamples();
+				return difference > 0 ? 1 : difference < 0 ? -1 : 0;
+			}
+		});
+
+		ThreadPoolExecutor pool = createPool(Math.min(mThreads, Math.max(1, jobs.size())));
+		try
+		{
+			List<Future<?>> futures = new ArrayList<>(order.size());
+			for(final Job job : order)
+			{
+				futures.add(pool.submit(new Callable<Void>()
+				{
+					@Override
+					public Void call() throws IOException
+					{
+						write(job);
+						return null;
+					}
+				}));
+			}
+			for(Future<?> future : futures)
+			{
+				await(future);
+			}
+		}
+		finally
+		{
+			pool.shutdownNow();
+		}
+		List<File> outputs = new ArrayList<>(jobs.size());
+		for(Job job : jobs)
+		{
+			outputs.add(job.mOutput);
+		}
+		return outputs;
+	}
+
+	private static ThreadPoolExecutor createPool(int threads)
+	{
+		return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+		{
+			private final AtomicInteger mCount = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, "WaveFactory-batch-" + mCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	private static void await(Future<?> future) throws IOException
+	{
+		try
+		{
+			future.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while rendering.", e);
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if(cause instanceof IOException){throw (IOException)cause;}
+			if(cause instanceof RuntimeException){throw (RuntimeException)cause;}
+			if(cause instanceof Error){throw (Error)cause;}
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	private static void checkOutputs(List<Job> jobs)
+	{
+		Set<File> outputs = new HashSet<>();
+		for(Job job : jobs)
+		{
+			if(!outputs.add(job.mOutput.getAbsoluteFile()))
+			{
+				throw new IllegalArgumentException("More than one job writes " + job.mOutput + ".");
+			}
+		}
+		//Jobs run concurrently, so one cannot read a file that another is writing
+		for(Job job : jobs)
+		{
+			if(!(job instanceof MixJob)){continue;}
+			for(Layer layer : ((MixJob)job).mLayers)
+			{
+				if(layer.mSource != null && outputs.contains(layer.mSource.getAbsoluteFile()))
+				{
+					throw new IllegalArgumentException("Mix " + job.mOutput + " reads " + layer.mSource + ", which is written by the same batch.");
+				}
+			}
+		}
+	}
+
+	private static void write(Job job) throws IOException
+	{
+		File directory = job.mOutput.getAbsoluteFile().getParentFile();
+		if(directory != null && !directory.isDirectory() && !directory.mkdirs())
+		{
+			throw new IOException("Cannot create directory " + directory + ".");
+		}
+		WaveWriter writer = new WaveWriter(job.mOutput, job.mSampleRate, 1, job.mEncoding);
+		try
+		{
+			job.render(writer);
+		}
+		finally
+		{
+			writer.close();
+		}
+	}
+
+	private static final class ToneJob extends Job
+	{
+		private final ToneSpec mTone;
+
+		ToneJob(File output, int sampleRate, int encoding, ToneSpec tone)
+		{
+			super(output, sampleRate, encoding);
+			mTone = tone;
+		}
+
+		@Override
+		long estimateSamples()
+		{
+			return mTone.numSamples(mSampleRate);
+		}
+
+		@Override
+		void render(WaveWriter writer) throws IOException
+		{
+			int numSamples = mTone.numSamples(mSampleRate);
+			Oscillator oscillator = mTone.createOscillator(mSampleRate);
+			int blockLength = Math.max(1, Math.min(numSamples, RENDER_BLOCK_SIZE));
+			if(mEncoding == WaveWriter.ENCODING_PCM_16BIT)
+			{
+				//Quantised by the oscillator, the same way as the WaveFactory 16-bit generators
+				short[] block = new short[blockLength];
+				for(int position = 0; position < numSamples; position += blockLength)
+				{
+					int count = Math.min(blockLength, numSamples - position);
+					oscillator.render(block, 0, count);
+					writer.write(block, 0, count);
+				}
+				return;
+			}
+			float[] block = new float[blockLength];
+			for(int position = 0; position < numSamples; position += blockLength)
+			{
+				int count = Math.min(blockLength, numSamples - position);
+				oscillator.render(block, 0, count);
+				writer.write(block, 0, count);
+			}
+		}
+	}
+
+	private static final class MixJob extends Job
+	{
+		private final int mSaturation;
+		private final List<Layer> mLayers = new ArrayList<>();
+
+		MixJob(File output, int sampleRate, int encoding, int saturation)
+		{
+			super(output, sampleRate, encoding);
+			mSaturation = saturation;
+		}
+
+		@Override
+		long estimateSamples()
+		{
+			long total = 0;
+			for(Layer layer : mLayers)
+			{
+				total += layer.mTone != null ? layer.mTone.numSamples(mSampleRate) : layer.mSource.length();
+			}
+			return total;
+		}
+
+		@Override
+		void render(WaveWriter writer) throws IOException
+		{
+			//Layers are generated and decoded as they play, so only the voices sounding at once
+			//are held in memory
+			Sequencer sequencer = new Sequencer(mSampleRate);
+			sequencer.setSaturation(mSaturation);
+			List<FileVoice> files = new ArrayList<>();
+			long end = 0;
+			for(Layer layer : mLayers)
+			{
+				long frame = Math.round(layer.mOffset * mSampleRate);
+				if(layer.mTone != null)
+				{
+					sequencer.trigger(frame, layer.mTone.createOscillator(mSampleRate), layer.mGain);
+					end = Math.max(end, frame + layer.mTone.numSamples(mSampleRate));
+				}
+				else
+				{
+					FileVoice voice = new FileVoice(layer.mSource, mSampleRate);
+					files.add(voice);
+					sequencer.trigger(frame, voice, layer.mGain);
+					end = Math.max(end, frame);
+				}
+			}
+			try
+			{
+				float[] block = new float[RENDER_BLOCK_SIZE];
+				long position = 0;
+				while(!sequencer.isIdle())
+				{
+					sequencer.render(block, 0, block.length);
+					for(FileVoice voice : files)
+					{
+						voice.checkError();
+					}
+					//Until every layer has finished, the whole block is inside the mix
+					int count = block.length;
+					if(sequencer.isIdle())
+					{
+						for(FileVoice voice : files)
+						{
+							end = Math.max(end, voice.mStart + voice.mFrames);
+						}
+						count = (int)Math.max(0, Math.min(block.length, end - position));
+					}
+					writer.write(block, 0, count);
+					position += count;
+				}
+			}
+			finally
+			{
+				for(FileVoice voice : files)
+				{
+					voice.close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Wave file layer that is decoded, mixed down to mono and converted to the mix's sample rate
+	 * a block at a time as it plays. The file is opened when the layer starts and closed when it
+	 * ends; a read error ends the layer, and is rethrown by {@link #checkError()}.
+	 */
+	private static final class FileVoice extends Sequencer.Voice
+	{
+		private static final int DECODE_BLOCK_SIZE = 4096;
+
+		private final File mSource;
+		private final int mSampleRate;
+		private FileInputStream mStream;
+		private WaveDecoder mDecoder;
+		private Resampler mResampler;
+		private float[] mInput;
+		private float[] mOutput;
+		private int mOutputStart = 0;
+		private int mOutputEnd = 0;
+		private boolean mEnded = false;
+		private IOException mError;
+		//Frames mixed so far, which give the layer's length once it has ended
+		long mFrames = 0;
+
+		FileVoice(File source, int sampleRate)
+		{
+			mSource = source;
+			mSampleRate = sampleRate;
+		}
+
+		@Override
+		boolean mix(float[] block, int offset, int length, float[] scratch)
+		{
+			try
+			{
+				if(mDecoder == null){open();}
+				float gain = mGain;
+				while(length > 0 && fill())
+				{
+					int count = Math.min(length, mOutputEnd - mOutputStart);
+					for(int c = 0; c < count; c++)
+					{
+						block[offset + c] += mOutput[mOutputStart + c] * gain;
+					}
+					mOutputStart += count;
+					mFrames += count;
+					offset += count;
+					length -= count;
+				}
+				//Look ahead, so the layer is reported finished with its last sample
+				if(fill()){return true;}
+			}
+			catch (IOException e)
+			{
+				mError = e;
+			}
+			close();
+			return false;
+		}
+
+		private void open() throws IOException
+		{
+			mStream = new FileInputStream(mSource);
+			mDecoder = new WaveDecoder(mStream.getChannel());
+			if(mDecoder.getSampleRate() != mSampleRate)
+			{
+				mResampler = new Resampler(mDecoder.getSampleRate(), mSampleRate, 1);
+			}
+			mInput = new float[DECODE_BLOCK_SIZE];
+			mOutput = mResampler == null ? mInput : new float[mResampler.getMaxOutputFrames(DECODE_BLOCK_SIZE)];
+		}
+
+		/**
+		 * @return false once every frame of the file has been mixed
+		 */
+		private boolean fill() throws IOException
+		{
+			while(mOutputStart == mOutputEnd)
+			{
+				if(mEnded){return false;}
+				mOutputStart = 0;
+				int read = mDecoder.read(mInput, 0, DECODE_BLOCK_SIZE, WaveDecoder.CHANNELS_MIXDOWN);
+				if(mResampler == null)
+				{
+					mOutputEnd = Math.max(0, read);
+					mEnded = read < 0;
+				}
+				else if(read >= 0)
+				{
+					mOutputEnd = mResampler.process(mInput, 0, read, mOutput, 0);
+				}
+				else
+				{
+					if(mResampler.getFlushFrames() > mOutput.length)
+					{
+						mOutput = new float[mResampler.getFlushFrames()];
+					}
+					mOutputEnd = mResampler.flush(mOutput, 0);
+					mEnded = true;
+				}
+			}
+			return true;
+		}
+
+		void checkError() throws IOException
+		{
+			if(mError != null){throw mError;}
+		}
+
+		void close()
+		{
+			if(mStream == null){return;}
+			try
+			{
+				mStream.close();
+			}
+			catch (IOException ignored)
+			{
+				//Nothing was written, so there is nothing to lose
+			}
+			mStream = null;
+		}
+	}
+
+	private static final class ToneSpec
+	{
+		final int mWaveform;
+		final float mFrequency;
+		final float mDuration;
+		final float mRamp;
+		final float mAmplitude;
+
+		ToneSpec(int waveform, float frequency, float duration, float ramp, float amplitude)
+		{
+			mWaveform = waveform;
+			mFrequency = frequency;
+			mDuration = duration;
+			mRamp = ramp;
+			mAmplitude = amplitude;
+		}
+
+		int numSamples(int sampleRate)
+		{
+			return (int)Math.floor(mDuration * sampleRate);
+		}
+
+		Oscillator createOscillator(int sampleRate)
+		{
+			Oscillator oscillator = WaveFactory.createOscillator(mWaveform, mFrequency, sampleRate, numSamples(sampleRate), mRamp);
+			oscillator.setAmplitude(mAmplitude);
+			return oscillator;
+		}
+	}
+
+	private static final class Layer
+	{
+		final ToneSpec mTone;
+		final File mSource;
+		final float mOffset;
+		final float mGain;
+
+		Layer(ToneSpec tone, File source, float offset, float gain)
+		{
+			mTone = tone;
+			mSource = source;
+			mOffset = offset;
+			mGain = gain;
+		}
+	}
+
+	private static ToneSpec parseTone(Arguments arguments, int sampleRate)
+	{
+		int waveform = parseWaveform(arguments.require("waveform"));
+		float frequency = parseFloat(arguments, "frequency", null);
+		float duration = parseFloat(arguments, "duration", null);
+		float ramp = parseFloat(arguments, "ramp", "0");
+		float amplitude = parseFloat(arguments, "amplitude", "1");
+		WaveFactory.validateInputs(frequency, duration, sampleRate, ramp);
+		return new ToneSpec(waveform, frequency, duration, ramp, amplitude);
+	}
+
+	private static Layer parseLayer(String keyword, Arguments arguments, int sampleRate, File directory)
+	{
+		float offset = parseFloat(arguments, "offset", "0");
+		float gain = parseFloat(arguments, "gain", "1");
+		if(offset < 0)
+		{
+			throw new IllegalArgumentException("Offset must not be negative.");
+		}
+		if(keyword.equals("tone"))
+		{
+			ToneSpec tone = parseTone(arguments, sampleRate);
+			arguments.finish();
+			return new Layer(tone, null, offset, gain);
+		}
+		File source = resolve(directory, arguments.require("path"));
+		arguments.finish();
+		return new Layer(null, source, offset, gain);
+	}
+
+	private static int parseWaveform(String name)
+	{
+		switch(name)
+		{
+			case "sine": return WaveFactory.WAVEFORM_SINE;
+			case "square": return WaveFactory.WAVEFORM_SQUARE;
+			case "triangular": return WaveFactory.WAVEFORM_TRIANGULAR;
+			case "sawtooth": return WaveFactory.WAVEFORM_SAWTOOTH;
+			default: throw new IllegalArgumentException("Unknown waveform " + name + ".");
+		}
+	}
+
+	private static int parseEncoding(String name)
+	{
+		switch(name)
+		{
+			case "pcm16": return WaveWriter.ENCODING_PCM_16BIT;
+			case "pcm24": return WaveWriter.ENCODING_PCM_24BIT;
+			case "float": return WaveWriter.ENCODING_FLOAT;
+			default: throw new IllegalArgumentException("Unknown encoding " + name + ".");
+		}
+	}
+
+	private static int parseSaturation(String name)
+	{
+		switch(name)
+		{
+			case "none": return MixBus.SATURATION_NONE;
+			case "tanh": return MixBus.SATURATION_TANH;
+			case "limiter": return MixBus.SATURATION_LIMITER;
+			default: throw new IllegalArgumentException("Unknown saturation " + name + ".");
+		}
+	}
+
+	private static int parseRate(String value)
+	{
+		int rate;
+		try
+		{
+			rate = Integer.parseInt(value);
+		}
+		catch (NumberFormatException e)
+		{
+			throw new IllegalArgumentException("Invalid sample rate " + value + ".");
+		}
+		if(rate <= 0)
+		{
+			throw new IllegalArgumentException("Sampling rate must be greater than zero.");
+		}
+		return rate;
+	}
+
+	private static float parseFloat(Arguments arguments, String key, String defaultValue)
+	{
+		String value = defaultValue == null ? arguments.require(key) : arguments.optional(key, defaultValue);
+		try
+		{
+			return Float.parseFloat(value);
+		}
+		catch (NumberFormatException e)
+		{
+			throw new IllegalArgumentException("Invalid " + key + " " + value + ".");
+		}
+	}
+
+	private static File resolve(File directory, String path)
+	{
+		File file = new File(path);
+		return file.isAbsolute() || directory == null ? file : new File(directory, path);
+	}
+
+	/**
+	 * The {@code key=value} arguments of one statement. Every argument must be used, so that a
+	 * misspelt key is reported rather than silently ignored.
+	 */
+	private static final class Arguments
+	{
+		private final Map<String, String> mValues = new HashMap<>();
+
+		Arguments(String[] tokens)
+		{
+			for(String token : Arrays.asList(tokens).subList(1, tokens.length))
+			{
+				int separator = token.indexOf('=');
+				if(separator <= 0)
+				{
+					throw new IllegalArgumentException("Expected key=value, got " + token + ".");
+				}
+				if(mValues.put(token.substring(0, separator), token.substring(separator + 1)) != null)
+				{
+					throw new IllegalArgumentException("Duplicate argument " + token.substring(0, separator) + ".");
+				}
+			}
+		}
+
+		boolean has(String key)
+		{
+			return mValues.containsKey(key);
+		}
+
+		String require(String key)
+		{
+			String value = mValues.remove(key);
+			if(value == null)
+			{
+				throw new IllegalArgumentException("Missing argument " + key + ".");
+			}
+			return value;
+		}
+
+		String optional(String key, String defaultValue)
+		{
+			String value = mValues.remove(key);
+			return value == null ? defaultValue : value;
+		}
+
+		void finish()
+		{
+			if(!mValues.isEmpty())
+			{
+				throw new IllegalArgumentException("Unknown arguments " + mValues.keySet() + ".");
+			}
+		}
+	}
+}
@@ -0,0 +1,203 @@
+package net.scarlettsystems.android.wavefactory;
+
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Common base of the stateful generators. It holds the amplitude, the {@link Envelope} and the
+ * position in the output, and renders 16-bit PCM through a float block, so subclasses only
+ * produce the raw signal in {@link #renderRaw(float[], int, int)}.
+ */
+@SuppressWarnings("unused, WeakerAccess")
+abstract class BlockGenerator
+{
+	private static final int BLOCK_SIZE = 256;
+
+	private float mAmplitude = 1.0f;
+	private Envelope mEnvelope = new Envelope();
+	private long mPosition = 0;
+	private final float[] mBlock = new float[BLOCK_SIZE];
+	private final short[] mPcmBlock = new short[BLOCK_SIZE];
+
+	/**
+	 * Render the next samples of the raw signal, before the amplitude and envelope are applied.
+	 * {@link #getPosition()} is the index of the first of them.
+	 *
+	 * @param dst destination array, already bounds-checked
+	 * @param offset index of the first sample to write
+	 * @param length number of samples to write
+	 */
+	abstract void renderRaw(float[] dst, int offset, int length);
+
+	/**
+	 * Set the peak amplitude of the output.
+	 *
+	 * @param amplitude magnitude from 0 to 1
+	 */
+	public void setAmplitude(float amplitude)
+	{
+		//Amplitude sanity checks
+		if(amplitude < 0){amplitude = 0;}
+		if(amplitude > 1){amplitude = 1;}
+		mAmplitude = amplitude;
+	}
+
+	public float getAmplitude()
+	{
+		return mAmplitude;
+	}
+
+	/**
+	 * Set the length of the fade-in and fade-out ramps, i.e. the attack and release of the
+	 * envelope.
+	 *
+	 * @param rampSamples ramp length in samples
+	 */
+	public void setRamp(int rampSamples)
+	{
+		if(rampSamples < 0)
+		{
+			throw new IllegalArgumentException("Ramp must not be negative.");
+		}
+		mEnvelope.setAttack(rampSamples);
+		mEnvelope.setRelease(rampSamples);
+	}
+
+	/**
+	 * Set the total length of the output, measured from the last {@link #reset()}. The envelope's
+	 * release ends on the last sample, after which only silence is rendered.
+	 *
+	 * @param numSamples length in samples, or {@link Envelope#LENGTH_UNBOUNDED}
+	 */
+	public void setLength(long numSamples)
+	{
+		mEnvelope.setLength(numSamples);
+	}
+
+	public long getLength()
+	{
+		return mEnvelope.getLength();
+	}
+
+	/**
+	 * Replace the envelope that shapes the output. The envelope is moved to the current position,
+	 * and is applied from then on.
+	 *
+	 * @param envelope envelope to apply
+	 */
+	public void setEnvelope(Envelope envelope)
+	{
+		if(envelope == null)
+		{
+			throw new IllegalArgumentException("Envelope must not be null.");
+		}
+		envelope.seek(mPosition);
+		mEnvelope = envelope;
+	}
+
+	public Envelope getEnvelope()
+	{
+		return mEnvelope;
+	}
+
+	/**
+	 * End the output from the current position, releasing from the current envelope level.
+	 */
+	public void release()
+	{
+		mEnvelope.release();
+	}
+
+	/**
+	 * @return true if the output has a length and every sample of it has been rendered
+	 */
+	public boolean isFinished()
+	{
+		return mEnvelope.isFinished();
+	}
+
+	/**
+	 * @return number of samples rendered since the last {@link #reset()}
+	 */
+	public long getPosition()
+	{
+		return mPosition;
+	}
+
+	/**
+	 * Return to the first sample and restart the envelope. Subclasses restart their own state too.
+	 */
+	public void reset()
+	{
+		mPosition = 0;
+		mEnvelope.reset();
+	}
+
+	/**
+	 * Move the position and the envelope, for subclasses that can jump within their output.
+	 *
+	 * @param position number of samples from the last {@link #reset()}
+	 */
+	final void setPosition(long position)
+	{
+		mPosition = position;
+		mEnvelope.seek(position);
+	}
+
+	/**
+	 * Render the next samples as 32-bit float PCM.
+	 *
+	 * @param dst destination array
+	 * @param offset index of the first sample to write
+	 * @param length number of samples to write
+	 */
+	public void render(float[] dst, int offset, int length)
+	{
+		Bounds.check(dst.length, offset, length);
+		renderRaw(dst, offset, length);
+		mEnvelope.apply(dst, offset, length, mAmplitude);
+		mPosition += length;
+	}
+
+	/**
+	 * Render the next samples as 16-bit PCM, clamped to full scale.
+	 *
+	 * @param dst destination array
+	 * @param offset index of the first sample to write
+	 * @param length number of samples to write
+	 */
+	public void render(short[] dst, int offset, int length)
+	{
+		Bounds.check(dst.length, offset, length);
+		int end = offset + length;
+		while(offset < end)
+		{
+			int blockLength = Math.min(BLOCK_SIZE, end - offset);
+			render(mBlock, 0, blockLength);
+			Pcm16.quantize(mBlock, 0, blockLength, Pcm16.SCALE_GENERATOR, dst, offset);
+			offset += blockLength;
+		}
+	}
+
+	/**
+	 * Render the next samples as 16-bit PCM into a heap or direct buffer, starting at its current
+	 * position and in its byte order, clamped to full scale. The buffer position is advanced past
+	 * the written samples.
+	 *
+	 * @param dst destination buffer
+	 * @param length number of samples to write
+	 */
+	public void render(ByteBuffer dst, int length)
+	{
+		ShortBuffer view = Pcm16.view(dst, length);
+		int remaining = length;
+		while(remaining > 0)
+		{
+			int blockLength = Math.min(BLOCK_SIZE, remaining);
+			render(mBlock, 0, blockLength);
+			Pcm16.quantize(mBlock, 0, blockLength, Pcm16.SCALE_GENERATOR, mPcmBlock, view);
+			remaining -= blockLength;
+		}
+		dst.position(dst.position() + 2 * length);
+	}
+}
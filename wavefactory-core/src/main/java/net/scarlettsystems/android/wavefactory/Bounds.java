@@ -0,0 +1,23 @@
+package net.scarlettsystems.android.wavefactory;
+
+/**
+ * Range checks shared by the classes that read or write runs of caller-supplied arrays.
+ */
+final class Bounds
+{
+	private Bounds(){}
+
+	/**
+	 * @param arrayLength length of the array
+	 * @param offset index of the first element of the range
+	 * @param length number of elements in the range
+	 * @throws IndexOutOfBoundsException if the range does not lie within the array
+	 */
+	static void check(int arrayLength, int offset, int length)
+	{
+		if(offset < 0 || length < 0 || offset > arrayLength - length)
+		{
+			throw new IndexOutOfBoundsException("Range [" + offset + ", " + offset + " + " + length + ") out of bounds for length " + arrayLength);
+		}
+	}
+}
@@ -0,0 +1,372 @@
+package net.scarlettsystems.android.wavefactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Persistent cache of decoded and generated sounds, so that a warm start maps a file instead of
+ * decoding or generating the sound again. Each entry is one file in the cache directory, holding
+ * a small header and the samples as little-endian 16-bit PCM or float. Entries are loaded by
+ * memory mapping, so their samples stay in the page cache rather than on the Java heap.
+ *
+ * Entries are keyed by strings that must change whenever the sound would, such as a resource ID
+ * together with the time the app was last updated, or the parameters of a generator. The key is
+ * stored in the entry and checked when it is loaded, and entries written by another format
+ * version are ignored, so stale or colliding files are never returned.
+ *
+ * Entries are written to a temporary file and renamed into place, so a crash never leaves a
+ * partial entry behind. Instances can be used from any number of threads and processes.
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public final class DiskWaveCache
+{
+	/**
+	 * Version of the entry format. Entries written by any other version are ignored and replaced.
+	 */
+	public static final int FORMAT_VERSION = 1;
+
+	private static final int MAGIC = 0x43444657;
+	private static final int ENCODING_PCM16 = 1;
+	private static final int ENCODING_FLOAT = 2;
+	//Magic, version, encoding, sample count and key length
+	private static final int FIXED_HEADER_SIZE = 20;
+	//Sample data starts on a multiple of this, so mapped views are aligned
+	private static final int DATA_ALIGNMENT = 8;
+	private static final int MAX_KEY_LENGTH = 4096;
+	private static final int WRITE_BUFFER_SIZE = 16384;
+	private static final String SUFFIX = ".wfc";
+	private static final String TEMP_SUFFIX = ".tmp";
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final File mDirectory;
+
+	/**
+	 * @param directory directory for cache entries, such as a subdirectory of the app's cache
+	 *                  directory; it is created when the first entry is written
+	 */
+	public DiskWaveCache(File directory)
+	{
+		if(directory == null)
+		{
+			throw new IllegalArgumentException("Directory must not be null.");
+		}
+		mDirectory = directory;
+	}
+
+	public File getDirectory()
+	{
+		return mDirectory;
+	}
+
+	/**
+	 * Map a cached sound. Entries that are damaged, or were written by another format version,
+	 * are deleted. Entries that cannot be read for other reasons, such as running out of file
+	 * descriptors, are left for a later call.
+	 *
+	 * @param key key of the sound
+	 * @return mapped samples, or null if the sound is not cached
+	 */
+	public SampleBuffer get(String key)
+	{
+		File file = fileFor(key);
+		if(!file.isFile()){return null;}
+		try
+		{
+			SampleBuffer samples = map(file, key);
+			if(samples == null)
+			{
+				//Another key with the same file name; leave it for its owner
+				return null;
+			}
+			//The modification time orders entries for trim()
+			file.setLastModified(System.currentTimeMillis());
+			return samples;
+		}
+		catch (DamagedEntryException e)
+		{
+			file.delete();
+			return null;
+		}
+		catch (IOException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Store a sound, replacing any entry with the same key. Sounds held as 16-bit PCM are stored
+	 * as PCM, and all others as float.
+	 *
+	 * @param key key of the sound
+	 * @param samples samples to store
+	 * @throws IOException if the entry cannot be written
+	 */
+	public void put(String key, SampleBuffer samples) throws IOException
+	{
+		byte[] keyBytes = key.getBytes(UTF_8);
+		if(keyBytes.length > MAX_KEY_LENGTH)
+		{
+			throw new IllegalArgumentException("Key is longer than " + MAX_KEY_LENGTH + " bytes.");
+		}
+		if(!mDirectory.isDirectory() && !mDirectory.mkdirs() && !mDirectory.isDirectory())
+		{
+			throw new IOException("Cannot create directory " + mDirectory + ".");
+		}
+		File file = fileFor(key);
+		File temp = File.createTempFile(file.getName(), TEMP_SUFFIX, mDirectory);
+		boolean written = false;
+		try
+		{
+			FileChannel channel = new FileOutputStream(temp).getChannel();
+			try
+			{
+				write(channel, keyBytes, samples);
+			}
+			finally
+			{
+				channel.close();
+			}
+			if(!temp.renameTo(file))
+			{
+				//Renaming over an existing file fails on some file systems
+				file.delete();
+				if(!temp.renameTo(file))
+				{
+					throw new IOException("Cannot move " + temp + " to " + file + ".");
+				}
+			}
+			written = true;
+		}
+		finally
+		{
+			if(!written){temp.delete();}
+		}
+	}
+
+	/**
+	 * @param key key of the sound
+	 * @return true if an entry was deleted
+	 */
+	public boolean remove(String key)
+	{
+		return fileFor(key).delete();
+	}
+
+	/**
+	 * Delete every entry, and any temporary files left by a crash mid-write. Sounds already mapped
+	 * remain readable.
+	 */
+	public void clear()
+	{
+		File[] files = mDirectory.listFiles();
+		if(files == null){return;}
+		for(File file : files)
+		{
+			String name = file.getName();
+			if(name.endsWith(SUFFIX) || name.endsWith(TEMP_SUFFIX)){file.delete();}
+		}
+	}
+
+	/**
+	 * @return total size of the entries in bytes
+	 */
+	public long getSizeBytes()
+	{
+		long size = 0;
+		for(File file : listEntries())
+		{
+			size += file.length();
+		}
+		return size;
+	}
+
+	/**
+	 * Delete the least recently used entries until the cache holds at most {@code maxBytes}.
+	 *
+	 * @param maxBytes size to shrink to in bytes
+	 */
+	public void trim(long maxBytes)
+	{
+		File[] files = listEntries();
+		final long[] lastUsed = new long[files.length];
+		Integer[] order = new Integer[files.length];
+		long size = 0;
+		for(int c = 0; c < files.length; c++)
+		{
+			lastUsed[c] = files[c].lastModified();
+			order[c] = c;
+			size += files[c].length();
+		}
+		Arrays.sort(order, new Comparator<Integer>()
+		{
+			@Override
+			public int compare(Integer a, Integer b)
+			{
+				return lastUsed[a] < lastUsed[b] ? -1 : lastUsed[a] > lastUsed[b] ? 1 : 0;
+			}
+		});
+		for(int c = 0; c < order.length && size > maxBytes; c++)
+		{
+			File file = files[order[c]];
+			long length = file.length();
+			if(file.delete()){size -= length;}
+		}
+	}
+
+	private File[] listEntries()
+	{
+		File[] files = mDirectory.listFiles();
+		if(files == null){return new File[0];}
+		int count = 0;
+		for(File file : files)
+		{
+			if(file.getName().endsWith(SUFFIX)){files[count++] = file;}
+		}
+		return Arrays.copyOf(files, count);
+	}
+
+	private File fileFor(String key)
+	{
+		//64-bit FNV-1a; collisions are caught by the key stored in the entry
+		long hash = 0xCBF29CE484222325L;
+		for(int c = 0; c < key.length(); c++)
+		{
+			hash ^= key.charAt(c);
+			hash *= 0x100000001B3L;
+		}
+		return new File(mDirectory, Long.toHexString(hash) + SUFFIX);
+	}
+
+	private static int dataStart(int keyLength)
+	{
+		int headerSize = FIXED_HEADER_SIZE + keyLength;
+		return (headerSize + DATA_ALIGNMENT - 1) / DATA_ALIGNMENT * DATA_ALIGNMENT;
+	}
+
+	private static void write(FileChannel channel, byte[] key, SampleBuffer samples) throws IOException
+	{
+		boolean pcm16 = samples.isPcm16();
+		int length = samples.length();
+		ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		ByteBuffer header = ByteBuffer.allocate(dataStart(key.length)).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(pcm16 ? ENCODING_PCM16 : ENCODING_FLOAT).putInt(length).putInt(key.length).put(key);
+		header.clear();
+		writeFully(channel, header);
+
+		int bytesPerSample = pcm16 ? 2 : 4;
+		int blockLength = WRITE_BUFFER_SIZE / bytesPerSample;
+		short[] shorts = pcm16 ? new short[Math.min(length, blockLength)] : null;
+		float[] floats = pcm16 ? null : new float[Math.min(length, blockLength)];
+		for(int position = 0; position < length; position += blockLength)
+		{
+			int count = Math.min(blockLength, length - position);
+			buffer.clear();
+			if(pcm16)
+			{
+				samples.readPcm16(position, shorts, 0, count);
+				buffer.asShortBuffer().put(shorts, 0, count);
+			}
+			else
+			{
+				samples.read(position, floats, 0, count);
+				buffer.asFloatBuffer().put(floats, 0, count);
+			}
+			buffer.limit(count * bytesPerSample);
+			writeFully(channel, buffer);
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException
+	{
+		while(buffer.hasRemaining())
+		{
+			channel.write(buffer);
+		}
+	}
+
+	/**
+	 * @return mapped samples, or null if the entry belongs to another key
+	 * @throws DamagedEntryException if the entry is damaged or has another format
+	 * @throws IOException if the entry cannot be read
+	 */
+	private static SampleBuffer map(File file, String key) throws IOException
+	{
+		FileInputStream stream = new FileInputStream(file);
+		try
+		{
+			FileChannel channel = stream.getChannel();
+			long fileLength = channel.size();
+			if(fileLength < FIXED_HEADER_SIZE)
+			{
+				throw new DamagedEntryException("Entry is too short.");
+			}
+			ByteBuffer header = ByteBuffer.allocate(FIXED_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			readFully(channel, header);
+			header.flip();
+			int magic = header.getInt();
+			int version = header.getInt();
+			int encoding = header.getInt();
+			int length = header.getInt();
+			int keyLength = header.getInt();
+			if(magic != MAGIC || version != FORMAT_VERSION)
+			{
+				throw new DamagedEntryException("Entry has another format.");
+			}
+			if((encoding != ENCODING_PCM16 && encoding != ENCODING_FLOAT) || length < 0 || keyLength < 0 || keyLength > MAX_KEY_LENGTH)
+			{
+				throw new DamagedEntryException("Entry header is damaged.");
+			}
+			int bytesPerSample = encoding == ENCODING_PCM16 ? 2 : 4;
+			long dataStart = dataStart(keyLength);
+			if(fileLength != dataStart + (long)length * bytesPerSample)
+			{
+				throw new DamagedEntryException("Entry is truncated.");
+			}
+			ByteBuffer storedKey = ByteBuffer.allocate(keyLength);
+			readFully(channel, storedKey);
+			if(!key.equals(new String(storedKey.array(), UTF_8)))
+			{
+				return null;
+			}
+			//A mapping stays valid after its channel is closed
+			ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, dataStart, (long)length * bytesPerSample).order(ByteOrder.LITTLE_ENDIAN);
+			return encoding == ENCODING_PCM16 ? SampleBuffer.wrap(data.asShortBuffer()) : SampleBuffer.wrap(data.asFloatBuffer());
+		}
+		finally
+		{
+			stream.close();
+		}
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException
+	{
+		while(buffer.hasRemaining())
+		{
+			if(channel.read(buffer) < 0)
+			{
+				throw new DamagedEntryException("Entry is truncated.");
+			}
+		}
+	}
+
+	/**
+	 * Thrown for entries whose contents are invalid, as opposed to entries that could not be read.
+	 */
+	private static final class DamagedEntryException extends IOException
+	{
+		private static final long serialVersionUID = 1L;
+
+		DamagedEntryException(String message)
+		{
+			super(message);
+		}
+	}
+}
@@ -0,0 +1,441 @@
+package net.scarlettsystems.android.wavefactory;
+
+import android.support.annotation.IntDef;
+
+import java.lang.annotation.Retention;
+
+import static java.lang.annotation.RetentionPolicy.SOURCE;
+
+/**
+ * Attack-decay-sustain-release envelope that scales samples in place, block by block. The level
+ * rises from silence over the attack, falls to the sustain level over the decay, and holds there
+ * until the envelope is released or its end approaches, then falls back to silence over the
+ * release. Segments are either straight lines or exponential curves spanning 60 dB.
+ *
+ * Levels are produced by a per-sample recurrence, an addition for lines or a multiplication for
+ * curves, resynchronised to the exact level every {@value #RESYNC_INTERVAL} samples of the
+ * envelope, however it is split into blocks. Sustained stretches at full level are skipped
+ * entirely. Nothing is allocated while applying.
+ *
+ * With a fixed length, the release is timed to reach silence on the last sample; if the tone is
+ * too short for that, the level follows whichever of the two is lower, the rising stages or the
+ * release. {@link #ramp(int, long)} builds the linear fade-in and fade-out used by
+ * {@link WaveFactory}.
+ *
+ * Instances are not thread-safe.
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public class Envelope
+{
+	@Retention(SOURCE)
+	@IntDef({SHAPE_LINEAR, SHAPE_EXPONENTIAL})
+	public @interface Shape {}
+	public static final int SHAPE_LINEAR = 0;
+	public static final int SHAPE_EXPONENTIAL = 1;
+
+	public static final long LENGTH_UNBOUNDED = -1;
+
+	static final int RESYNC_INTERVAL = 256;
+
+	//Exponential segments cover a level range of 1000:1, i.e. 60 dB
+	private static final double CURVE_RANGE = 1000.0;
+	private static final double CURVE_RATE = Math.log(1 + CURVE_RANGE);
+	private static final double CURVE_SCALE = 1 / CURVE_RANGE;
+
+	private int mShape = SHAPE_LINEAR;
+	private int mAttack = 0;
+	private int mDecay = 0;
+	private float mSustain = 1.0f;
+	private int mRelease = 0;
+	private long mLength = LENGTH_UNBOUNDED;
+	private long mPosition = 0;
+
+	//Current segment of the rising stages and of the release: level = base + scale * E(u)
+	private double mBase, mScale, mValue, mStep;
+	private double mReleaseBase, mReleaseScale, mReleaseValue, mReleaseStep;
+
+	/**
+	 * Create a flat envelope at full level with no length.
+	 */
+	public Envelope(){}
+
+	/**
+	 * Create a linear fade-in and fade-out of equal length, as applied by {@link WaveFactory}.
+	 *
+	 * @param rampSamples length of each ramp in samples
+	 * @param length total length in samples, or {@link #LENGTH_UNBOUNDED}
+	 * @return envelope
+	 */
+	public static Envelope ramp(int rampSamples, long length)
+	{
+		Envelope envelope = new Envelope();
+		envelope.setAttack(rampSamples);
+		envelope.setRelease(rampSamples);
+		envelope.setLength(length);
+		return envelope;
+	}
+
+	/**
+	 * Create an attack-decay-sustain-release envelope that sustains until {@link #release()}.
+	 *
+	 * @param attack attack length in samples
+	 * @param decay decay length in samples
+	 * @param sustain sustain level (0.0~1.0 range)
+	 * @param release release length in samples, from full level to silence
+	 * @param shape shape of the segments
+	 * @return envelope
+	 */
+	public static Envelope adsr(int attack, int decay, float sustain, int release, @Shape int shape)
+	{
+		Envelope envelope = new Envelope();
+		envelope.setAttack(attack);
+		envelope.setDecay(decay);
+		envelope.setSustain(sustain);
+		envelope.setRelease(release);
+		envelope.setShape(shape);
+		return envelope;
+	}
+
+	public void setShape(@Shape int shape)
+	{
+		if(shape != SHAPE_LINEAR && shape != SHAPE_EXPONENTIAL)
+		{
+			throw new IllegalArgumentException("Invalid shape.");
+		}
+		mShape = shape;
+	}
+
+	public @Shape int getShape()
+	{
+		return mShape;
+	}
+
+	/**
+	 * @param samples number of samples to rise from silence to full level
+	 */
+	public void setAttack(int samples)
+	{
+		mAttack = checkDuration(samples);
+	}
+
+	public int getAttack()
+	{
+		return mAttack;
+	}
+
+	/**
+	 * @param samples number of samples to fall from full level to the sustain level
+	 */
+	public void setDecay(int samples)
+	{
+		mDecay = checkDuration(samples);
+	}
+
+	public int getDecay()
+	{
+		return mDecay;
+	}
+
+	/**
+	 * @param level level held after the decay (0.0~1.0 range)
+	 */
+	public void setSustain(float level)
+	{
+		if(level < 0 || level > 1)
+		{
+			throw new IllegalArgumentException("Sustain level must be within 0.0~1.0.");
+		}
+		mSustain = level;
+	}
+
+	public float getSustain()
+	{
+		return mSustain;
+	}
+
+	/**
+	 * @param samples number of samples to fall from full level to silence; lower levels take
+	 *                proportionally less
+	 */
+	public void setRelease(int samples)
+	{
+		mRelease = checkDuration(samples);
+	}
+
+	public int getRelease()
+	{
+		return mRelease;
+	}
+
+	/**
+	 * Set the total length, measured from the last {@link #reset()}. The release ends on the last
+	 * sample, after which the envelope is silent.
+	 *
+	 * @param numSamples length in samples, or {@link #LENGTH_UNBOUNDED}
+	 */
+	public void setLength(long numSamples)
+	{
+		mLength = numSamples < 0 ? LENGTH_UNBOUNDED : numSamples;
+	}
+
+	public long getLength()
+	{
+		return mLength;
+	}
+
+	/**
+	 * Start the release from the current position and level.
+	 */
+	public void release()
+	{
+		double level = levelAt(mPosition);
+		long remaining;
+		if(mShape == SHAPE_EXPONENTIAL)
+		{
+			remaining = Math.round(mRelease * Math.log(1 + level * CURVE_RANGE) / CURVE_RATE);
+		}
+		else
+		{
+			remaining = mRelease == 0 ? 0 : Math.round(level * mRelease);
+		}
+		if(mLength == LENGTH_UNBOUNDED || mPosition + remaining < mLength)
+		{
+			mLength = mPosition + remaining;
+		}
+	}
+
+	/**
+	 * @return true if the envelope has a length and has been applied up to it
+	 */
+	public boolean isFinished()
+	{
+		return mLength != LENGTH_UNBOUNDED && mPosition >= mLength;
+	}
+
+	/**
+	 * @return number of samples applied since the last {@link #reset()}
+	 */
+	public long getPosition()
+	{
+		return mPosition;
+	}
+
+	/**
+	 * @return level that will be applied to the next sample
+	 */
+	public float getLevel()
+	{
+		return (float)levelAt(mPosition);
+	}
+
+	/**
+	 * Return to the start of the attack.
+	 */
+	public void reset()
+	{
+		mPosition = 0;
+	}
+
+	void seek(long position)
+	{
+		mPosition = position;
+	}
+
+	/**
+	 * Scale samples by the envelope and advance past them.
+	 *
+	 * @param dst samples to scale in place
+	 * @param offset index of the first sample
+	 * @param length number of samples
+	 */
+	public void apply(float[] dst, int offset, int length)
+	{
+		apply(dst, offset, length, 1.0f);
+	}
+
+	/**
+	 * Scale samples by the envelope and a constant gain, and advance past them.
+	 *
+	 * @param dst samples to scale in place
+	 * @param offset index of the first sample
+	 * @param length number of samples
+	 * @param gain constant gain applied together with the envelope
+	 */
+	public void apply(float[] dst, int offset, int length, float gain)
+	{
+		if(offset < 0 || length < 0 || offset > dst.length - length)
+		{
+			throw new IndexOutOfBoundsException("Range [" + offset + ", " + offset + " + " + length + ") out of bounds for length " + dst.length);
+		}
+		int end = offset + length;
+		while(offset < end)
+		{
+			long position = mPosition;
+			//Resync on absolute multiples of the interval, so levels do not depend on block sizes
+			long boundary = Math.min(position + end - offset, (position / RESYNC_INTERVAL + 1) * RESYNC_INTERVAL);
+			if(mLength != LENGTH_UNBOUNDED)
+			{
+				if(position >= mLength)
+				{
+					for(int c = offset; c < end; c++)
+					{
+						dst[c] = 0;
+					}
+					mPosition += end - offset;
+					return;
+				}
+				long releaseStart = mLength - mRelease;
+				boundary = Math.min(boundary, position < releaseStart ? releaseStart : mLength);
+			}
+			boolean releasing = mLength != LENGTH_UNBOUNDED && position >= mLength - mRelease;
+			boolean sustaining = position >= (long)mAttack + mDecay;
+			if(position < mAttack)
+			{
+				boundary = Math.min(boundary, mAttack);
+			}
+			else if(!sustaining)
+			{
+				boundary = Math.min(boundary, (long)mAttack + mDecay);
+			}
+			int count = (int)(boundary - position);
+
+			if(sustaining && !releasing)
+			{
+				scale(dst, offset, count, gain * mSustain);
+			}
+			else
+			{
+				startSegment(position);
+				if(releasing){startRelease(position);}
+				applySegment(dst, offset, count, gain, releasing);
+			}
+			offset += count;
+			mPosition += count;
+		}
+	}
+
+	private static void scale(float[] dst, int offset, int length, float gain)
+	{
+		if(gain == 1){return;}
+		for(int c = offset; c < offset + length; c++)
+		{
+			dst[c] *= gain;
+		}
+	}
+
+	private void applySegment(float[] dst, int offset, int length, float gain, boolean releasing)
+	{
+		boolean exponential = mShape == SHAPE_EXPONENTIAL;
+		double value = mValue, releaseValue = mReleaseValue;
+		for(int c = offset; c < offset + length; c++)
+		{
+			double level = mBase + mScale * value;
+			if(releasing)
+			{
+				double releaseLevel = mReleaseBase + mReleaseScale * releaseValue;
+				if(releaseLevel < level){level = releaseLevel;}
+				releaseValue = exponential ? releaseValue * mReleaseStep : releaseValue + mReleaseStep;
+			}
+			dst[c] *= gain * (float)level;
+			value = exponential ? value * mStep : value + mStep;
+		}
+	}
+
+	/**
+	 * Set up the attack, decay or sustain segment containing a position.
+	 */
+	private void startSegment(long position)
+	{
+		double u, du;
+		if(position < mAttack)
+		{
+			//Attack: line u, or curve 1 - c(1 - u), with u rising from 0 to 1
+			u = position / (double)mAttack;
+			du = 1.0 / mAttack;
+			if(mShape == SHAPE_EXPONENTIAL)
+			{
+				setCurve(1 + CURVE_SCALE, -CURVE_SCALE, 1 - u, -du);
+				return;
+			}
+			mBase = 0;
+			mScale = 1;
+		}
+		else if(position < (long)mAttack + mDecay)
+		{
+			//Decay: from 1 down to the sustain level
+			u = (position - mAttack) / (double)mDecay;
+			du = 1.0 / mDecay;
+			double drop = 1 - mSustain;
+			if(mShape == SHAPE_EXPONENTIAL)
+			{
+				setCurve(mSustain - drop * CURVE_SCALE, drop * CURVE_SCALE, 1 - u, -du);
+				return;
+			}
+			mBase = 1;
+			mScale = -drop;
+		}
+		else
+		{
+			mBase = mSustain;
+			mScale = 0;
+			mValue = 0;
+			mStep = mShape == SHAPE_EXPONENTIAL ? 1 : 0;
+			return;
+		}
+		mValue = u;
+		mStep = du;
+	}
+
+	private void setCurve(double base, double scale, double u, double du)
+	{
+		mBase = base;
+		mScale = scale;
+		mValue = Math.exp(CURVE_RATE * u);
+		mStep = Math.exp(CURVE_RATE * du);
+	}
+
+	/**
+	 * Set up the release at a position, falling linearly or along c(u) as u falls to 0 at the end.
+	 */
+	private void startRelease(long position)
+	{
+		double u = (mLength - position) / (double)mRelease;
+		double du = -1.0 / mRelease;
+		if(mShape == SHAPE_EXPONENTIAL)
+		{
+			mReleaseBase = -CURVE_SCALE;
+			mReleaseScale = CURVE_SCALE;
+			mReleaseValue = Math.exp(CURVE_RATE * u);
+			mReleaseStep = Math.exp(CURVE_RATE * du);
+		}
+		else
+		{
+			mReleaseBase = 0;
+			mReleaseScale = 1;
+			mReleaseValue = u;
+			mReleaseStep = du;
+		}
+	}
+
+	private double levelAt(long position)
+	{
+		if(mLength != LENGTH_UNBOUNDED && position >= mLength){return 0;}
+		startSegment(position);
+		double level = mBase + mScale * mValue;
+		if(mLength != LENGTH_UNBOUNDED && position >= mLength - mRelease)
+		{
+			startRelease(position);
+			level = Math.min(level, mReleaseBase + mReleaseScale * mReleaseValue);
+		}
+		return level;
+	}
+
+	private static int checkDuration(int samples)
+	{
+		if(samples < 0)
+		{
+			throw new IllegalArgumentException("Duration must not be negative.");
+		}
+		return samples;
+	}
+}
@@ -0,0 +1,81 @@
+package net.scarlettsystems.android.wavefactory;
+
+/**
+ * {@link AudioRingBuffer} of float samples.
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public class FloatRingBuffer extends AudioRingBuffer
+{
+	private final float[] mData;
+
+	/**
+	 * @param capacity minimum number of samples to hold, rounded up to a power of two
+	 */
+	public FloatRingBuffer(int capacity)
+	{
+		super(capacity);
+		mData = new float[mCapacity];
+	}
+
+	/**
+	 * Write as many samples as fit. Producer thread only.
+	 *
+	 * @param src source samples
+	 * @param offset index of the first sample to write
+	 * @param length number of samples to write
+	 * @return number of samples written
+	 */
+	public int write(float[] src, int offset, int length)
+	{
+		Bounds.check(src.length, offset, length);
+		int count = claimWrite(length);
+		int start = (int)(writeIndex() & mMask);
+		int first = Math.min(count, mCapacity - start);
+		System.arraycopy(src, offset, mData, start, first);
+		System.arraycopy(src, offset + first, mData, 0, count - first);
+		publishWrite(count);
+		return count;
+	}
+
+	/**
+	 * Render an oscillator straight into the buffer, as many samples as fit. Producer thread only.
+	 *
+	 * @param oscillator oscillator to render
+	 * @param length number of samples to render
+	 * @return number of samples written
+	 */
+	public int write(Oscillator oscillator, int length)
+	{
+		if(length < 0)
+		{
+			throw new IllegalArgumentException("Length must not be negative.");
+		}
+		int count = claimWrite(length);
+		int start = (int)(writeIndex() & mMask);
+		int first = Math.min(count, mCapacity - start);
+		oscillator.render(mData, start, first);
+		oscillator.render(mData, 0, count - first);
+		publishWrite(count);
+		return count;
+	}
+
+	/**
+	 * Read as many samples as are available. Consumer thread only.
+	 *
+	 * @param dst destination array
+	 * @param offset index in {@code dst} of the first sample to read
+	 * @param length number of samples to read
+	 * @return number of samples read
+	 */
+	public int read(float[] dst, int offset, int length)
+	{
+		Bounds.check(dst.length, offset, length);
+		int count = claimRead(length);
+		int start = (int)(readIndex() & mMask);
+		int first = Math.min(count, mCapacity - start);
+		System.arraycopy(mData, start, dst, offset, first);
+		System.arraycopy(mData, 0, dst, offset + first, count - first);
+		publishRead(count);
+		return count;
+	}
+}
@@ -0,0 +1,204 @@
+package net.scarlettsystems.android.wavefactory;
+
+import android.support.annotation.IntDef;
+
+import java.lang.annotation.Retention;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.lang.annotation.RetentionPolicy.SOURCE;
+
+/**
+ * {@link WaveCache} bounded by the total size of its samples. When the budget is exceeded,
+ * unpinned sounds are evicted either least recently used first, or largest first so that one
+ * long recording gives way before many short sounds.
+ *
+ * Lookups are lock-free, so any number of threads can read concurrently. Only adding, evicting
+ * and pinning sounds is serialised. Recency is tracked with a timestamp per sound rather than
+ * by reordering a shared list, so least-recently-used order is approximate under contention.
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public class LruWaveCache implements WaveCache
+{
+	@Retention(SOURCE)
+	@IntDef({EVICT_LEAST_RECENT, EVICT_LARGEST})
+	public @interface EvictionPolicy {}
+	public static final int EVICT_LEAST_RECENT = 0;
+	public static final int EVICT_LARGEST = 1;
+
+	private final ConcurrentHashMap<Integer, Entry> mSounds = new ConcurrentHashMap<>();
+	private final Set<Integer> mPinned = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+	private final Comparator<Map.Entry<Integer, Entry>> mEvictionOrder;
+	private volatile long mCapacityBytes;
+	private volatile long mSizeBytes = 0;
+
+	/**
+	 * Create a cache that evicts least recently used sounds first.
+	 *
+	 * @param capacityBytes memory budget in bytes
+	 */
+	public LruWaveCache(long capacityBytes)
+	{
+		this(capacityBytes, EVICT_LEAST_RECENT);
+	}
+
+	/**
+	 * @param capacityBytes memory budget in bytes
+	 * @param policy order in which unpinned sounds are evicted
+	 */
+	public LruWaveCache(long capacityBytes, @EvictionPolicy int policy)
+	{
+		if(capacityBytes < 0)
+		{
+			throw new IllegalArgumentException("Capacity must not be negative.");
+		}
+		mCapacityBytes = capacityBytes;
+		mEvictionOrder = policy == EVICT_LARGEST ? LARGEST_FIRST : LEAST_RECENT_FIRST;
+	}
+
+	/**
+	 * Look up a sound without taking any lock. Only the sound's access time is written.
+	 */
+	@Override
+	public SampleBuffer get(int id)
+	{
+		Entry entry = mSounds.get(id);
+		if(entry == null){return null;}
+		entry.mLastAccess = System.nanoTime();
+		return entry.mSamples;
+	}
+
+	@Override
+	public synchronized void put(int id, SampleBuffer samples)
+	{
+		Entry previous = mSounds.put(id, new Entry(samples));
+		long size = mSizeBytes + sizeOf(samples);
+		if(previous != null)
+		{
+			size -= sizeOf(previous.mSamples);
+		}
+		mSizeBytes = size;
+		trim(mCapacityBytes);
+	}
+
+	@Override
+	public synchronized boolean evict(int id)
+	{
+		Entry removed = mSounds.remove(id);
+		if(removed == null){return false;}
+		mSizeBytes -= sizeOf(removed.mSamples);
+		return true;
+	}
+
+	@Override
+	public synchronized void trim(long maxBytes)
+	{
+		if(mSizeBytes <= maxBytes){return;}
+		List<Map.Entry<Integer, Entry>> candidates = new ArrayList<>(mSounds.size());
+		for(Map.Entry<Integer, Entry> entry : mSounds.entrySet())
+		{
+			if(!mPinned.contains(entry.getKey()))
+			{
+				candidates.add(entry);
+			}
+		}
+		Collections.sort(candidates, mEvictionOrder);
+		for(int c = 0; c < candidates.size() && mSizeBytes > maxBytes; c++)
+		{
+			Map.Entry<Integer, Entry> candidate = candidates.get(c);
+			if(mSounds.remove(candidate.getKey(), candidate.getValue()))
+			{
+				mSizeBytes -= sizeOf(candidate.getValue().mSamples);
+			}
+		}
+	}
+
+	@Override
+	public synchronized void clear()
+	{
+		mSounds.clear();
+		mSizeBytes = 0;
+	}
+
+	@Override
+	public synchronized void pin(int id)
+	{
+		mPinned.add(id);
+	}
+
+	@Override
+	public synchronized void unpin(int id)
+	{
+		mPinned.remove(id);
+		trim(mCapacityBytes);
+	}
+
+	/**
+	 * Change the memory budget, evicting sounds if the cache is now over it.
+	 *
+	 * @param capacityBytes memory budget in bytes
+	 */
+	public synchronized void setCapacityBytes(long capacityBytes)
+	{
+		if(capacityBytes < 0)
+		{
+			throw new IllegalArgumentException("Capacity must not be negative.");
+		}
+		mCapacityBytes = capacityBytes;
+		trim(mCapacityBytes);
+	}
+
+	@Override
+	public long getCapacityBytes()
+	{
+		return mCapacityBytes;
+	}
+
+	@Override
+	public long getSizeBytes()
+	{
+		return mSizeBytes;
+	}
+
+	private static long sizeOf(SampleBuffer samples)
+	{
+		return samples.getSizeBytes();
+	}
+
+	private static final class Entry
+	{
+		final SampleBuffer mSamples;
+		volatile long mLastAccess;
+
+		Entry(SampleBuffer samples)
+		{
+			mSamples = samples;
+			mLastAccess = System.nanoTime();
+		}
+	}
+
+	private static final Comparator<Map.Entry<Integer, Entry>> LEAST_RECENT_FIRST = new Comparator<Map.Entry<Integer, Entry>>()
+	{
+		@Override
+		public int compare(Map.Entry<Integer, Entry> a, Map.Entry<Integer, Entry> b)
+		{
+			long difference = a.getValue().mLastAccess - b.getValue().mLastAccess;
+			return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+		}
+	};
+
+	private static final Comparator<Map.Entry<Integer, Entry>> LARGEST_FIRST = new Comparator<Map.Entry<Integer, Entry>>()
+	{
+		@Override
+		public int compare(Map.Entry<Integer, Entry> a, Map.Entry<Integer, Entry> b)
+		{
+			long difference = sizeOf(b.getValue().mSamples) - sizeOf(a.getValue().mSamples);
+			return difference != 0 ? (difference < 0 ? -1 : 1) : LEAST_RECENT_FIRST.compare(a, b);
+		}
+	};
+}
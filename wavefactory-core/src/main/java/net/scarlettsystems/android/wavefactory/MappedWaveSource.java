@@ -0,0 +1,263 @@
+package net.scarlettsystems.android.wavefactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Wave file source backed by a memory-mapped file. Sample data stays in the page cache and is
+ * decoded to float one window at a time as it is read, so even very long recordings cost only a
+ * few windows of Java heap.
+ *
+ * Frames can be read in any order. When reads move sequentially from one window to the next,
+ * the following window is decoded ahead of time on a background thread.
+ *
+ * The sample data may be in any format supported by {@link WaveDecoder}, and at most 2 GB.
+ * Instances are not thread-safe.
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public class MappedWaveSource implements Closeable
+{
+	private static final int WINDOW_FRAMES = 4096;
+
+	private static final ExecutorService PREFETCHER = Executors.newSingleThreadExecutor(new ThreadFactory()
+	{
+		@Override
+		public Thread newThread(Runnable runnable)
+		{
+			Thread thread = new Thread(runnable, "WaveFactory-prefetch");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	private final ByteBuffer mData;
+	private final WaveDecoder.Kernel mKernel;
+	private final int mChannelCount;
+	private final int mSampleRate;
+	private final long mFrameCount;
+
+	private float[] mWindow;
+	private long mWindowStart = -1;
+	private int mWindowFrames = 0;
+	private float[] mSpare;
+	private Future<Integer> mPrefetch;
+	private long mPrefetchStart = -1;
+
+	/**
+	 * Map a wave file.
+	 *
+	 * @param file wave file
+	 * @throws IOException if the file cannot be read or is not a wave file in a supported format
+	 */
+	public MappedWaveSource(File file) throws IOException
+	{
+		this(new FileInputStream(file), 0, file.length(), true);
+	}
+
+	/**
+	 * Map a wave file stored within a larger file, such as an uncompressed raw resource inside an
+	 * APK. The descriptor remains owned by the caller and may be closed once this returns.
+	 *
+	 * @param fd descriptor of the containing file
+	 * @param offset byte offset of the wave file
+	 * @param length byte length of the wave file
+	 * @throws IOException if the file cannot be read or is not a wave file in a supported format
+	 */
+	public MappedWaveSource(FileDescriptor fd, long offset, long length) throws IOException
+	{
+		this(new FileInputStream(fd), offset, length, false);
+	}
+
+	private MappedWaveSource(FileInputStream stream, long offset, long length, boolean ownsStream) throws IOException
+	{
+		//A mapping stays valid after its channel is closed, so the file is only needed here
+		try
+		{
+			FileChannel channel = stream.getChannel();
+			channel.position(offset);
+			WaveFileParser info = new WaveFileParser(channel);
+			mKernel = WaveDecoder.kernelFor(info.getFormat(), info.getBitsPerSample());
+			if(mKernel == null || info.getChannelCount() < 1)
+			{
+				throw new IOException("Unsupported wave format " + info.getFormat() + " with " + info.getBitsPerSample() + " bits per sample.");
+			}
+			long dataStart = offset + info.getDataStartIndex();
+			long dataLength = length - info.getDataStartIndex();
+			if(info.getDataLength() != WaveFileParser.LENGTH_UNKNOWN)
+			{
+				dataLength = Math.min(dataLength, info.getDataLength());
+			}
+			if(dataLength > Integer.MAX_VALUE)
+			{
+				throw new IOException("Sample data larger than 2 GB cannot be mapped.");
+			}
+			mChannelCount = info.getChannelCount();
+			mSampleRate = (int)info.getSampleRate();
+			mFrameCount = dataLength / (mKernel.mBytesPerSample * mChannelCount);
+			mData = channel.map(FileChannel.MapMode.READ_ONLY, dataStart, dataLength).order(ByteOrder.LITTLE_ENDIAN);
+		}
+		finally
+		{
+			if(ownsStream){stream.close();}
+		}
+		mWindow = new float[WINDOW_FRAMES * mChannelCount];
+		mSpare = new float[WINDOW_FRAMES * mChannelCount];
+	}
+
+	public int getChannelCount()
+	{
+		return mChannelCount;
+	}
+
+	public int getSampleRate()
+	{
+		return mSampleRate;
+	}
+
+	/**
+	 * @return number of frames, i.e. samples per channel
+	 */
+	public long getFrameCount()
+	{
+		return mFrameCount;
+	}
+
+	/**
+	 * Read interleaved float samples starting at a given frame.
+	 *
+	 * @param frame index of the first frame to read
+	 * @param dst destination array
+	 * @param offset index in {@code dst} of the first sample to write
+	 * @param frames number of frames to read
+	 * @return number of frames read, which is less than requested only at the end of the data
+	 * @throws IOException if decoding ahead failed
+	 */
+	public int read(long frame, float[] dst, int offset, int frames) throws IOException
+	{
+		if(frame < 0 || frames < 0 || offset < 0 || offset > dst.length - (long)frames * mChannelCount)
+		{
+			throw new IndexOutOfBoundsException("Invalid read of " + frames + " frames at " + frame);
+		}
+		int read = 0;
+		while(read < frames && frame < mFrameCount)
+		{
+			if(frame < mWindowStart || frame >= mWindowStart + mWindowFrames)
+			{
+				moveWindow(frame);
+			}
+			int windowOffset = (int)(frame - mWindowStart);
+			int count = Math.min(frames - read, mWindowFrames - windowOffset);
+			System.arraycopy(mWindow, windowOffset * mChannelCount, dst, offset, count * mChannelCount);
+			offset += count * mChannelCount;
+			frame += count;
+			read += count;
+		}
+		return read;
+	}
+
+	private void moveWindow(long frame) throws IOException
+	{
+		long start = frame - frame % WINDOW_FRAMES;
+		boolean sequential = mWindowStart >= 0 && start == mWindowStart + WINDOW_FRAMES;
+
+		if(mPrefetch != null)
+		{
+			int frames = awaitPrefetch();
+			if(mPrefetchStart == start)
+			{
+				swapWindows(start, frames);
+				mPrefetchStart = -1;
+				prefetch(start + WINDOW_FRAMES);
+				return;
+			}
+			mPrefetchStart = -1;
+		}
+
+		mWindowFrames = decode(start, mWindow);
+		mWindowStart = start;
+		if(sequential)
+		{
+			prefetch(start + WINDOW_FRAMES);
+		}
+	}
+
+	private int awaitPrefetch() throws IOException
+	{
+		try
+		{
+			return mPrefetch.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while decoding ahead.");
+		}
+		catch (ExecutionException e)
+		{
+			throw new IOException("Decoding ahead failed.", e.getCause());
+		}
+		finally
+		{
+			mPrefetch = null;
+		}
+	}
+
+	private void swapWindows(long start, int frames)
+	{
+		float[] window = mWindow;
+		mWindow = mSpare;
+		mSpare = window;
+		mWindowStart = start;
+		mWindowFrames = frames;
+	}
+
+	private void prefetch(final long start)
+	{
+		if(start >= mFrameCount){return;}
+		final float[] target = mSpare;
+		mPrefetchStart = start;
+		mPrefetch = PREFETCHER.submit(new Callable<Integer>()
+		{
+			@Override
+			public Integer call()
+			{
+				return decode(start, target);
+			}
+		});
+	}
+
+	private int decode(long start, float[] target)
+	{
+		int frames = (int)Math.min(WINDOW_FRAMES, mFrameCount - start);
+		//Kernels read by absolute index, so the prefetch thread can share the mapping
+		int bytesPerSample = mKernel.mBytesPerSample;
+		mKernel.decode(mData, (int)(start * mChannelCount * bytesPerSample), bytesPerSample, frames * mChannelCount, target, 0, 1.0f);
+		return frames;
+	}
+
+	/**
+	 * Stop decoding ahead. The mapping itself is released once the source is garbage collected.
+	 */
+	@Override
+	public void close()
+	{
+		if(mPrefetch != null)
+		{
+			mPrefetch.cancel(false);
+			mPrefetch = null;
+			mPrefetchStart = -1;
+		}
+	}
+}
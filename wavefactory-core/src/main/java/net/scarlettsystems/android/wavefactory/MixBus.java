@@ -0,0 +1,254 @@
+package net.scarlettsystems.android.wavefactory;
+
+import android.support.annotation.IntDef;
+
+import java.lang.annotation.Retention;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.annotation.RetentionPolicy.SOURCE;
+
+/**
+ * Mixing bus that layers any number of sounds, each placed at its own offset with its own gain.
+ *
+ * The mix is produced one block at a time: every source overlapping the block is added into a
+ * small accumulator that stays in cache, and the block is then saturated once before it is
+ * written out. Layering N sounds therefore costs N additions per sample plus a single
+ * saturation, and the result does not depend on the order the sounds were added in, unlike
+ * repeated calls to {@link WaveConversion#mixWaves(float[], float[], int)}.
+ *
+ * Instances are not thread-safe.
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public class MixBus
+{
+	@Retention(SOURCE)
+	@IntDef({SATURATION_NONE, SATURATION_TANH, SATURATION_LIMITER})
+	public @interface Saturation {}
+	/**
+	 * Output the plain sum, which may exceed the range -1.0~1.0.
+	 */
+	public static final int SATURATION_NONE = 0;
+	/**
+	 * Soft-clip the sum with a fast hyperbolic tangent.
+	 */
+	public static final int SATURATION_TANH = 1;
+	/**
+	 * Limit the sum to a threshold with instant attack and exponential release.
+	 */
+	public static final int SATURATION_LIMITER = 2;
+
+	private static final int BLOCK_SIZE = 256;
+
+	private final List<Source> mSources = new ArrayList<>();
+	private final float[] mBlock = new float[BLOCK_SIZE];
+	private final float[] mScratch = new float[BLOCK_SIZE];
+	private final Saturator mSaturator = new Saturator();
+	private long mLength = 0;
+
+	/**
+	 * Add a sound to the mix at unity gain.
+	 *
+	 * @param samples float samples, which are read in place rather than copied
+	 * @param offset index in the mix of the sound's first sample
+	 * @return this bus
+	 */
+	public MixBus add(float[] samples, long offset)
+	{
+		return add(SampleBuffer.wrap(samples), offset, 1.0f);
+	}
+
+	/**
+	 * Add a sound to the mix.
+	 *
+	 * @param samples float samples, which are read in place rather than copied
+	 * @param offset index in the mix of the sound's first sample
+	 * @param gain gain applied to the sound
+	 * @return this bus
+	 */
+	public MixBus add(float[] samples, long offset, float gain)
+	{
+		return add(SampleBuffer.wrap(samples), offset, gain);
+	}
+
+	/**
+	 * Add a sound to the mix. The sound is converted to float a block at a time as it is mixed.
+	 *
+	 * @param samples decoded samples in any storage form
+	 * @param offset index in the mix of the sound's first sample
+	 * @param gain gain applied to the sound
+	 * @return this bus
+	 */
+	public MixBus add(SampleBuffer samples, long offset, float gain)
+	{
+		if(offset < 0)
+		{
+			throw new IllegalArgumentException("Offset must not be negative.");
+		}
+		mSources.add(new Source(samples, offset, gain));
+		mLength = Math.max(mLength, offset + samples.length());
+		return this;
+	}
+
+	/**
+	 * Remove every sound from the mix and reset the limiter.
+	 */
+	public void clear()
+	{
+		mSources.clear();
+		mLength = 0;
+		mSaturator.reset();
+	}
+
+	/**
+	 * @return number of sounds in the mix
+	 */
+	public int getSourceCount()
+	{
+		return mSources.size();
+	}
+
+	/**
+	 * @return length of the mix in samples, up to the end of the last sound
+	 */
+	public long getLength()
+	{
+		return mLength;
+	}
+
+	/**
+	 * @param saturation how the sum is kept in range, {@link #SATURATION_TANH} by default
+	 */
+	public void setSaturation(@Saturation int saturation)
+	{
+		mSaturator.setSaturation(saturation);
+	}
+
+	public @Saturation int getSaturation()
+	{
+		return mSaturator.getSaturation();
+	}
+
+	/**
+	 * Configure the limiter used by {@link #SATURATION_LIMITER}. Gain drops at once to keep each
+	 * sample within the threshold, then recovers towards unity by a fixed fraction each sample.
+	 *
+	 * @param threshold highest output level (0.0~1.0 range)
+	 * @param releaseSamples number of samples for the gain to recover about 63% of the way
+	 */
+	public void setLimiter(float threshold, int releaseSamples)
+	{
+		mSaturator.setLimiter(threshold, releaseSamples);
+	}
+
+	/**
+	 * Render the whole mix.
+	 *
+	 * @return float array of audio
+	 */
+	public float[] render()
+	{
+		if(mLength > Integer.MAX_VALUE)
+		{
+			throw new IllegalStateException("Mix is too long for an array.");
+		}
+		mSaturator.reset();
+		float[] output = new float[(int)mLength];
+		render(0, output, 0, output.length);
+		return output;
+	}
+
+	/**
+	 * Render part of the mix. Parts can be rendered in order to stream a mix too long to hold in
+	 * memory; the limiter carries its state from one part to the next.
+	 *
+	 * @param position index in the mix of the first sample to render
+	 * @param dst destination array
+	 * @param offset index in {@code dst} of the first sample to write
+	 * @param length number of samples to render
+	 */
+	public void render(long position, float[] dst, int offset, int length)
+	{
+		if(position < 0 || offset < 0 || length < 0 || offset > dst.length - length)
+		{
+			throw new IndexOutOfBoundsException("Invalid render of " + length + " samples at " + position);
+		}
+		int end = offset + length;
+		while(offset < end)
+		{
+			int blockLength = Math.min(BLOCK_SIZE, end - offset);
+			sum(position, blockLength);
+			mSaturator.process(mBlock, 0, blockLength);
+			System.arraycopy(mBlock, 0, dst, offset, blockLength);
+			position += blockLength;
+			offset += blockLength;
+		}
+	}
+
+	private void sum(long position, int length)
+	{
+		float[] block = mBlock;
+		for(int c = 0; c < length; c++)
+		{
+			block[c] = 0;
+		}
+		long blockEnd = position + length;
+		for(int s = 0; s < mSources.size(); s++)
+		{
+			Source source = mSources.get(s);
+			long start = Math.max(position, source.mOffset);
+			long stop = Math.min(blockEnd, source.mOffset + source.mSamples.length());
+			if(start >= stop){continue;}
+			int count = (int)(stop - start);
+			int blockOffset = (int)(start - position);
+			float gain = source.mGain;
+			if(source.mArray != null)
+			{
+				float[] samples = source.mArray;
+				int index = (int)(start - source.mOffset);
+				for(int c = 0; c < count; c++)
+				{
+					block[blockOffset + c] += samples[index + c] * gain;
+				}
+			}
+			else
+			{
+				source.mSamples.read((int)(start - source.mOffset), mScratch, 0, count);
+				for(int c = 0; c < count; c++)
+				{
+					block[blockOffset + c] += mScratch[c] * gain;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Hyperbolic tangent from the 7/6 rational approximation of Lambert's continued fraction,
+	 * clamped to &plusmn;1 where the approximation reaches 1. The absolute error is below 1e-4,
+	 * and the result never leaves the range -1.0~1.0.
+	 *
+	 * @param x input
+	 * @return approximate tanh of the input
+	 */
+	public static float tanh(float x)
+	{
+		return Saturator.tanh(x);
+	}
+
+	private static final class Source
+	{
+		final SampleBuffer mSamples;
+		//Float sources are read directly, skipping the copy through the scratch block
+		final float[] mArray;
+		final long mOffset;
+		final float mGain;
+
+		Source(SampleBuffer samples, long offset, float gain)
+		{
+			mSamples = samples;
+			mArray = samples.hasArray() ? samples.toFloatArray() : null;
+			mOffset = offset;
+			mGain = gain;
+		}
+	}
+}
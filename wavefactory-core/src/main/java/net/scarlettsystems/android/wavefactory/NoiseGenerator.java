@@ -0,0 +1,230 @@
+package net.scarlettsystems.android.wavefactory;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stateful white, pink and brown noise generator that renders into caller-supplied blocks, in the
+ * style of {@link Oscillator}. Each instance has its own xorshift64* generator, so instances on
+ * different threads never contend, and a given seed always produces the same noise however
+ * rendering is split into blocks.
+ *
+ * <ul>
+ * <li>White noise is uniformly distributed, with a flat spectrum.</li>
+ * <li>Pink noise falls by 3 dB per octave. It uses the Voss-McCartney algorithm: {@value #PINK_ROWS}
+ * random rows, where row {@code k} is renewed every {@code 2^(k + 1)} samples, are summed with a
+ * fresh white sample. Only one row changes per sample, so it costs two random numbers.</li>
+ * <li>Brown noise falls by 6 dB per octave above {@value #BROWN_CORNER} Hz. It is white noise
+ * through a leaky integrator, so it stays centred instead of drifting.</li>
+ * </ul>
+ *
+ * All three colours are scaled to the same RMS level of about -12 dBFS, so they can be swapped
+ * without a change in loudness. Pink and brown noise are near-Gaussian, and their rare peaks
+ * beyond full scale are clipped. Output is then shaped by the amplitude and an {@link Envelope},
+ * which by default neither ramps nor ends.
+ *
+ * Instances are not thread-safe.
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public class NoiseGenerator extends BlockGenerator
+{
+	public static final long LENGTH_UNBOUNDED = Envelope.LENGTH_UNBOUNDED;
+
+	static final int PINK_ROWS = 16;
+	static final int BROWN_CORNER = 10;
+
+	//RMS of every colour before the amplitude is applied
+	private static final double NOMINAL_RMS = 0.25;
+	//A uniform sample in [-1, 1) has a variance of 1/3
+	private static final float WHITE_GAIN = (float)(NOMINAL_RMS * Math.sqrt(3));
+	private static final float PINK_GAIN = (float)(NOMINAL_RMS / Math.sqrt((PINK_ROWS + 1) / 3.0));
+	private static final AtomicLong SEED_SEQUENCE = new AtomicLong(0x2545F4914F6CDD1DL);
+
+	private final int mColor;
+	private final int mSampleRate;
+	private final long mSeed;
+
+	private long mState;
+	private final float[] mPinkRows = new float[PINK_ROWS];
+	private double mPinkSum;
+	private int mPinkCounter;
+	private final double mBrownLeak;
+	private final double mBrownGain;
+	private double mBrown;
+
+	/**
+	 * Create a noise generator with a seed of its own, so every instance produces different noise.
+	 *
+	 * @param color colour of the noise
+	 * @param sampleRate sample rate in Hz
+	 */
+	public NoiseGenerator(@WaveFactory.Noise int color, int sampleRate)
+	{
+		this(color, sampleRate, SEED_SEQUENCE.getAndAdd(0x9E3779B97F4A7C15L) ^ System.nanoTime());
+	}
+
+	/**
+	 * Create a noise generator that reproduces the same noise for the same seed.
+	 *
+	 * @param color colour of the noise
+	 * @param sampleRate sample rate in Hz
+	 * @param seed seed of the random sequence
+	 */
+	public NoiseGenerator(@WaveFactory.Noise int color, int sampleRate, long seed)
+	{
+		if(color < WaveFactory.NOISE_WHITE || color > WaveFactory.NOISE_BROWN)
+		{
+			throw new IllegalArgumentException("Unknown noise colour: " + color);
+		}
+		if(sampleRate <= 0)
+		{
+			throw new IllegalArgumentException("Sampling rate must be greater than zero.");
+		}
+		mColor = color;
+		mSampleRate = sampleRate;
+		mSeed = seed;
+		mBrownLeak = Math.exp(-2 * Math.PI * BROWN_CORNER / sampleRate);
+		//The integrator's variance is that of its input divided by 1 - leak^2
+		mBrownGain = NOMINAL_RMS * Math.sqrt(3 * (1 - mBrownLeak * mBrownLeak));
+		reset();
+	}
+
+	public @WaveFactory.Noise int getColor()
+	{
+		return mColor;
+	}
+
+	public int getSampleRate()
+	{
+		return mSampleRate;
+	}
+
+	public long getSeed()
+	{
+		return mSeed;
+	}
+
+	/**
+	 * Restart the random sequence from the seed and the envelope at its beginning, so the same
+	 * noise is rendered again.
+	 */
+	@Override
+	public void reset()
+	{
+		super.reset();
+		//Spread the seed with SplitMix64, since xorshift needs a well-mixed, non-zero state
+		long z = mSeed + 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		z ^= z >>> 31;
+		mState = z != 0 ? z : 0x2545F4914F6CDD1DL;
+
+		mPinkSum = 0;
+		for(int c = 0; c < PINK_ROWS; c++)
+		{
+			mPinkRows[c] = nextUniform();
+			mPinkSum += mPinkRows[c];
+		}
+		mPinkCounter = 0;
+		//Start brown noise at its steady-state level rather than fading in from zero
+		mBrown = nextUniform() / Math.sqrt(1 - mBrownLeak * mBrownLeak);
+	}
+
+	@Override
+	void renderRaw(float[] dst, int offset, int length)
+	{
+		switch(mColor)
+		{
+			case WaveFactory.NOISE_WHITE:
+				renderWhite(dst, offset, length);
+				break;
+			case WaveFactory.NOISE_PINK:
+				renderPink(dst, offset, length);
+				break;
+			default:
+				renderBrown(dst, offset, length);
+				break;
+		}
+	}
+
+	private void renderWhite(float[] dst, int offset, int length)
+	{
+		long state = mState;
+		int end = offset + length;
+		for(int c = offset; c < end; c++)
+		{
+			state ^= state >>> 12;
+			state ^= state << 25;
+			state ^= state >>> 27;
+			dst[c] = (int)((state * 0x2545F4914F6CDD1DL) >>> 32) * (WHITE_GAIN * 0x1p-31f);
+		}
+		mState = state;
+	}
+
+	private void renderPink(float[] dst, int offset, int length)
+	{
+		float[] rows = mPinkRows;
+		long state = mState;
+		double sum = mPinkSum;
+		int counter = mPinkCounter;
+		int end = offset + length;
+		for(int c = offset; c < end; c++)
+		{
+			//Row k changes on every 2^(k + 1)th sample, so exactly one row changes at a time
+			int row = Integer.numberOfTrailingZeros(++counter);
+			if(row < PINK_ROWS)
+			{
+				state ^= state >>> 12;
+				state ^= state << 25;
+				state ^= state >>> 27;
+				float value = (int)((state * 0x2545F4914F6CDD1DL) >>> 32) * 0x1p-31f;
+				sum += value - rows[row];
+				rows[row] = value;
+			}
+			state ^= state >>> 12;
+			state ^= state << 25;
+			state ^= state >>> 27;
+			float white = (int)((state * 0x2545F4914F6CDD1DL) >>> 32) * 0x1p-31f;
+			dst[c] = clip((float)(sum + white) * PINK_GAIN);
+		}
+		mState = state;
+		mPinkSum = sum;
+		mPinkCounter = counter;
+	}
+
+	private void renderBrown(float[] dst, int offset, int length)
+	{
+		long state = mState;
+		double brown = mBrown;
+		double leak = mBrownLeak;
+		float gain = (float)mBrownGain;
+		int end = offset + length;
+		for(int c = offset; c < end; c++)
+		{
+			state ^= state >>> 12;
+			state ^= state << 25;
+			state ^= state >>> 27;
+			brown = leak * brown + (int)((state * 0x2545F4914F6CDD1DL) >>> 32) * 0x1p-31f;
+			dst[c] = clip((float)brown * gain);
+		}
+		mState = state;
+		mBrown = brown;
+	}
+
+	/**
+	 * @return uniformly distributed value in [-1, 1)
+	 */
+	private float nextUniform()
+	{
+		long state = mState;
+		state ^= state >>> 12;
+		state ^= state << 25;
+		state ^= state >>> 27;
+		mState = state;
+		return (int)((state * 0x2545F4914F6CDD1DL) >>> 32) * 0x1p-31f;
+	}
+
+	private static float clip(float value)
+	{
+		return value > 1 ? 1 : value < -1 ? -1 : value;
+	}
+}
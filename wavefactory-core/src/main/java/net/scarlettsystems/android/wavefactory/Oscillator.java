@@ -0,0 +1,183 @@
+package net.scarlettsystems.android.wavefactory;
+
+import android.support.annotation.IntDef;
+
+import java.lang.annotation.Retention;
+
+import static java.lang.annotation.RetentionPolicy.SOURCE;
+
+/**
+ * Stateful waveform generator that renders into caller-supplied blocks. Phase and envelope
+ * position carry over between calls, so a tone can be produced in pieces of any size without
+ * discontinuities, and nothing is allocated while rendering.
+ *
+ * Output is shaped by an {@link Envelope}, by default the fade-in and fade-out ramp of
+ * {@link WaveFactory}: the first {@code ramp} samples rise linearly from silence, and the last
+ * {@code ramp} samples before the end of the tone fall linearly back to silence. Any other envelope
+ * can be set instead. A tone can either have a fixed length or run until {@link #release()} is
+ * called.
+ *
+ * Instances are not thread-safe.
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public class Oscillator extends BlockGenerator
+{
+	@Retention(SOURCE)
+	@IntDef({EVALUATION_TABLE, EVALUATION_RECURRENCE})
+	public @interface Evaluation {}
+	public static final int EVALUATION_TABLE = OscillatorEngine.EVAL_TABLE;
+	public static final int EVALUATION_RECURRENCE = OscillatorEngine.EVAL_RECURRENCE;
+
+	public static final long LENGTH_UNBOUNDED = Envelope.LENGTH_UNBOUNDED;
+
+	private int mWaveform;
+	private int mEvaluation = EVALUATION_TABLE;
+	private boolean mBandLimited = true;
+	private final int mSampleRate;
+	private float mFrequency;
+	private long mIncrement;
+	private long mPhase = 0;
+	//Sine recurrence state carried between blocks, valid while the last block was a recurrence sine
+	private final double[] mRotation = new double[2];
+	private boolean mRotationValid = false;
+
+	/**
+	 * Create an oscillator of the specified waveform, frequency and sample rate. The tone is
+	 * unbounded and has no ramp until configured otherwise.
+	 *
+	 * @param waveform waveform to generate
+	 * @param frequency frequency of the waveform in Hz
+	 * @param sampleRate sample rate of the waveform in Hz
+	 */
+	public Oscillator(@WaveFactory.Waveform int waveform, float frequency, int sampleRate)
+	{
+		if(sampleRate <= 0)
+		{
+			throw new IllegalArgumentException("Sampling rate must be greater than zero.");
+		}
+		mSampleRate = sampleRate;
+		setWaveform(waveform);
+		setFrequency(frequency);
+	}
+
+	/**
+	 * Change the waveform. The phase is kept, so the change takes effect without a jump in time.
+	 *
+	 * @param waveform waveform to generate
+	 */
+	public void setWaveform(@WaveFactory.Waveform int waveform)
+	{
+		if(waveform < WaveFactory.WAVEFORM_SINE || waveform > WaveFactory.WAVEFORM_SAWTOOTH)
+		{
+			throw new IllegalArgumentException("Unknown waveform: " + waveform);
+		}
+		mWaveform = waveform;
+	}
+
+	public @WaveFactory.Waveform int getWaveform()
+	{
+		return mWaveform;
+	}
+
+	/**
+	 * Change the frequency. The phase is kept, so the change does not cause a click.
+	 *
+	 * @param frequency frequency of the waveform in Hz
+	 */
+	public void setFrequency(float frequency)
+	{
+		if(frequency <= 0)
+		{
+			throw new IllegalArgumentException("Frequency must be greater than zero.");
+		}
+		if(frequency > mSampleRate/2f)
+		{
+			throw new IllegalArgumentException("Frequency must be smaller than the nyquist frequency; i.e., half of the sampling rate.");
+		}
+		mFrequency = frequency;
+		mIncrement = OscillatorEngine.phaseIncrement(frequency, mSampleRate);
+	}
+
+	public float getFrequency()
+	{
+		return mFrequency;
+	}
+
+	public int getSampleRate()
+	{
+		return mSampleRate;
+	}
+
+	/**
+	 * Select how sine samples are evaluated. See {@link OscillatorEngine} for the accuracy of each
+	 * mode. Other waveforms are unaffected.
+	 *
+	 * @param evaluation {@link #EVALUATION_TABLE} or {@link #EVALUATION_RECURRENCE}
+	 */
+	public void setEvaluation(@Evaluation int evaluation)
+	{
+		if(evaluation != EVALUATION_TABLE && evaluation != EVALUATION_RECURRENCE)
+		{
+			throw new IllegalArgumentException("Unknown evaluation: " + evaluation);
+		}
+		mEvaluation = evaluation;
+	}
+
+	/**
+	 * Select whether square, triangular and sawtooth waves are played from band-limited wavetables,
+	 * which is the default, or computed naively from the phase. Naive waveforms have perfectly
+	 * sharp edges but alias at high frequencies.
+	 *
+	 * @param bandLimited true to play band-limited waveforms
+	 */
+	public void setBandLimited(boolean bandLimited)
+	{
+		mBandLimited = bandLimited;
+	}
+
+	public boolean isBandLimited()
+	{
+		return mBandLimited;
+	}
+
+	/**
+	 * Restart the waveform at zero phase and the envelope at its beginning.
+	 */
+	@Override
+	public void reset()
+	{
+		super.reset();
+		mPhase = 0;
+		mRotationValid = false;
+	}
+
+	/**
+	 * Jump to a position in the tone, as if that many samples had been rendered since the last
+	 * {@link #reset()} at the current frequency. The phase is computed exactly, so rendering on
+	 * from there matches a continuous render.
+	 *
+	 * @param position number of samples from the start of the tone
+	 */
+	void seek(long position)
+	{
+		setPosition(position);
+		mPhase = position * mIncrement;
+		mRotationValid = false;
+	}
+
+	@Override
+	void renderRaw(float[] dst, int offset, int length)
+	{
+		if(mBandLimited)
+		{
+			mPhase = OscillatorEngine.renderBandLimited(mWaveform, mEvaluation, mPhase, mIncrement, getPosition(),
+					mRotation, mRotationValid, dst, offset, length);
+		}
+		else
+		{
+			mPhase = OscillatorEngine.render(mWaveform, mEvaluation, mPhase, mIncrement, getPosition(),
+					mRotation, mRotationValid, dst, offset, length);
+		}
+		mRotationValid = mWaveform == WaveFactory.WAVEFORM_SINE && mEvaluation == EVALUATION_RECURRENCE;
+	}
+}
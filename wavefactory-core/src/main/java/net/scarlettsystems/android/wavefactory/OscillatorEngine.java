@@ -0,0 +1,290 @@
+package net.scarlettsystems.android.wavefactory;
+
+/**
+ * Phase-accumulator oscillator kernels used by the waveform generators.
+ *
+ * Phase is held as an unsigned 64-bit fixed-point fraction of a cycle: advancing it is a single
+ * wrapping addition, it never drifts, and the phase of sample {@code n} is exactly
+ * {@code start + n * increment}. Samples are evaluated from the phase without per-sample calls to
+ * {@link Math#sin(double)}:
+ *
+ * <ul>
+ * <li>Sine, {@link #EVAL_TABLE}: linear interpolation in a {@value #SINE_TABLE_SIZE}-entry table.
+ * Absolute error is bounded by {@code (2 * PI / SINE_TABLE_SIZE)^2 / 8}, about 3e-7, which is
+ * one hundredth of a 16-bit PCM step.</li>
+ * <li>Sine, {@link #EVAL_RECURRENCE}: a complex rotation recurrence, resynchronised to the exact
+ * phase every {@value #RESYNC_INTERVAL} samples of the tone. Absolute error stays below 1e-12
+ * before the final rounding to float.</li>
+ * <li>Square, triangular and sawtooth waves are piecewise linear in the phase and are computed
+ * directly from it under either evaluation mode. They are exact up to float rounding, and
+ * alias at high frequencies like any naively sampled discontinuous waveform.</li>
+ * <li>{@link #renderBandLimited} plays those three waveforms from {@link BandLimitedTables}
+ * instead, which is alias-free.</li>
+ * </ul>
+ */
+final class OscillatorEngine
+{
+	static final int EVAL_TABLE = 0;
+	static final int EVAL_RECURRENCE = 1;
+
+	static final int SINE_TABLE_BITS = 12;
+	static final int SINE_TABLE_SIZE = 1 << SINE_TABLE_BITS;
+	static final int RESYNC_INTERVAL = 256;
+
+	private static final int FRACTION_SHIFT = 64 - SINE_TABLE_BITS - 23;
+	private static final float FRACTION_SCALE = 1f / (1 << 23);
+	private static final long QUARTER_CYCLE = 1L << 62;
+
+	//Extra guard entry so interpolation never has to wrap the index
+	static final float[] SINE_TABLE = new float[SINE_TABLE_SIZE + 1];
+
+	static
+	{
+		for(int c = 0; c <= SINE_TABLE_SIZE; c++)
+		{
+			SINE_TABLE[c] = (float)Math.sin(2 * Math.PI * c / SINE_TABLE_SIZE);
+		}
+	}
+
+	private OscillatorEngine(){}
+
+	/**
+	 * Convert a fraction of a cycle into fixed-point phase. Whole cycles are discarded.
+	 *
+	 * @param cycles phase in cycles
+	 * @return fixed-point phase
+	 */
+	static long toPhase(double cycles)
+	{
+		cycles -= Math.floor(cycles);
+		if(cycles < 0.5)
+		{
+			return (long)(cycles * 0x1p64);
+		}
+		return (long)((cycles - 0.5) * 0x1p64) ^ Long.MIN_VALUE;
+	}
+
+	/**
+	 * Convert fixed-point phase into a fraction of a cycle in the range [0, 1).
+	 *
+	 * @param phase fixed-point phase
+	 * @return phase in cycles
+	 */
+	static double toCycles(long phase)
+	{
+		return (phase >>> 11) * 0x1p-53;
+	}
+
+	/**
+	 * Phase advance per sample for a given frequency and sample rate.
+	 *
+	 * @param frequency frequency in Hz
+	 * @param sampleRate sample rate in Hz
+	 * @return fixed-point phase increment
+	 */
+	static long phaseIncrement(double frequency, int sampleRate)
+	{
+		return toPhase(frequency / sampleRate);
+	}
+
+	/**
+	 * Evaluate a single sample of a waveform at the given phase. The sine wave uses the
+	 * interpolated table.
+	 *
+	 * @param waveform waveform to evaluate
+	 * @param phase fixed-point phase
+	 * @return sample value in the range [-1, 1]
+	 */
+	static float sample(@WaveFactory.Waveform int waveform, long phase)
+	{
+		switch(waveform)
+		{
+			case WaveFactory.WAVEFORM_SINE:
+				return sineTable(phase);
+			case WaveFactory.WAVEFORM_SQUARE:
+				return square(phase);
+			case WaveFactory.WAVEFORM_TRIANGULAR:
+				return triangular(phase);
+			case WaveFactory.WAVEFORM_SAWTOOTH:
+				return sawtooth(phase);
+			default:
+				throw new IllegalArgumentException("Unknown waveform: " + waveform);
+		}
+	}
+
+	/**
+	 * Render a run of samples, advancing the phase by {@code increment} after each one.
+	 *
+	 * @param waveform waveform to render
+	 * @param evaluation sine evaluation mode, {@link #EVAL_TABLE} or {@link #EVAL_RECURRENCE}
+	 * @param phase fixed-point phase of the first sample
+	 * @param increment fixed-point phase increment per sample
+	 * @param position index of the first sample in the tone, which fixes where the sine
+	 *                 recurrence resynchronises
+	 * @param rotation sine and cosine of the recurrence, updated for the next block; may be null
+	 * @param resume whether {@code rotation} holds the state left by the previous block of the
+	 *               same tone, so a block starting between resync points carries on from it
+	 * @param output destination array
+	 * @param offset index of the first sample to write
+	 * @param length number of samples to write
+	 * @return phase of the sample following the last one written
+	 */
+	static long render(@WaveFactory.Waveform int waveform, int evaluation, long phase, long increment,
+			long position, double[] rotation, boolean resume, float[] output, int offset, int length)
+	{
+		int end = offset + length;
+		switch(waveform)
+		{
+			case WaveFactory.WAVEFORM_SINE:
+				if(evaluation == EVAL_RECURRENCE)
+				{
+					return renderSineRecurrence(phase, increment, position, rotation, resume, output, offset, length);
+				}
+				for(int c = offset; c < end; c++)
+				{
+					output[c] = sineTable(phase);
+					phase += increment;
+				}
+				return phase;
+			case WaveFactory.WAVEFORM_SQUARE:
+				for(int c = offset; c < end; c++)
+				{
+					output[c] = square(phase);
+					phase += increment;
+				}
+				return phase;
+			case WaveFactory.WAVEFORM_TRIANGULAR:
+				for(int c = offset; c < end; c++)
+				{
+					output[c] = triangular(phase);
+					phase += increment;
+				}
+				return phase;
+			case WaveFactory.WAVEFORM_SAWTOOTH:
+				for(int c = offset; c < end; c++)
+				{
+					output[c] = sawtooth(phase);
+					phase += increment;
+				}
+				return phase;
+			default:
+				throw new IllegalArgumentException("Unknown waveform: " + waveform);
+		}
+	}
+
+	/**
+	 * Render a run of samples like {@link #render}, but play square, triangular and sawtooth
+	 * waves from the band-limited table that suits the phase increment.
+	 *
+	 * @param waveform waveform to render
+	 * @param evaluation sine evaluation mode, {@link #EVAL_TABLE} or {@link #EVAL_RECURRENCE}
+	 * @param phase fixed-point phase of the first sample
+	 * @param increment fixed-point phase increment per sample
+	 * @param position index of the first sample in the tone, which fixes where the sine
+	 *                 recurrence resynchronises
+	 * @param rotation sine and cosine of the recurrence, updated for the next block; may be null
+	 * @param resume whether {@code rotation} holds the state left by the previous block of the
+	 *               same tone, so a block starting between resync points carries on from it
+	 * @param output destination array
+	 * @param offset index of the first sample to write
+	 * @param length number of samples to write
+	 * @return phase of the sample following the last one written
+	 */
+	static long renderBandLimited(@WaveFactory.Waveform int waveform, int evaluation, long phase, long increment,
+			long position, double[] rotation, boolean resume, float[] output, int offset, int length)
+	{
+		if(waveform == WaveFactory.WAVEFORM_SINE)
+		{
+			return render(waveform, evaluation, phase, increment, position, rotation, resume, output, offset, length);
+		}
+		float[] table = BandLimitedTables.select(waveform, increment);
+		return BandLimitedTables.render(table, phase, increment, output, offset, length);
+	}
+
+	private static long renderSineRecurrence(long phase, long increment, long position, double[] rotation, boolean resume,
+			float[] output, int offset, int length)
+	{
+		double step = 2 * Math.PI * toCycles(increment);
+		double stepCos = Math.cos(step);
+		double stepSin = Math.sin(step);
+		int end = offset + length;
+		int c = offset;
+		//Resynchronise on absolute multiples of the interval, so samples do not depend on where
+		//the tone is split into blocks
+		int into = (int)(position % RESYNC_INTERVAL);
+		double sin = 0, cos = 1;
+		if(into != 0)
+		{
+			if(resume)
+			{
+				sin = rotation[0];
+				cos = rotation[1];
+			}
+			else
+			{
+				//No state to carry on from, e.g. after a seek: step from the last resync point
+				double angle = 2 * Math.PI * toCycles(phase - increment * into);
+				sin = Math.sin(angle);
+				cos = Math.cos(angle);
+				for(int k = 0; k < into; k++)
+				{
+					double nextSin = sin * stepCos + cos * stepSin;
+					cos = cos * stepCos - sin * stepSin;
+					sin = nextSin;
+				}
+			}
+		}
+		while(c < end)
+		{
+			if(into == 0)
+			{
+				//Resynchronise to the exact phase so rounding errors cannot accumulate
+				double angle = 2 * Math.PI * toCycles(phase + increment * (c - offset));
+				sin = Math.sin(angle);
+				cos = Math.cos(angle);
+			}
+			int segmentEnd = Math.min(end, c + RESYNC_INTERVAL - into);
+			for(; c < segmentEnd; c++)
+			{
+				output[c] = (float)sin;
+				double nextSin = sin * stepCos + cos * stepSin;
+				cos = cos * stepCos - sin * stepSin;
+				sin = nextSin;
+			}
+			into = 0;
+		}
+		if(rotation != null)
+		{
+			rotation[0] = sin;
+			rotation[1] = cos;
+		}
+		return phase + increment * length;
+	}
+
+	static float sineTable(long phase)
+	{
+		int index = (int)(phase >>> (64 - SINE_TABLE_BITS));
+		float fraction = (int)((phase >>> FRACTION_SHIFT) & 0x7FFFFF) * FRACTION_SCALE;
+		float a = SINE_TABLE[index];
+		return a + fraction * (SINE_TABLE[index + 1] - a);
+	}
+
+	static float square(long phase)
+	{
+		if(phase == 0){return 0;}
+		return phase > 0 ? 1 : -1;
+	}
+
+	static float triangular(long phase)
+	{
+		//Shift by a quarter cycle so the folded signed phase maps linearly onto the triangle
+		int folded = (int)((phase + QUARTER_CYCLE) >> 32);
+		return Math.abs((float)folded) * 0x1p-30f - 1;
+	}
+
+	static float sawtooth(long phase)
+	{
+		//Signed phase is the offset from the nearest cycle boundary, in [-0.5, 0.5)
+		return (int)(phase >> 32) * 0x1p-31f;
+	}
+}
@@ -0,0 +1,186 @@
+package net.scarlettsystems.android.wavefactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders long tones in parallel by splitting the output into chunks, each generated by its own
+ * oscillator that starts at the chunk's phase and ramp position. The phase of sample n is exactly
+ * n times the phase increment, and chunks start on multiples of the recurrence resync interval,
+ * so every chunk computes exactly the samples a single sequential pass would.
+ *
+ * A plain thread pool is used rather than a fork/join pool, which is not available before
+ * Android 5.0. The calling thread renders the first chunk itself.
+ */
+final class ParallelRenderer
+{
+	//Shorter tones are rendered sequentially, since splitting them costs more than it saves
+	static final int MIN_CHUNK_SAMPLES = 1 << 16;
+	//Each thread gets several chunks, so one slow thread does not hold up the rest
+	private static final int CHUNKS_PER_THREAD = 4;
+	private static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+	private ParallelRenderer(){}
+
+	private static class PoolHolder
+	{
+		static final ExecutorService POOL = createPool();
+	}
+
+	private static ExecutorService createPool()
+	{
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+		{
+			private final AtomicInteger mCount = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, "WaveFactory-render-" + mCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+
+	/**
+	 * @param numSamples length of the tone in samples
+	 * @return true if the tone is long enough, and there are enough cores, to split
+	 */
+	static boolean isWorthwhile(int numSamples)
+	{
+		return THREADS > 1 && numSamples >= 2 * MIN_CHUNK_SAMPLES;
+	}
+
+	static void renderFloat(final float[] output, final @WaveFactory.Waveform int waveform, final float frequency, final int sampleRate, final float ramp)
+	{
+		final int numSamples = output.length;
+		run(numSamples, new ChunkRenderer()
+		{
+			@Override
+			public void render(int start, int length)
+			{
+				Oscillator oscillator = WaveFactory.createOscillator(waveform, frequency, sampleRate, numSamples, ramp);
+				oscillator.seek(start);
+				oscillator.render(output, start, length);
+			}
+		});
+	}
+
+	static void renderPcm16(final ByteBuffer output, final int numSamples, final @WaveFactory.Waveform int waveform, final float frequency, final int sampleRate, final float ramp)
+	{
+		Pcm16.view(output, numSamples);
+		final int base = output.position();
+		run(numSamples, new ChunkRenderer()
+		{
+			@Override
+			public void render(int start, int length)
+			{
+				//Each chunk writes through its own view, since buffer positions are not thread-safe
+				ByteBuffer dst = output.duplicate().order(output.order());
+				dst.position(base + 2 * start);
+				Oscillator oscillator = WaveFactory.createOscillator(waveform, frequency, sampleRate, numSamples, ramp);
+				oscillator.seek(start);
+				oscillator.render(dst, length);
+			}
+		});
+		output.position(base + 2 * numSamples);
+	}
+
+	private interface ChunkRenderer
+	{
+		void render(int start, int length);
+	}
+
+	private static void run(int numSamples, final ChunkRenderer renderer)
+	{
+		int chunks = Math.max(1, Math.min(THREADS * CHUNKS_PER_THREAD, numSamples / MIN_CHUNK_SAMPLES));
+		//Round chunks up to whole resync intervals, so the recurrence restarts where it would anyway
+		int alignment = OscillatorEngine.RESYNC_INTERVAL;
+		int chunkSize = ((numSamples + chunks - 1) / chunks + alignment - 1) / alignment * alignment;
+
+		List<Runnable> tasks = new ArrayList<>(chunks);
+		for(int start = 0; start < numSamples; start += chunkSize)
+		{
+			final int chunkStart = start;
+			final int chunkLength = Math.min(chunkSize, numSamples - start);
+			tasks.add(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					renderer.render(chunkStart, chunkLength);
+				}
+			});
+		}
+		runAll(tasks);
+	}
+
+	/**
+	 * @return number of tasks to split work into so every core stays busy
+	 */
+	static int taskCount()
+	{
+		return THREADS * CHUNKS_PER_THREAD;
+	}
+
+	/**
+	 * Run tasks on the render pool and wait for all of them. The calling thread runs the first
+	 * task itself. An exception thrown by any task is rethrown here.
+	 *
+	 * @param tasks tasks to run
+	 */
+	static void runAll(List<? extends Runnable> tasks)
+	{
+		if(tasks.isEmpty()){return;}
+		List<Future<?>> futures = new ArrayList<>(tasks.size() - 1);
+		for(int c = 1; c < tasks.size(); c++)
+		{
+			futures.add(PoolHolder.POOL.submit(tasks.get(c)));
+		}
+		tasks.get(0).run();
+
+		boolean interrupted = false;
+		try
+		{
+			for(Future<?> future : futures)
+			{
+				while(true)
+				{
+					try
+					{
+						future.get();
+						break;
+					}
+					catch (InterruptedException e)
+					{
+						interrupted = true;
+					}
+					catch (ExecutionException e)
+					{
+						Throwable cause = e.getCause();
+						if(cause instanceof RuntimeException){throw (RuntimeException)cause;}
+						if(cause instanceof Error){throw (Error)cause;}
+						throw new IllegalStateException(cause);
+					}
+				}
+			}
+		}
+		finally
+		{
+			if(interrupted){Thread.currentThread().interrupt();}
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package net.scarlettsystems.android.wavefactory;
+
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Fused float to 16-bit PCM quantisation into byte buffers. Samples are scaled, clamped and
+ * converted in one pass through a small scratch block, which is then bulk-copied into a
+ * {@link ShortBuffer} view of the destination, so no full-size intermediate arrays are needed.
+ * The destination's own byte order is used.
+ */
+final class Pcm16
+{
+	//Scale used by the waveform generators, which never produce -32768
+	static final float SCALE_GENERATOR = Short.MAX_VALUE;
+	//Scale used by plain float to PCM conversion
+	static final float SCALE_CONVERSION = 32768.0f;
+
+	static final int BLOCK_SIZE = 512;
+
+	private Pcm16(){}
+
+	/**
+	 * Create a 16-bit view of a buffer from its current position, after checking that it has room
+	 * for the given number of samples.
+	 *
+	 * @param dst destination buffer
+	 * @param numSamples number of samples that will be written
+	 * @return view of the destination in its byte order
+	 */
+	static ShortBuffer view(ByteBuffer dst, int numSamples)
+	{
+		if(numSamples < 0 || dst.remaining() < 2L * numSamples)
+		{
+			throw new IndexOutOfBoundsException("Buffer has room for " + dst.remaining() / 2 + " samples, " + numSamples + " requested.");
+		}
+		return dst.asShortBuffer();
+	}
+
+	/**
+	 * Quantise float samples and bulk-write them to a 16-bit view.
+	 *
+	 * @param src source samples
+	 * @param offset index of the first source sample
+	 * @param length number of samples to convert
+	 * @param scale value that a sample of 1.0 is scaled to before clamping
+	 * @param scratch scratch block of any non-zero size
+	 * @param dst destination view
+	 */
+	static void quantize(float[] src, int offset, int length, float scale, short[] scratch, ShortBuffer dst)
+	{
+		int end = offset + length;
+		while(offset < end)
+		{
+			int blockLength = Math.min(scratch.length, end - offset);
+			quantize(src, offset, blockLength, scale, scratch, 0);
+			offset += blockLength;
+			dst.put(scratch, 0, blockLength);
+		}
+	}
+
+	/**
+	 * Quantise float samples into a short array.
+	 *
+	 * @param src source samples
+	 * @param offset index of the first source sample
+	 * @param length number of samples to convert
+	 * @param scale value that a sample of 1.0 is scaled to before clamping
+	 * @param dst destination array
+	 * @param dstOffset index of the first destination sample
+	 */
+	static void quantize(float[] src, int offset, int length, float scale, short[] dst, int dstOffset)
+	{
+		for(int c = 0; c < length; c++)
+		{
+			float value = src[offset + c] * scale;
+			if(value > Short.MAX_VALUE){value = Short.MAX_VALUE;}
+			if(value < Short.MIN_VALUE){value = Short.MIN_VALUE;}
+			dst[dstOffset + c] = (short)value;
+		}
+	}
+
+	/**
+	 * Quantise float samples into a byte buffer at its current position and advance the position
+	 * past them.
+	 *
+	 * @param src source samples
+	 * @param offset index of the first source sample
+	 * @param length number of samples to convert
+	 * @param scale value that a sample of 1.0 is scaled to before clamping
+	 * @param dst destination buffer
+	 */
+	static void write(float[] src, int offset, int length, float scale, ByteBuffer dst)
+	{
+		ShortBuffer view = view(dst, length);
+		quantize(src, offset, length, scale, new short[Math.max(1, Math.min(length, BLOCK_SIZE))], view);
+		dst.position(dst.position() + 2 * length);
+	}
+}
@@ -0,0 +1,129 @@
+package net.scarlettsystems.android.wavefactory;
+
+import java.nio.ByteBuffer;
+
+/**
+ * {@link AudioRingBuffer} of 16-bit PCM samples, ready to hand to an audio sink.
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public class Pcm16RingBuffer extends AudioRingBuffer
+{
+	private final short[] mData;
+
+	/**
+	 * @param capacity minimum number of samples to hold, rounded up to a power of two
+	 */
+	public Pcm16RingBuffer(int capacity)
+	{
+		super(capacity);
+		mData = new short[mCapacity];
+	}
+
+	/**
+	 * Write as many samples as fit. Producer thread only.
+	 *
+	 * @param src source samples
+	 * @param offset index of the first sample to write
+	 * @param length number of samples to write
+	 * @return number of samples written
+	 */
+	public int write(short[] src, int offset, int length)
+	{
+		Bounds.check(src.length, offset, length);
+		int count = claimWrite(length);
+		int start = (int)(writeIndex() & mMask);
+		int first = Math.min(count, mCapacity - start);
+		System.arraycopy(src, offset, mData, start, first);
+		System.arraycopy(src, offset + first, mData, 0, count - first);
+		publishWrite(count);
+		return count;
+	}
+
+	/**
+	 * Quantise float samples into the buffer, as many as fit, with the same scaling and clamping
+	 * as {@link WaveConversion#floatToPcm(float[])}. Producer thread only.
+	 *
+	 * @param src source samples
+	 * @param offset index of the first sample to write
+	 * @param length number of samples to write
+	 * @return number of samples written
+	 */
+	public int write(float[] src, int offset, int length)
+	{
+		Bounds.check(src.length, offset, length);
+		int count = claimWrite(length);
+		int start = (int)(writeIndex() & mMask);
+		int first = Math.min(count, mCapacity - start);
+		Pcm16.quantize(src, offset, first, Pcm16.SCALE_CONVERSION, mData, start);
+		Pcm16.quantize(src, offset + first, count - first, Pcm16.SCALE_CONVERSION, mData, 0);
+		publishWrite(count);
+		return count;
+	}
+
+	/**
+	 * Render an oscillator straight into the buffer, as many samples as fit. Producer thread only.
+	 *
+	 * @param oscillator oscillator to render
+	 * @param length number of samples to render
+	 * @return number of samples written
+	 */
+	public int write(Oscillator oscillator, int length)
+	{
+		if(length < 0)
+		{
+			throw new IllegalArgumentException("Length must not be negative.");
+		}
+		int count = claimWrite(length);
+		int start = (int)(writeIndex() & mMask);
+		int first = Math.min(count, mCapacity - start);
+		oscillator.render(mData, start, first);
+		oscillator.render(mData, 0, count - first);
+		publishWrite(count);
+		return count;
+	}
+
+	/**
+	 * Read as many samples as are available. Consumer thread only.
+	 *
+	 * @param dst destination array
+	 * @param offset index in {@code dst} of the first sample to read
+	 * @param length number of samples to read
+	 * @return number of samples read
+	 */
+	public int read(short[] dst, int offset, int length)
+	{
+		Bounds.check(dst.length, offset, length);
+		int count = claimRead(length);
+		int start = (int)(readIndex() & mMask);
+		int first = Math.min(count, mCapacity - start);
+		System.arraycopy(mData, start, dst, offset, first);
+		System.arraycopy(mData, 0, dst, offset + first, count - first);
+		publishRead(count);
+		return count;
+	}
+
+	/**
+	 * Read as many samples as are available and fit, into a heap or direct buffer from its
+	 * position in its byte order, advancing the position past them. Consumer thread only.
+	 *
+	 * @param dst destination buffer
+	 * @param length number of samples to read
+	 * @return number of samples read
+	 */
+	public int read(ByteBuffer dst, int length)
+	{
+		if(length < 0)
+		{
+			throw new IllegalArgumentException("Length must not be negative.");
+		}
+		int count = claimRead(Math.min(length, dst.remaining() / 2));
+		int start = (int)(readIndex() & mMask);
+		//Put samples one by one, since a short view of the buffer would have to be allocated
+		for(int c = 0; c < count; c++)
+		{
+			dst.putShort(mData[(start + c) & mMask]);
+		}
+		publishRead(count);
+		return count;
+	}
+}
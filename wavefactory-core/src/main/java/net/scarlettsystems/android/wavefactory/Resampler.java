@@ -0,0 +1,361 @@
+package net.scarlettsystems.android.wavefactory;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Streaming polyphase sample rate converter for interleaved float audio. The conversion ratio is
+ * reduced to L/M, and the signal is conceptually upsampled by L, low-pass filtered and decimated
+ * by M. Only the filter phases that land on output samples are evaluated, so each output frame
+ * costs one short dot product per channel.
+ *
+ * The filter is a Kaiser-windowed sinc with {@value #ZERO_CROSSINGS} zero crossings each side,
+ * cut off just below the lower of the two Nyquist frequencies. Its L phases are precomputed once
+ * per ratio and shared by every converter, so common ratios such as 22.05 to 44.1 kHz or 44.1 to
+ * 48 kHz cost nothing to set up after first use. Each phase is normalised to unity gain at DC.
+ *
+ * Output is aligned with the input, without filter delay: n input frames convert to exactly
+ * ceil(n * L / M) output frames, the last of which are released by {@link #flush(float[], int)}.
+ * Instances are not thread-safe.
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public final class Resampler
+{
+	/**
+	 * Largest supported L, i.e. output rate divided by the greatest common divisor of both rates.
+	 */
+	public static final int MAX_PHASES = 1024;
+
+	static final int ZERO_CROSSINGS = 16;
+	private static final double KAISER_BETA = 8.0;
+	//Cutoff as a fraction of the lower Nyquist frequency, leaving room for the transition band
+	private static final double ROLLOFF = 0.92;
+	private static final int BLOCK_FRAMES = 1024;
+
+	private static final ConcurrentHashMap<Long, float[]> sBanks = new ConcurrentHashMap<>();
+
+	private final int mInputRate;
+	private final int mOutputRate;
+	private final int mChannelCount;
+	private final int mUp;
+	private final int mDown;
+	private final int mTaps;
+	private final float[] mBank;
+
+	//Input frames that the next outputs still need, starting from input frame mLineStart
+	private final float[] mLine;
+	private int mLineFrames;
+	private long mLineStart;
+	//Input frame and filter phase of the next output frame
+	private long mNextInput;
+	private int mNextPhase;
+	private long mInputFrames;
+	private long mOutputFrames;
+
+	/**
+	 * @param inputRate sample rate of the input in Hz
+	 * @param outputRate sample rate of the output in Hz
+	 * @param channelCount number of interleaved channels
+	 */
+	public Resampler(int inputRate, int outputRate, int channelCount)
+	{
+		if(inputRate <= 0 || outputRate <= 0)
+		{
+			throw new IllegalArgumentException("Sampling rates must be greater than zero.");
+		}
+		if(channelCount < 1)
+		{
+			throw new IllegalArgumentException("Channel count must be at least one.");
+		}
+		int divisor = gcd(inputRate, outputRate);
+		mUp = outputRate / divisor;
+		mDown = inputRate / divisor;
+		if(mUp > MAX_PHASES)
+		{
+			throw new IllegalArgumentException("Conversion from " + inputRate + " Hz to " + outputRate + " Hz needs more than " + MAX_PHASES + " filter phases.");
+		}
+		mInputRate = inputRate;
+		mOutputRate = outputRate;
+		mChannelCount = channelCount;
+		mTaps = tapCount(mUp, mDown);
+		mBank = mUp == mDown ? null : bankFor(mUp, mDown, mTaps);
+		mLine = new float[(mTaps - 1 + BLOCK_FRAMES) * channelCount];
+		reset();
+	}
+
+	/**
+	 * @param inputRate sample rate of the input in Hz
+	 * @param outputRate sample rate of the output in Hz
+	 * @return true if the reduced ratio of the rates needs at most {@link #MAX_PHASES} filter
+	 * phases, so a converter can be created for them
+	 */
+	public static boolean isSupported(int inputRate, int outputRate)
+	{
+		return inputRate > 0 && outputRate > 0 && outputRate / gcd(inputRate, outputRate) <= MAX_PHASES;
+	}
+
+	/**
+	 * Convert a whole sound in one call.
+	 *
+	 * @param input interleaved samples
+	 * @param channelCount number of interleaved channels
+	 * @param inputRate sample rate of the input in Hz
+	 * @param outputRate sample rate of the output in Hz
+	 * @return interleaved samples at the output rate
+	 */
+	public static float[] resample(float[] input, int channelCount, int inputRate, int outputRate)
+	{
+		Resampler resampler = new Resampler(inputRate, outputRate, channelCount);
+		int frames = input.length / channelCount;
+		float[] output = new float[(int)resampler.getOutputLength(frames) * channelCount];
+		int written = resampler.process(input, 0, frames, output, 0);
+		resampler.flush(output, written * channelCount);
+		return output;
+	}
+
+	public int getInputRate()
+	{
+		return mInputRate;
+	}
+
+	public int getOutputRate()
+	{
+		return mOutputRate;
+	}
+
+	public int getChannelCount()
+	{
+		return mChannelCount;
+	}
+
+	/**
+	 * @return number of filter taps per channel evaluated for each output frame
+	 */
+	public int getTapCount()
+	{
+		return mBank == null ? 1 : mTaps;
+	}
+
+	/**
+	 * @param inputFrames number of input frames
+	 * @return number of output frames they convert to, including those released by a flush
+	 */
+	public long getOutputLength(long inputFrames)
+	{
+		return (inputFrames * mUp + mDown - 1) / mDown;
+	}
+
+	/**
+	 * @param inputFrames number of frames passed to {@link #process(float[], int, int, float[], int)}
+	 * @return most frames that call can write
+	 */
+	public int getMaxOutputFrames(int inputFrames)
+	{
+		return (int)getOutputLength(inputFrames) + 1;
+	}
+
+	/**
+	 * @return number of frames the next {@link #flush(float[], int)} will write
+	 */
+	public int getFlushFrames()
+	{
+		return (int)(getOutputLength(mInputFrames) - mOutputFrames);
+	}
+
+	/**
+	 * Convert the next input frames, writing every output frame that can be completed from the
+	 * input so far. {@code dst} must have room for {@link #getMaxOutputFrames(int)} frames.
+	 *
+	 * @param src interleaved input samples
+	 * @param srcOffset index in {@code src} of the first sample to convert
+	 * @param frames number of input frames
+	 * @param dst destination array
+	 * @param dstOffset index in {@code dst} of the first sample to write
+	 * @return number of frames written
+	 */
+	public int process(float[] src, int srcOffset, int frames, float[] dst, int dstOffset)
+	{
+		Bounds.check(src.length, srcOffset, frames * mChannelCount);
+		Bounds.check(dst.length, dstOffset, 0);
+		if(mBank == null)
+		{
+			Bounds.check(dst.length, dstOffset, frames * mChannelCount);
+			System.arraycopy(src, srcOffset, dst, dstOffset, frames * mChannelCount);
+			mInputFrames += frames;
+			mOutputFrames += frames;
+			return frames;
+		}
+		int written = 0;
+		while(frames > 0)
+		{
+			int count = Math.min(frames, mLine.length / mChannelCount - mLineFrames);
+			System.arraycopy(src, srcOffset, mLine, mLineFrames * mChannelCount, count * mChannelCount);
+			mLineFrames += count;
+			mInputFrames += count;
+			srcOffset += count * mChannelCount;
+			frames -= count;
+			written += generate(dst, dstOffset + written * mChannelCount, Integer.MAX_VALUE);
+			compact();
+		}
+		return written;
+	}
+
+	/**
+	 * Write the remaining output frames, treating the input as followed by silence. The converter
+	 * is then ready for a new stream. {@code dst} must have room for {@link #getFlushFrames()}
+	 * frames.
+	 *
+	 * @param dst destination array
+	 * @param dstOffset index in {@code dst} of the first sample to write
+	 * @return number of frames written
+	 */
+	public int flush(float[] dst, int dstOffset)
+	{
+		int remaining = getFlushFrames();
+		Bounds.check(dst.length, dstOffset, remaining * mChannelCount);
+		int written = 0;
+		while(written < remaining)
+		{
+			int count = mLine.length / mChannelCount - mLineFrames;
+			Arrays.fill(mLine, mLineFrames * mChannelCount, mLine.length, 0);
+			mLineFrames += count;
+			written += generate(dst, dstOffset + written * mChannelCount, remaining - written);
+			compact();
+		}
+		reset();
+		return written;
+	}
+
+	/**
+	 * Discard buffered input and start a new stream.
+	 */
+	public void reset()
+	{
+		int half = mTaps / 2;
+		//Silence before the first frame, so the first output is centred on it
+		Arrays.fill(mLine, 0);
+		mLineFrames = mBank == null ? 0 : half - 1;
+		mLineStart = -mLineFrames;
+		mNextInput = 0;
+		mNextPhase = 0;
+		mInputFrames = 0;
+		mOutputFrames = 0;
+	}
+
+	private int generate(float[] dst, int dstOffset, int limit)
+	{
+		int half = mTaps / 2;
+		int channels = mChannelCount;
+		int produced = 0;
+		while(produced < limit)
+		{
+			long relative = mNextInput - mLineStart;
+			if(relative + half >= mLineFrames){break;}
+			int base = (int)(relative - half + 1) * channels;
+			int coefficients = mNextPhase * mTaps;
+			for(int channel = 0; channel < channels; channel++)
+			{
+				float sum = 0;
+				for(int k = 0, index = base + channel; k < mTaps; k++, index += channels)
+				{
+					sum += mLine[index] * mBank[coefficients + k];
+				}
+				dst[dstOffset++] = sum;
+			}
+			produced++;
+			mNextPhase += mDown;
+			mNextInput += mNextPhase / mUp;
+			mNextPhase %= mUp;
+		}
+		mOutputFrames += produced;
+		return produced;
+	}
+
+	/**
+	 * Drop input frames that no future output needs.
+	 */
+	private void compact()
+	{
+		int unused = (int)Math.min(mLineFrames, Math.max(0, mNextInput - mTaps / 2 + 1 - mLineStart));
+		if(unused == 0){return;}
+		System.arraycopy(mLine, unused * mChannelCount, mLine, 0, (mLineFrames - unused) * mChannelCount);
+		mLineFrames -= unused;
+		mLineStart += unused;
+	}
+
+	private static int tapCount(int up, int down)
+	{
+		//Wider filters are needed to cut off lower when decimating
+		double cutoff = Math.min(1.0, up / (double)down);
+		return 2 * (int)Math.ceil(ZERO_CROSSINGS / cutoff);
+	}
+
+	private static float[] bankFor(int up, int down, int taps)
+	{
+		Long key = ((long)up << 32) | down;
+		float[] bank = sBanks.get(key);
+		if(bank == null)
+		{
+			bank = createBank(up, down, taps);
+			float[] existing = sBanks.putIfAbsent(key, bank);
+			if(existing != null){bank = existing;}
+		}
+		return bank;
+	}
+
+	/**
+	 * Sample the windowed sinc at every phase offset. Tap k of phase p weighs input frame
+	 * i - half + 1 + k for an output at input time i + p / up.
+	 */
+	private static float[] createBank(int up, int down, int taps)
+	{
+		int half = taps / 2;
+		double cutoff = Math.min(1.0, up / (double)down) * ROLLOFF;
+		double windowScale = 1 / besselI0(KAISER_BETA);
+		float[] bank = new float[up * taps];
+		double[] phase = new double[taps];
+		for(int p = 0; p < up; p++)
+		{
+			double sum = 0;
+			for(int k = 0; k < taps; k++)
+			{
+				double t = p / (double)up + half - 1 - k;
+				double u = t / half;
+				double window = u <= -1 || u >= 1 ? 0 : besselI0(KAISER_BETA * Math.sqrt(1 - u * u)) * windowScale;
+				double x = Math.PI * cutoff * t;
+				phase[k] = (x == 0 ? 1 : Math.sin(x) / x) * window;
+				sum += phase[k];
+			}
+			for(int k = 0; k < taps; k++)
+			{
+				bank[p * taps + k] = (float)(phase[k] / sum);
+			}
+		}
+		return bank;
+	}
+
+	/**
+	 * Zeroth-order modified Bessel function of the first kind, by its power series.
+	 */
+	private static double besselI0(double x)
+	{
+		double sum = 1, term = 1, half = x / 2;
+		for(int k = 1; term > sum * 1e-16; k++)
+		{
+			term *= (half / k) * (half / k);
+			sum += term;
+		}
+		return sum;
+	}
+
+	private static int gcd(int a, int b)
+	{
+		while(b != 0)
+		{
+			int t = a % b;
+			a = b;
+			b = t;
+		}
+		return a;
+	}
+}
@@ -0,0 +1,328 @@
+package net.scarlettsystems.android.wavefactory;
+
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Read-only float view of decoded audio, whatever form it is stored in. Sounds kept as 16-bit PCM
+ * take half the memory of float samples, and are converted to float only as they are read, one
+ * block at a time.
+ *
+ * Instances can be read from any number of threads.
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public abstract class SampleBuffer
+{
+	private static final float PCM16_TO_FLOAT = 1.0f / 32768.0f;
+
+	SampleBuffer(){}
+
+	/**
+	 * @param samples float samples, which are used directly rather than copied
+	 * @return buffer over the samples
+	 */
+	public static SampleBuffer wrap(float[] samples)
+	{
+		return new FloatSamples(samples);
+	}
+
+	/**
+	 * @param samples 16-bit PCM samples, which are used directly rather than copied
+	 * @return buffer over the samples
+	 */
+	public static SampleBuffer wrap(short[] samples)
+	{
+		return new ShortSamples(samples);
+	}
+
+	/**
+	 * @param samples 16-bit PCM samples from the buffer's position to its limit, typically a view
+	 *                of a direct buffer; the buffer's position and limit are not changed
+	 * @return buffer over the samples
+	 */
+	public static SampleBuffer wrap(ShortBuffer samples)
+	{
+		return new BufferSamples(samples.slice());
+	}
+
+	/**
+	 * @param samples float samples from the buffer's position to its limit, typically a view of a
+	 *                direct or mapped buffer; the buffer's position and limit are not changed
+	 * @return buffer over the samples
+	 */
+	public static SampleBuffer wrap(FloatBuffer samples)
+	{
+		return new FloatBufferSamples(samples.slice());
+	}
+
+	/**
+	 * @return number of samples
+	 */
+	public abstract int length();
+
+	/**
+	 * @param index index of the sample
+	 * @return sample in the range -1.0~1.0
+	 */
+	public abstract float get(int index);
+
+	/**
+	 * Convert a range of samples to float.
+	 *
+	 * @param position index of the first sample to read
+	 * @param dst destination array
+	 * @param offset index in {@code dst} of the first sample to write
+	 * @param length number of samples to read
+	 * @return number of samples read, which is less than requested only at the end of the buffer
+	 */
+	public int read(int position, float[] dst, int offset, int length)
+	{
+		if(position < 0 || length < 0 || offset < 0 || offset > dst.length - length)
+		{
+			throw new IndexOutOfBoundsException("Invalid read of " + length + " samples at " + position);
+		}
+		int count = Math.max(0, Math.min(length, length() - position));
+		convert(position, dst, offset, count);
+		return count;
+	}
+
+	abstract void convert(int position, float[] dst, int offset, int length);
+
+	/**
+	 * @return true if the samples are stored as float, so {@link #toFloatArray()} returns them
+	 * without conversion
+	 */
+	boolean hasArray()
+	{
+		return false;
+	}
+
+	/**
+	 * @return true if the samples are stored as 16-bit PCM, so {@link #readPcm16} copies them
+	 * without conversion
+	 */
+	boolean isPcm16()
+	{
+		return false;
+	}
+
+	/**
+	 * Copy a range of 16-bit samples. Only supported when {@link #isPcm16()} is true.
+	 *
+	 * @param position index of the first sample to read
+	 * @param dst destination array
+	 * @param offset index in {@code dst} of the first sample to write
+	 * @param length number of samples to read, all of which must exist
+	 */
+	void readPcm16(int position, short[] dst, int offset, int length)
+	{
+		throw new UnsupportedOperationException("Samples are not stored as 16-bit PCM.");
+	}
+
+	/**
+	 * @return memory occupied by the samples in bytes
+	 */
+	public abstract long getSizeBytes();
+
+	/**
+	 * Get every sample as a float array. PCM storage is converted into a new array, while float
+	 * storage returns the stored array itself, which must not be modified.
+	 *
+	 * @return float array of audio
+	 */
+	public float[] toFloatArray()
+	{
+		float[] samples = new float[length()];
+		convert(0, samples, 0, samples.length);
+		return samples;
+	}
+
+	private static final class FloatSamples extends SampleBuffer
+	{
+		private final float[] mSamples;
+
+		FloatSamples(float[] samples)
+		{
+			mSamples = samples;
+		}
+
+		@Override
+		public int length()
+		{
+			return mSamples.length;
+		}
+
+		@Override
+		public float get(int index)
+		{
+			return mSamples[index];
+		}
+
+		@Override
+		void convert(int position, float[] dst, int offset, int length)
+		{
+			System.arraycopy(mSamples, position, dst, offset, length);
+		}
+
+		@Override
+		public long getSizeBytes()
+		{
+			return 4L * mSamples.length;
+		}
+
+		@Override
+		public float[] toFloatArray()
+		{
+			return mSamples;
+		}
+
+		@Override
+		boolean hasArray()
+		{
+			return true;
+		}
+	}
+
+	private static final class ShortSamples extends SampleBuffer
+	{
+		private final short[] mSamples;
+
+		ShortSamples(short[] samples)
+		{
+			mSamples = samples;
+		}
+
+		@Override
+		public int length()
+		{
+			return mSamples.length;
+		}
+
+		@Override
+		public float get(int index)
+		{
+			return mSamples[index] * PCM16_TO_FLOAT;
+		}
+
+		@Override
+		void convert(int position, float[] dst, int offset, int length)
+		{
+			short[] samples = mSamples;
+			for(int c = 0; c < length; c++)
+			{
+				dst[offset + c] = samples[position + c] * PCM16_TO_FLOAT;
+			}
+		}
+
+		@Override
+		public long getSizeBytes()
+		{
+			return 2L * mSamples.length;
+		}
+
+		@Override
+		boolean isPcm16()
+		{
+			return true;
+		}
+
+		@Override
+		void readPcm16(int position, short[] dst, int offset, int length)
+		{
+			System.arraycopy(mSamples, position, dst, offset, length);
+		}
+	}
+
+	private static final class BufferSamples extends SampleBuffer
+	{
+		private final ShortBuffer mSamples;
+
+		BufferSamples(ShortBuffer samples)
+		{
+			mSamples = samples;
+		}
+
+		@Override
+		public int length()
+		{
+			return mSamples.limit();
+		}
+
+		@Override
+		public float get(int index)
+		{
+			return mSamples.get(index) * PCM16_TO_FLOAT;
+		}
+
+		@Override
+		void convert(int position, float[] dst, int offset, int length)
+		{
+			//Absolute reads leave the shared position alone and allocate nothing, since this runs
+			//for every block of every voice
+			ShortBuffer samples = mSamples;
+			for(int c = 0; c < length; c++)
+			{
+				dst[offset + c] = samples.get(position + c) * PCM16_TO_FLOAT;
+			}
+		}
+
+		@Override
+		public long getSizeBytes()
+		{
+			return 2L * mSamples.limit();
+		}
+
+		@Override
+		boolean isPcm16()
+		{
+			return true;
+		}
+
+		@Override
+		void readPcm16(int position, short[] dst, int offset, int length)
+		{
+			ShortBuffer samples = mSamples.duplicate();
+			samples.position(position);
+			samples.get(dst, offset, length);
+		}
+	}
+
+	private static final class FloatBufferSamples extends SampleBuffer
+	{
+		private final FloatBuffer mSamples;
+
+		FloatBufferSamples(FloatBuffer samples)
+		{
+			mSamples = samples;
+		}
+
+		@Override
+		public int length()
+		{
+			return mSamples.limit();
+		}
+
+		@Override
+		public float get(int index)
+		{
+			return mSamples.get(index);
+		}
+
+		@Override
+		void convert(int position, float[] dst, int offset, int length)
+		{
+			//Absolute reads leave the shared position alone and allocate nothing
+			FloatBuffer samples = mSamples;
+			for(int c = 0; c < length; c++)
+			{
+				dst[offset + c] = samples.get(position + c);
+			}
+		}
+
+		@Override
+		public long getSizeBytes()
+		{
+			return 4L * mSamples.limit();
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package net.scarlettsystems.android.wavefactory;
+
+/**
+ * Final stage of a mix that keeps summed samples in range, shared by {@link MixBus} and
+ * {@link Sequencer}. The limiter carries its gain from one block to the next.
+ */
+final class Saturator
+{
+	//Beyond this the rational approximation reaches 1 and is clamped there
+	private static final float TANH_CLAMP = 4.97f;
+
+	private int mSaturation = MixBus.SATURATION_TANH;
+	private float mThreshold = 1.0f;
+	private float mRelease = 1.0f;
+	private float mLimiterGain = 1.0f;
+
+	void setSaturation(@MixBus.Saturation int saturation)
+	{
+		if(saturation != MixBus.SATURATION_NONE && saturation != MixBus.SATURATION_TANH && saturation != MixBus.SATURATION_LIMITER)
+		{
+			throw new IllegalArgumentException("Invalid saturation.");
+		}
+		mSaturation = saturation;
+	}
+
+	int getSaturation()
+	{
+		return mSaturation;
+	}
+
+	void setLimiter(float threshold, int releaseSamples)
+	{
+		if(threshold <= 0 || threshold > 1)
+		{
+			throw new IllegalArgumentException("Threshold must be within 0.0~1.0.");
+		}
+		if(releaseSamples < 0)
+		{
+			throw new IllegalArgumentException("Release must not be negative.");
+		}
+		mThreshold = threshold;
+		mRelease = releaseSamples == 0 ? 1.0f : (float)(1.0 - Math.exp(-1.0 / releaseSamples));
+	}
+
+	void reset()
+	{
+		mLimiterGain = 1.0f;
+	}
+
+	void process(float[] block, int offset, int length)
+	{
+		int end = offset + length;
+		if(mSaturation == MixBus.SATURATION_TANH)
+		{
+			for(int c = offset; c < end; c++)
+			{
+				block[c] = tanh(block[c]);
+			}
+		}
+		else if(mSaturation == MixBus.SATURATION_LIMITER)
+		{
+			float gain = mLimiterGain;
+			float threshold = mThreshold;
+			float release = mRelease;
+			for(int c = offset; c < end; c++)
+			{
+				gain += (1.0f - gain) * release;
+				float level = Math.abs(block[c]) * gain;
+				if(level > threshold)
+				{
+					gain *= threshold / level;
+				}
+				block[c] *= gain;
+			}
+			mLimiterGain = gain;
+		}
+	}
+
+	static float tanh(float x)
+	{
+		if(x > TANH_CLAMP){return 1.0f;}
+		if(x < -TANH_CLAMP){return -1.0f;}
+		float x2 = x * x;
+		return x * (135135.0f + x2 * (17325.0f + x2 * (378.0f + x2)))
+				/ (135135.0f + x2 * (62370.0f + x2 * (3150.0f + x2 * 28.0f)));
+	}
+}
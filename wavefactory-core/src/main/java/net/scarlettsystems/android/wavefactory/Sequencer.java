@@ -0,0 +1,333 @@
+package net.scarlettsystems.android.wavefactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sample-accurate sequencer that plays sounds and generated tones at scheduled frames, rendering
+ * the result block by block into small reusable buffers. Memory use depends on how many voices
+ * are sounding at once, not on the length of the timeline, so a sequence can be rendered live or
+ * streamed to a file.
+ *
+ * Events can be scheduled from any thread, including while another thread renders. An event
+ * scheduled for a frame that has already been rendered starts at the beginning of the next
+ * rendered block. Rendering itself must stay on one thread.
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public class Sequencer
+{
+	private static final int BLOCK_SIZE = 256;
+
+	private final int mSampleRate;
+	private final ConcurrentLinkedQueue<Voice> mIncoming = new ConcurrentLinkedQueue<>();
+	private final PriorityQueue<Voice> mPending = new PriorityQueue<>(16, START_ORDER);
+	private final List<Voice> mActive = new ArrayList<>();
+	private final AtomicLong mSequence = new AtomicLong();
+	private final float[] mBlock = new float[BLOCK_SIZE];
+	private final float[] mScratch = new float[BLOCK_SIZE];
+	private final Saturator mSaturator = new Saturator();
+	private long mPosition = 0;
+
+	/**
+	 * @param sampleRate sample rate of the rendered audio in Hz
+	 */
+	public Sequencer(int sampleRate)
+	{
+		if(sampleRate <= 0)
+		{
+			throw new IllegalArgumentException("Sampling rate must be greater than zero.");
+		}
+		mSampleRate = sampleRate;
+	}
+
+	public int getSampleRate()
+	{
+		return mSampleRate;
+	}
+
+	/**
+	 * @param seconds time from the start of the sequence in seconds
+	 * @return frame nearest to the time
+	 */
+	public long toFrame(double seconds)
+	{
+		return Math.round(seconds * mSampleRate);
+	}
+
+	/**
+	 * Play a sound, such as one from {@code WaveLoader.getWaveFromResource}, at a given frame.
+	 *
+	 * @param frame frame at which the sound starts
+	 * @param sound float samples, which are read in place rather than copied
+	 * @param gain gain applied to the sound
+	 */
+	public void trigger(long frame, float[] sound, float gain)
+	{
+		trigger(frame, SampleBuffer.wrap(sound), gain);
+	}
+
+	/**
+	 * Play a sound, such as one from {@code WaveLoader.getSamples}, at a given frame.
+	 *
+	 * @param frame frame at which the sound starts
+	 * @param sound decoded samples in any storage form
+	 * @param gain gain applied to the sound
+	 */
+	public void trigger(long frame, SampleBuffer sound, float gain)
+	{
+		schedule(new SampleVoice(sound), frame, gain);
+	}
+
+	/**
+	 * Play a tone at a given frame. The tone matches the output of the corresponding
+	 * {@code WaveFactory.get*WavePCMFloat} method, but is generated as it plays.
+	 *
+	 * @param frame frame at which the tone starts
+	 * @param waveform waveform of the tone
+	 * @param frequency frequency of the tone in Hz
+	 * @param duration duration of the tone in seconds
+	 * @param ramp fraction of the tone to ramp (0.0~0.5 range)
+	 * @param gain gain applied to the tone
+	 */
+	public void triggerTone(long frame, @WaveFactory.Waveform int waveform, float frequency, float duration, float ramp, float gain)
+	{
+		WaveFactory.validateInputs(frequency, duration, mSampleRate, ramp);
+		int numSamples = (int)Math.floor(duration * mSampleRate);
+		schedule(new ToneVoice(WaveFactory.createOscillator(waveform, frequency, mSampleRate, numSamples, ramp)), frame, gain);
+	}
+
+	/**
+	 * Play a configured oscillator at a given frame, until it finishes.
+	 */
+	void trigger(long frame, Oscillator oscillator, float gain)
+	{
+		schedule(new ToneVoice(oscillator), frame, gain);
+	}
+
+	/**
+	 * Play a voice of another kind at a given frame, such as one that streams from a file.
+	 */
+	void trigger(long frame, Voice voice, float gain)
+	{
+		schedule(voice, frame, gain);
+	}
+
+	private void schedule(Voice voice, long frame, float gain)
+	{
+		if(frame < 0)
+		{
+			throw new IllegalArgumentException("Frame must not be negative.");
+		}
+		voice.mStart = frame;
+		voice.mGain = gain;
+		voice.mSequence = mSequence.getAndIncrement();
+		mIncoming.add(voice);
+	}
+
+	/**
+	 * @param saturation how the sum of voices is kept in range,
+	 *                   {@link MixBus#SATURATION_TANH} by default
+	 */
+	public void setSaturation(@MixBus.Saturation int saturation)
+	{
+		mSaturator.setSaturation(saturation);
+	}
+
+	public @MixBus.Saturation int getSaturation()
+	{
+		return mSaturator.getSaturation();
+	}
+
+	/**
+	 * Configure the limiter used by {@link MixBus#SATURATION_LIMITER}.
+	 *
+	 * @param threshold highest output level (0.0~1.0 range)
+	 * @param releaseSamples number of samples for the gain to recover about 63% of the way
+	 */
+	public void setLimiter(float threshold, int releaseSamples)
+	{
+		mSaturator.setLimiter(threshold, releaseSamples);
+	}
+
+	/**
+	 * Render the next samples of the sequence and advance past them.
+	 *
+	 * @param dst destination array
+	 * @param offset index in {@code dst} of the first sample to write
+	 * @param length number of samples to render
+	 */
+	public void render(float[] dst, int offset, int length)
+	{
+		if(offset < 0 || length < 0 || offset > dst.length - length)
+		{
+			throw new IndexOutOfBoundsException("Invalid render of " + length + " samples at " + offset);
+		}
+		int end = offset + length;
+		while(offset < end)
+		{
+			int blockLength = Math.min(BLOCK_SIZE, end - offset);
+			renderBlock(blockLength);
+			System.arraycopy(mBlock, 0, dst, offset, blockLength);
+			offset += blockLength;
+		}
+	}
+
+	private void renderBlock(int length)
+	{
+		Voice incoming;
+		while((incoming = mIncoming.poll()) != null)
+		{
+			mPending.add(incoming);
+		}
+		long blockEnd = mPosition + length;
+		while(!mPending.isEmpty() && mPending.peek().mStart < blockEnd)
+		{
+			mActive.add(mPending.poll());
+		}
+
+		float[] block = mBlock;
+		for(int c = 0; c < length; c++)
+		{
+			block[c] = 0;
+		}
+		for(int v = mActive.size() - 1; v >= 0; v--)
+		{
+			Voice voice = mActive.get(v);
+			int from = (int)Math.max(0, voice.mStart - mPosition);
+			if(!voice.mix(block, from, length - from, mScratch))
+			{
+				//Order of the active list does not matter, so the last voice fills the gap
+				int last = mActive.size() - 1;
+				mActive.set(v, mActive.get(last));
+				mActive.remove(last);
+			}
+		}
+		mSaturator.process(block, 0, length);
+		mPosition = blockEnd;
+	}
+
+	/**
+	 * @return frame of the next sample to be rendered
+	 */
+	public long getPosition()
+	{
+		return mPosition;
+	}
+
+	/**
+	 * @return number of voices currently sounding
+	 */
+	public int getActiveVoiceCount()
+	{
+		return mActive.size();
+	}
+
+	/**
+	 * @return true if no voice is sounding or scheduled
+	 */
+	public boolean isIdle()
+	{
+		return mActive.isEmpty() && mPending.isEmpty() && mIncoming.isEmpty();
+	}
+
+	/**
+	 * Drop every scheduled and sounding voice and return to frame 0.
+	 */
+	public void reset()
+	{
+		mIncoming.clear();
+		mPending.clear();
+		mActive.clear();
+		mSaturator.reset();
+		mPosition = 0;
+	}
+
+	abstract static class Voice
+	{
+		long mStart;
+		long mSequence;
+		float mGain;
+
+		/**
+		 * Add the next samples of the voice into a block.
+		 *
+		 * @return false once the voice has finished
+		 */
+		abstract boolean mix(float[] block, int offset, int length, float[] scratch);
+	}
+
+	private static final class SampleVoice extends Voice
+	{
+		private final SampleBuffer mSamples;
+		private final float[] mArray;
+		private int mPosition = 0;
+
+		SampleVoice(SampleBuffer samples)
+		{
+			mSamples = samples;
+			mArray = samples.hasArray() ? samples.toFloatArray() : null;
+		}
+
+		@Override
+		boolean mix(float[] block, int offset, int length, float[] scratch)
+		{
+			int count = Math.min(length, mSamples.length() - mPosition);
+			float[] samples = mArray;
+			int index = mPosition;
+			if(samples == null)
+			{
+				mSamples.read(mPosition, scratch, 0, count);
+				samples = scratch;
+				index = 0;
+			}
+			float gain = mGain;
+			for(int c = 0; c < count; c++)
+			{
+				block[offset + c] += samples[index + c] * gain;
+			}
+			mPosition += count;
+			return mPosition < mSamples.length();
+		}
+	}
+
+	private static final class ToneVoice extends Voice
+	{
+		private final Oscillator mOscillator;
+
+		ToneVoice(Oscillator oscillator)
+		{
+			mOscillator = oscillator;
+		}
+
+		@Override
+		boolean mix(float[] block, int offset, int length, float[] scratch)
+		{
+			int count = length;
+			if(mOscillator.getLength() != Oscillator.LENGTH_UNBOUNDED)
+			{
+				count = (int)Math.min(length, mOscillator.getLength() - mOscillator.getPosition());
+			}
+			mOscillator.render(scratch, 0, count);
+			float gain = mGain;
+			for(int c = 0; c < count; c++)
+			{
+				block[offset + c] += scratch[c] * gain;
+			}
+			return !mOscillator.isFinished();
+		}
+	}
+
+	private static final Comparator<Voice> START_ORDER = new Comparator<Voice>()
+	{
+		@Override
+		public int compare(Voice a, Voice b)
+		{
+			if(a.mStart != b.mStart){return a.mStart < b.mStart ? -1 : 1;}
+			return a.mSequence < b.mSequence ? -1 : (a.mSequence > b.mSequence ? 1 : 0);
+		}
+	};
+}
@@ -0,0 +1,274 @@
+package net.scarlettsystems.android.wavefactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A family of tones, such as a scale, a set of DTMF tones or a calibration sweep, rendered in one
+ * batch into a single contiguous store. Every tone matches the output of the corresponding
+ * {@code WaveFactory.get*WavePCMFloat} method, scaled by its amplitude.
+ *
+ * A batch validates all of its specs before rendering anything, allocates at most one array, and
+ * reuses one oscillator per thread for all of its tones. Wave tables are shared by every tone.
+ * Batches can optionally be rendered on all cores; each tone is still rendered whole by a single
+ * thread, so the output does not change.
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public class ToneBank
+{
+	private final float[] mStore;
+	private final int[] mOffsets;
+	private final int[] mLengths;
+	private final int mSampleRate;
+
+	/**
+	 * Description of one tone in a bank.
+	 */
+	public static final class Spec
+	{
+		final int mWaveform;
+		final float mFrequency;
+		final float mDuration;
+		final float mRamp;
+		final float mAmplitude;
+
+		/**
+		 * @param waveform waveform of the tone
+		 * @param frequency frequency of the tone in Hz
+		 * @param duration duration of the tone in seconds
+		 * @param ramp fraction of the tone to ramp (0.0~0.5 range)
+		 */
+		public Spec(@WaveFactory.Waveform int waveform, float frequency, float duration, float ramp)
+		{
+			this(waveform, frequency, duration, ramp, 1.0f);
+		}
+
+		/**
+		 * @param waveform waveform of the tone
+		 * @param frequency frequency of the tone in Hz
+		 * @param duration duration of the tone in seconds
+		 * @param ramp fraction of the tone to ramp (0.0~0.5 range)
+		 * @param amplitude magnitude from 0 to 1 of the tone
+		 */
+		public Spec(@WaveFactory.Waveform int waveform, float frequency, float duration, float ramp, float amplitude)
+		{
+			mWaveform = waveform;
+			mFrequency = frequency;
+			mDuration = duration;
+			mRamp = ramp;
+			mAmplitude = amplitude;
+		}
+	}
+
+	private ToneBank(float[] store, int[] offsets, int[] lengths, int sampleRate)
+	{
+		mStore = store;
+		mOffsets = offsets;
+		mLengths = lengths;
+		mSampleRate = sampleRate;
+	}
+
+	/**
+	 * @param specs tones to render
+	 * @param sampleRate sample rate of the tones in Hz
+	 * @return total number of samples the tones occupy in a store
+	 */
+	public static long getRequiredLength(List<Spec> specs, int sampleRate)
+	{
+		long total = 0;
+		for(Spec spec : specs)
+		{
+			total += numSamples(spec, sampleRate);
+		}
+		return total;
+	}
+
+	/**
+	 * Render tones into a newly allocated store.
+	 *
+	 * @param specs tones to render
+	 * @param sampleRate sample rate of the tones in Hz
+	 * @param parallel true to render tones on all cores
+	 * @return rendered bank
+	 */
+	public static ToneBank render(List<Spec> specs, int sampleRate, boolean parallel)
+	{
+		int[] lengths = validate(specs, sampleRate);
+		long total = sum(lengths);
+		if(total > Integer.MAX_VALUE - 8)
+		{
+			throw new IllegalArgumentException("Tones are too long to fit in one array.");
+		}
+		return render(specs, lengths, sampleRate, new float[(int)total], 0, parallel);
+	}
+
+	/**
+	 * Render tones into part of a caller-supplied array, one after another from {@code offset}.
+	 * The array must have room for {@link #getRequiredLength(List, int)} samples.
+	 *
+	 * @param specs tones to render
+	 * @param sampleRate sample rate of the tones in Hz
+	 * @param arena destination array
+	 * @param offset index in {@code arena} of the first tone's first sample
+	 * @param parallel true to render tones on all cores
+	 * @return rendered bank, backed by {@code arena}
+	 */
+	public static ToneBank render(List<Spec> specs, int sampleRate, float[] arena, int offset, boolean parallel)
+	{
+		int[] lengths = validate(specs, sampleRate);
+		long total = sum(lengths);
+		if(offset < 0 || offset > arena.length - total)
+		{
+			throw new IndexOutOfBoundsException("Arena has room for " + Math.max(0, arena.length - offset) + " samples, " + total + " required.");
+		}
+		return render(specs, lengths, sampleRate, arena, offset, parallel);
+	}
+
+	private static ToneBank render(final List<Spec> specs, int[] lengths, final int sampleRate, final float[] store, int storeOffset, boolean parallel)
+	{
+		final int[] offsets = new int[lengths.length];
+		int offset = storeOffset;
+		for(int c = 0; c < lengths.length; c++)
+		{
+			offsets[c] = offset;
+			offset += lengths[c];
+		}
+		final ToneBank bank = new ToneBank(store, offsets, lengths, sampleRate);
+		if(lengths.length == 0){return bank;}
+
+		int tasks = parallel ? Math.min(lengths.length, ParallelRenderer.taskCount()) : 1;
+		if(tasks <= 1)
+		{
+			bank.renderRange(specs, 0, lengths.length);
+			return bank;
+		}
+
+		//Split the tones into runs of roughly equal total length, one per task
+		long total = sum(lengths);
+		List<Runnable> runs = new ArrayList<>(tasks);
+		int first = 0;
+		long rendered = 0;
+		for(int task = 1; task <= tasks && first < lengths.length; task++)
+		{
+			long target = total * task / tasks;
+			int last = first;
+			while(last < lengths.length && (rendered < target || last == first))
+			{
+				rendered += lengths[last++];
+			}
+			final int runFirst = first;
+			final int runEnd = task == tasks ? lengths.length : last;
+			runs.add(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					bank.renderRange(specs, runFirst, runEnd);
+				}
+			});
+			first = runEnd;
+		}
+		ParallelRenderer.runAll(runs);
+		return bank;
+	}
+
+	private void renderRange(List<Spec> specs, int first, int end)
+	{
+		Oscillator oscillator = null;
+		boolean timed = WaveMetrics.isEnabled();
+		for(int c = first; c < end; c++)
+		{
+			Spec spec = specs.get(c);
+			long start = timed ? System.nanoTime() : 0;
+			if(oscillator == null)
+			{
+				oscillator = new Oscillator(spec.mWaveform, spec.mFrequency, mSampleRate);
+			}
+			WaveFactory.configureOscillator(oscillator, spec.mWaveform, spec.mFrequency, mLengths[c], spec.mRamp);
+			oscillator.setAmplitude(spec.mAmplitude);
+			oscillator.render(mStore, mOffsets[c], mLengths[c]);
+			if(timed){WaveMetrics.recordGenerate(spec.mWaveform, mLengths[c], start);}
+		}
+	}
+
+	private static int[] validate(List<Spec> specs, int sampleRate)
+	{
+		int[] lengths = new int[specs.size()];
+		for(int c = 0; c < lengths.length; c++)
+		{
+			Spec spec = specs.get(c);
+			WaveFactory.validateInputs(spec.mFrequency, spec.mDuration, sampleRate, spec.mRamp);
+			if(spec.mWaveform < WaveFactory.WAVEFORM_SINE || spec.mWaveform > WaveFactory.WAVEFORM_SAWTOOTH)
+			{
+				throw new IllegalArgumentException("Unknown waveform: " + spec.mWaveform);
+			}
+			lengths[c] = numSamples(spec, sampleRate);
+		}
+		return lengths;
+	}
+
+	private static int numSamples(Spec spec, int sampleRate)
+	{
+		return (int)Math.floor(spec.mDuration * sampleRate);
+	}
+
+	private static long sum(int[] lengths)
+	{
+		long total = 0;
+		for(int length : lengths)
+		{
+			total += length;
+		}
+		return total;
+	}
+
+	/**
+	 * @return number of tones
+	 */
+	public int size()
+	{
+		return mLengths.length;
+	}
+
+	public int getSampleRate()
+	{
+		return mSampleRate;
+	}
+
+	/**
+	 * @return array holding every tone, which may be a caller-supplied arena
+	 */
+	public float[] getStore()
+	{
+		return mStore;
+	}
+
+	/**
+	 * @param index index of the tone
+	 * @return index in the store of the tone's first sample
+	 */
+	public int getOffset(int index)
+	{
+		return mOffsets[index];
+	}
+
+	/**
+	 * @param index index of the tone
+	 * @return length of the tone in samples
+	 */
+	public int getLength(int index)
+	{
+		return mLengths[index];
+	}
+
+	/**
+	 * @param index index of the tone
+	 * @return copy of the tone
+	 */
+	public float[] copy(int index)
+	{
+		float[] tone = new float[mLengths[index]];
+		System.arraycopy(mStore, mOffsets[index], tone, 0, tone.length);
+		return tone;
+	}
+}
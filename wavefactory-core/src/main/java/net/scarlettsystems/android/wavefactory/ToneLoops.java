@@ -0,0 +1,197 @@
+package net.scarlettsystems.android.wavefactory;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Loop-point computation and caching for seamlessly loopable tones.
+ *
+ * A tone of {@code n} samples loops without a discontinuity when {@code n * frequency / sampleRate}
+ * is a whole number of cycles. Rather than scanning generated samples for a zero crossing, the
+ * loop length is taken from the continued-fraction convergents of {@code frequency / sampleRate},
+ * which are the best rational approximations of the cycle length for their size.
+ */
+final class ToneLoops
+{
+	//Convergent denominators are capped so the resulting tone length always fits an array
+	private static final long MAX_LOOP_SAMPLES = Integer.MAX_VALUE - 8;
+	private static final int MAX_TERMS = 64;
+	//Part of every disk cache key; bump it whenever generated tones change, to ignore old entries
+	static final int GENERATOR_VERSION = 1;
+
+	private ToneLoops(){}
+
+	/**
+	 * Find a loop length of at least {@code minSamples} samples whose end phase is within
+	 * {@code tolerance} cycles of a whole number of cycles. The shortest multiple of the smallest
+	 * convergent denominator that meets the tolerance is used. If no convergent meets it, the
+	 * length is rounded to the sample nearest the end of the first cycle after {@code minSamples}.
+	 *
+	 * @param frequency frequency of the tone in Hz
+	 * @param sampleRate sample rate of the tone in Hz
+	 * @param minSamples minimum length in samples
+	 * @param tolerance maximum phase error at the loop point, in cycles
+	 * @return loop length in samples
+	 */
+	static int loopLength(double frequency, int sampleRate, int minSamples, double tolerance)
+	{
+		double ratio = frequency / sampleRate;
+		minSamples = Math.max(1, minSamples);
+
+		//Convergents h/k of the continued fraction of ratio
+		long hPrev = 0, kPrev = 1;
+		long h = 1, k = 0;
+		double remainder = ratio;
+		for(int term = 0; term < MAX_TERMS; term++)
+		{
+			double whole = Math.floor(remainder);
+			long hNext = (long)whole * h + hPrev;
+			long kNext = (long)whole * k + kPrev;
+			if(kNext > MAX_LOOP_SAMPLES){break;}
+			hPrev = h; kPrev = k;
+			h = hNext; k = kNext;
+
+			if(k > 0)
+			{
+				long multiple = (minSamples + k - 1) / k;
+				double error = Math.abs(k * ratio - h) * multiple;
+				if(error <= tolerance && multiple * k <= MAX_LOOP_SAMPLES)
+				{
+					return (int)(multiple * k);
+				}
+			}
+
+			double fraction = remainder - whole;
+			if(fraction <= 0){break;}
+			remainder = 1 / fraction;
+		}
+
+		double cycles = Math.ceil(minSamples * ratio);
+		long length = Math.round(cycles / ratio);
+		if(length < minSamples)
+		{
+			length = Math.round((cycles + 1) / ratio);
+		}
+		return (int)Math.min(length, MAX_LOOP_SAMPLES);
+	}
+
+	/**
+	 * Least-recently-used cache of generated loop tones, bounded by the total size of the cached
+	 * sample arrays.
+	 */
+	static final class Cache
+	{
+		private final LinkedHashMap<Key, float[]> mTones = new LinkedHashMap<>(16, 0.75f, true);
+		private long mCapacityBytes;
+		private long mSizeBytes = 0;
+
+		Cache(long capacityBytes)
+		{
+			mCapacityBytes = capacityBytes;
+		}
+
+		synchronized float[] get(Key key)
+		{
+			return mTones.get(key);
+		}
+
+		synchronized void put(Key key, float[] tone)
+		{
+			long bytes = 4L * tone.length;
+			if(bytes > mCapacityBytes){return;}
+			float[] previous = mTones.put(key, tone);
+			if(previous != null)
+			{
+				mSizeBytes -= 4L * previous.length;
+			}
+			mSizeBytes += bytes;
+			trim();
+		}
+
+		synchronized void setCapacity(long capacityBytes)
+		{
+			mCapacityBytes = Math.max(0, capacityBytes);
+			trim();
+		}
+
+		synchronized long getSizeBytes()
+		{
+			return mSizeBytes;
+		}
+
+		synchronized void clear()
+		{
+			mTones.clear();
+			mSizeBytes = 0;
+		}
+
+		private void trim()
+		{
+			Iterator<Map.Entry<Key, float[]>> iterator = mTones.entrySet().iterator();
+			while(mSizeBytes > mCapacityBytes && iterator.hasNext())
+			{
+				mSizeBytes -= 4L * iterator.next().getValue().length;
+				iterator.remove();
+			}
+		}
+	}
+
+	static final class Key
+	{
+		private final int mWaveform;
+		private final double mFrequency;
+		private final int mSampleRate;
+		private final float mAmplitude;
+		private final int mMinSamples;
+		private final double mTolerance;
+
+		Key(int waveform, double frequency, int sampleRate, float amplitude, int minSamples, double tolerance)
+		{
+			mWaveform = waveform;
+			mFrequency = frequency;
+			mSampleRate = sampleRate;
+			mAmplitude = amplitude;
+			mMinSamples = minSamples;
+			mTolerance = tolerance;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if(this == o){return true;}
+			if(!(o instanceof Key)){return false;}
+			Key other = (Key)o;
+			return mWaveform == other.mWaveform
+					&& Double.doubleToLongBits(mFrequency) == Double.doubleToLongBits(other.mFrequency)
+					&& mSampleRate == other.mSampleRate
+					&& Float.floatToIntBits(mAmplitude) == Float.floatToIntBits(other.mAmplitude)
+					&& mMinSamples == other.mMinSamples
+					&& Double.doubleToLongBits(mTolerance) == Double.doubleToLongBits(other.mTolerance);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			long frequencyBits = Double.doubleToLongBits(mFrequency);
+			long toleranceBits = Double.doubleToLongBits(mTolerance);
+			int result = mWaveform;
+			result = 31 * result + (int)(frequencyBits ^ (frequencyBits >>> 32));
+			result = 31 * result + mSampleRate;
+			result = 31 * result + Float.floatToIntBits(mAmplitude);
+			result = 31 * result + mMinSamples;
+			result = 31 * result + (int)(toleranceBits ^ (toleranceBits >>> 32));
+			return result;
+		}
+
+		/**
+		 * @return key of the tone in a {@link DiskWaveCache}, with every parameter written exactly
+		 */
+		String toDiskKey()
+		{
+			return "tone/" + GENERATOR_VERSION + "/" + mWaveform + "/" + Long.toHexString(Double.doubleToLongBits(mFrequency))
+					+ "/" + mSampleRate + "/" + Integer.toHexString(Float.floatToIntBits(mAmplitude)) + "/" + mMinSamples
+					+ "/" + Long.toHexString(Double.doubleToLongBits(mTolerance));
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package net.scarlettsystems.android.wavefactory;
+
+/**
+ * Cache of decoded sounds used by {@code WaveLoader}, keyed by resource ID. Implementations
+ * decide what to keep within their memory budget. Pinned sounds are never evicted, except by an
+ * explicit {@link #evict(int)} or {@link #clear()}.
+ */
+@SuppressWarnings("unused")
+public interface WaveCache
+{
+	/**
+	 * @param id sound ID
+	 * @return cached samples, or null if the sound is not cached
+	 */
+	SampleBuffer get(int id);
+
+	/**
+	 * Add a sound, evicting others if the cache goes over its budget.
+	 *
+	 * @param id sound ID
+	 * @param samples decoded samples
+	 */
+	void put(int id, SampleBuffer samples);
+
+	/**
+	 * Remove a sound, even if it is pinned.
+	 *
+	 * @param id sound ID
+	 * @return true if the sound was cached
+	 */
+	boolean evict(int id);
+
+	/**
+	 * Evict unpinned sounds until the cache holds at most {@code maxBytes}, or only pinned sounds
+	 * remain.
+	 *
+	 * @param maxBytes size to shrink to in bytes
+	 */
+	void trim(long maxBytes);
+
+	/**
+	 * Remove every sound, pinned or not. Pins are kept for sounds cached later.
+	 */
+	void clear();
+
+	/**
+	 * Protect a sound from eviction by budget or trimming. A sound can be pinned before it is
+	 * cached.
+	 *
+	 * @param id sound ID
+	 */
+	void pin(int id);
+
+	/**
+	 * @param id sound ID
+	 */
+	void unpin(int id);
+
+	/**
+	 * @return total size of cached samples in bytes
+	 */
+	long getSizeBytes();
+
+	/**
+	 * @return memory budget in bytes
+	 */
+	long getCapacityBytes();
+}
@@ -0,0 +1,185 @@
+package net.scarlettsystems.android.wavefactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Conversions between 16-bit PCM and float audio, and tanh mixing of float sounds.
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public final class WaveConversion
+{
+	private static final int DECODE_BLOCK_SIZE = 8192;
+	private static final int MIX_BLOCK_SIZE = 512;
+
+	private WaveConversion(){}
+
+	/**
+	 * Mix a sound into another sound via addition and hyperbolic tangent compression.
+	 * If the full length of the sample cannot fit into the destination at the specified offset,
+	 * the sample will be truncated.
+	 *
+	 * To layer several sounds, {@link MixBus} sums them all before compressing once.
+	 *
+	 * @param sound sound sample to mix
+	 * @param destination destination array
+	 * @param offset offset index from the start at which to start writing the sound sample
+	 */
+	public static void mixWaves(float[] sound, float[] destination, int offset)
+	{
+		int writeAbleSamples = Math.min(sound.length, destination.length - offset);
+
+		for(int c = 0; c < writeAbleSamples; c++)
+		{
+			destination[c + offset] = (float)Math.tanh(sound[c] + destination[c + offset]);
+		}
+	}
+
+	/**
+	 * Mix a sound into another sound via addition and hyperbolic tangent compression, converting
+	 * it to float a block at a time. If the full length of the sample cannot fit into the
+	 * destination at the specified offset, the sample will be truncated.
+	 *
+	 * @param sound sound sample to mix
+	 * @param destination destination array
+	 * @param offset offset index from the start at which to start writing the sound sample
+	 */
+	public static void mixWaves(SampleBuffer sound, float[] destination, int offset)
+	{
+		int writeAbleSamples = Math.min(sound.length(), destination.length - offset);
+		float[] block = new float[Math.max(1, Math.min(writeAbleSamples, MIX_BLOCK_SIZE))];
+
+		for(int position = 0; position < writeAbleSamples; position += block.length)
+		{
+			int count = sound.read(position, block, 0, Math.min(block.length, writeAbleSamples - position));
+			for(int c = 0; c < count; c++)
+			{
+				int index = offset + position + c;
+				destination[index] = (float)Math.tanh(block[c] + destination[index]);
+			}
+		}
+	}
+
+	/**
+	 * Convert a PCM byte array into a float array
+	 *
+	 * @param bytes byte array of PCM audio
+	 * @return float array of audio
+	 */
+	public static float[] pcmToFloat(byte[] bytes)
+	{
+		ShortBuffer samples = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+		float[] floats = new float[samples.remaining()];
+		for(int c = 0; c < floats.length; c++)
+		{
+			floats[c] = samples.get(c)/32768.0f;
+		}
+		return floats;
+	}
+
+	/**
+	 * Convert a float audio array to a PCM byte array
+	 *
+	 * @param floats float array of audio
+	 * @return byte array of PCM audio
+	 */
+	public static byte[] floatToPcm(float[] floats)
+	{
+		byte[] bytes = new byte[floats.length * 2];
+		floatToPcm(floats, ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN));
+		return bytes;
+	}
+
+	/**
+	 * Convert a float audio array to PCM in a heap or direct buffer. Samples are written from the
+	 * buffer's position in its byte order, and the position is advanced past them. Use
+	 * {@link ByteOrder#LITTLE_ENDIAN} for WAV data or {@link ByteOrder#nativeOrder()} for audio
+	 * sinks.
+	 *
+	 * @param floats float array of audio
+	 * @param dst destination buffer
+	 */
+	public static void floatToPcm(float[] floats, ByteBuffer dst)
+	{
+		floatToPcm(floats, 0, floats.length, dst);
+	}
+
+	/**
+	 * Convert part of a float audio array to PCM in a heap or direct buffer. Samples are written
+	 * from the buffer's position in its byte order, and the position is advanced past them.
+	 *
+	 * @param floats float array of audio
+	 * @param offset index of the first sample to convert
+	 * @param length number of samples to convert
+	 * @param dst destination buffer
+	 */
+	public static void floatToPcm(float[] floats, int offset, int length, ByteBuffer dst)
+	{
+		if(offset < 0 || length < 0 || offset > floats.length - length)
+		{
+			throw new IndexOutOfBoundsException("Range [" + offset + ", " + offset + " + " + length + ") out of bounds for length " + floats.length);
+		}
+		Pcm16.write(floats, offset, length, Pcm16.SCALE_CONVERSION, dst);
+	}
+
+	/**
+	 * Read 16-bit PCM from a channel onto the heap without converting it.
+	 *
+	 * @param data channel positioned at the first sample
+	 * @param length number of bytes to read, or {@link WaveFileParser#LENGTH_UNKNOWN} to read
+	 *               until the channel ends
+	 * @return 16-bit samples
+	 * @throws IOException if the channel cannot be read
+	 */
+	static short[] readPcm16(ReadableByteChannel data, long length) throws IOException
+	{
+		short[] output = new short[length == WaveFileParser.LENGTH_UNKNOWN ? DECODE_BLOCK_SIZE : (int)(length / 2)];
+		ByteBuffer block = ByteBuffer.allocate(DECODE_BLOCK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		int count = 0;
+		while(data.read(block) >= 0 || block.position() > 1)
+		{
+			block.flip();
+			int samples = block.remaining() / 2;
+			if(count + samples > output.length)
+			{
+				if(length != WaveFileParser.LENGTH_UNKNOWN){samples = output.length - count;}
+				else{output = Arrays.copyOf(output, Math.max(2 * output.length, count + samples));}
+			}
+			block.asShortBuffer().get(output, count, samples);
+			count += samples;
+			block.position(block.position() + 2 * samples);
+			block.compact();
+			if(count == output.length && length != WaveFileParser.LENGTH_UNKNOWN){break;}
+		}
+		return count == output.length ? output : Arrays.copyOf(output, count);
+	}
+
+	/**
+	 * Read 16-bit PCM from a channel straight into a direct buffer without converting it.
+	 *
+	 * @param data channel positioned at the first sample
+	 * @param length number of bytes to read, or {@link WaveFileParser#LENGTH_UNKNOWN} to read
+	 *               until the channel ends
+	 * @return 16-bit samples in a direct buffer
+	 * @throws IOException if the channel cannot be read
+	 */
+	static ShortBuffer readPcm16Direct(ReadableByteChannel data, long length) throws IOException
+	{
+		if(length == WaveFileParser.LENGTH_UNKNOWN)
+		{
+			short[] samples = readPcm16(data, length);
+			ShortBuffer output = ByteBuffer.allocateDirect(2 * samples.length).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+			output.put(samples).flip();
+			return output;
+		}
+		ByteBuffer output = ByteBuffer.allocateDirect((int)(length / 2) * 2).order(ByteOrder.LITTLE_ENDIAN);
+		while(output.hasRemaining() && data.read(output) >= 0){}
+		output.flip();
+		output.limit(output.limit() & ~1);
+		return output.asShortBuffer();
+	}
+}
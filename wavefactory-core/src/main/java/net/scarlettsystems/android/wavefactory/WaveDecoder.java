@@ -0,0 +1,557 @@
+package net.scarlettsystems.android.wavefactory;
+
+import android.support.annotation.IntDef;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Retention;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+
+import static java.lang.annotation.RetentionPolicy.SOURCE;
+
+/**
+ * Streaming decoder from wave file sample data to float. The sample format is read from the
+ * header, and one of several kernels, each specialised for a single format, converts bytes
+ * straight to float in one pass. Supported formats are 8-bit unsigned, 16-bit, 24-bit and 32-bit
+ * signed PCM, and 32-bit and 64-bit IEEE float, in plain or extensible format chunks.
+ *
+ * Multichannel audio can be decoded interleaved as stored, deinterleaved into one array per
+ * channel, or mixed down to mono by averaging the channels.
+ *
+ * Time spent in the kernels is recorded, so decoding throughput can be read back in samples per
+ * second. Instances are not thread-safe.
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public final class WaveDecoder
+{
+	@Retention(SOURCE)
+	@IntDef({CHANNELS_INTERLEAVED, CHANNELS_MIXDOWN})
+	public @interface ChannelMode {}
+	/**
+	 * Keep every channel, interleaved frame by frame as in the file.
+	 */
+	public static final int CHANNELS_INTERLEAVED = 0;
+	/**
+	 * Average the channels of each frame into one mono sample.
+	 */
+	public static final int CHANNELS_MIXDOWN = 1;
+
+	/**
+	 * Frame count reported when the file does not declare the length of its sample data.
+	 */
+	public static final long LENGTH_UNKNOWN = WaveFileParser.LENGTH_UNKNOWN;
+
+	private static final int DECODE_BLOCK_SIZE = 8192;
+
+	private final ReadableByteChannel mData;
+	private final Kernel mKernel;
+	private final int mChannelCount;
+	private final int mSampleRate;
+	private final int mBitsPerSample;
+	private final int mFrameBytes;
+	private final long mFrameCount;
+	private final ByteBuffer mBlock;
+	private boolean mEnded = false;
+
+	private long mSamplesDecoded = 0;
+	private long mDecodeNanos = 0;
+
+	/**
+	 * Read the header of a wave file from a stream, leaving the stream positioned at the first
+	 * sample.
+	 *
+	 * @param stream stream positioned at the start of the file
+	 * @throws IOException if the stream cannot be read, or is not a wave file in a supported format
+	 */
+	public WaveDecoder(InputStream stream) throws IOException
+	{
+		this(new WaveFileParser(stream));
+	}
+
+	/**
+	 * Read the header of a wave file from a channel, leaving the channel positioned at the first
+	 * sample.
+	 *
+	 * @param channel channel positioned at the start of the file
+	 * @throws IOException if the channel cannot be read, or is not a wave file in a supported
+	 *                     format
+	 */
+	public WaveDecoder(ReadableByteChannel channel) throws IOException
+	{
+		this(new WaveFileParser(channel));
+	}
+
+	WaveDecoder(WaveFileParser info) throws IOException
+	{
+		mKernel = kernelFor(info.getFormat(), info.getBitsPerSample());
+		if(mKernel == null)
+		{
+			throw new IOException("Unsupported wave format " + info.getFormat() + " with " + info.getBitsPerSample() + " bits per sample.");
+		}
+		if(info.getChannelCount() < 1)
+		{
+			throw new IOException("Wave file has no channels.");
+		}
+		mChannelCount = info.getChannelCount();
+		mSampleRate = (int)info.getSampleRate();
+		mBitsPerSample = info.getBitsPerSample();
+		mFrameBytes = mChannelCount * mKernel.mBytesPerSample;
+		mFrameCount = info.getDataLength() == LENGTH_UNKNOWN ? LENGTH_UNKNOWN : info.getDataLength() / mFrameBytes;
+		mData = info.getDataChannel();
+		mBlock = ByteBuffer.allocate(Math.max(1, DECODE_BLOCK_SIZE / mFrameBytes) * mFrameBytes).order(ByteOrder.LITTLE_ENDIAN);
+		mBlock.limit(0);
+	}
+
+	public int getChannelCount()
+	{
+		return mChannelCount;
+	}
+
+	public int getSampleRate()
+	{
+		return mSampleRate;
+	}
+
+	public int getBitsPerSample()
+	{
+		return mBitsPerSample;
+	}
+
+	/**
+	 * @return number of frames, i.e. samples per channel, or {@link #LENGTH_UNKNOWN}
+	 */
+	public long getFrameCount()
+	{
+		return mFrameCount;
+	}
+
+	/**
+	 * Decode the next frames.
+	 *
+	 * @param dst destination array
+	 * @param offset index in {@code dst} of the first sample to write
+	 * @param frames maximum number of frames to decode
+	 * @param channelMode whether to keep channels interleaved or mix them down to mono
+	 * @return number of frames decoded, or -1 at the end of the data
+	 * @throws IOException if the source cannot be read
+	 */
+	public int read(float[] dst, int offset, int frames, @ChannelMode int channelMode) throws IOException
+	{
+		int width = channelMode == CHANNELS_MIXDOWN ? 1 : mChannelCount;
+		checkBounds(dst.length, offset, frames, width);
+		if(!fill()){return -1;}
+		int count = Math.min(frames, mBlock.remaining() / mFrameBytes);
+		int position = mBlock.position();
+		long start = System.nanoTime();
+		if(channelMode == CHANNELS_MIXDOWN && mChannelCount > 1)
+		{
+			float gain = 1.0f / mChannelCount;
+			mKernel.decode(mBlock, position, mFrameBytes, count, dst, offset, gain);
+			for(int channel = 1; channel < mChannelCount; channel++)
+			{
+				mKernel.accumulate(mBlock, position + channel * mKernel.mBytesPerSample, mFrameBytes, count, dst, offset, gain);
+			}
+		}
+		else
+		{
+			mKernel.decode(mBlock, position, mKernel.mBytesPerSample, count * mChannelCount, dst, offset, 1.0f);
+		}
+		record(start, (long)count * mChannelCount);
+		mBlock.position(position + count * mFrameBytes);
+		return count;
+	}
+
+	/**
+	 * Decode the next frames into one array per channel.
+	 *
+	 * @param dst destination arrays, one per channel
+	 * @param offset index in each array of the first sample to write
+	 * @param frames maximum number of frames to decode
+	 * @return number of frames decoded, or -1 at the end of the data
+	 * @throws IOException if the source cannot be read
+	 */
+	public int read(float[][] dst, int offset, int frames) throws IOException
+	{
+		if(dst.length != mChannelCount)
+		{
+			throw new IllegalArgumentException("Expected " + mChannelCount + " channel arrays, got " + dst.length + ".");
+		}
+		for(float[] channel : dst)
+		{
+			checkBounds(channel.length, offset, frames, 1);
+		}
+		if(!fill()){return -1;}
+		int count = Math.min(frames, mBlock.remaining() / mFrameBytes);
+		int position = mBlock.position();
+		long start = System.nanoTime();
+		for(int channel = 0; channel < mChannelCount; channel++)
+		{
+			mKernel.decode(mBlock, position + channel * mKernel.mBytesPerSample, mFrameBytes, count, dst[channel], offset, 1.0f);
+		}
+		record(start, (long)count * mChannelCount);
+		mBlock.position(position + count * mFrameBytes);
+		return count;
+	}
+
+	/**
+	 * Decode all remaining frames.
+	 *
+	 * @param channelMode whether to keep channels interleaved or mix them down to mono
+	 * @return float array of audio
+	 * @throws IOException if the source cannot be read
+	 */
+	public float[] readAll(@ChannelMode int channelMode) throws IOException
+	{
+		int width = channelMode == CHANNELS_MIXDOWN ? 1 : mChannelCount;
+		float[] output = new float[initialFrames() * width];
+		int frames = 0;
+		while(true)
+		{
+			if(frames * width == output.length)
+			{
+				if(mFrameCount != LENGTH_UNKNOWN && frames >= mFrameCount){break;}
+				output = Arrays.copyOf(output, Math.max(2 * output.length, width * DECODE_BLOCK_SIZE));
+			}
+			int read = read(output, frames * width, output.length / width - frames, channelMode);
+			if(read < 0){break;}
+			frames += read;
+		}
+		return frames * width == output.length ? output : Arrays.copyOf(output, frames * width);
+	}
+
+	/**
+	 * Decode all remaining frames, converting them to another sample rate block by block as they
+	 * are decoded.
+	 *
+	 * @param channelMode whether to keep channels interleaved or mix them down to mono
+	 * @param sampleRate sample rate of the output in Hz
+	 * @return float array of audio at {@code sampleRate}
+	 * @throws IOException if the source cannot be read
+	 * @see Resampler
+	 */
+	public float[] readAll(@ChannelMode int channelMode, int sampleRate) throws IOException
+	{
+		if(sampleRate == mSampleRate){return readAll(channelMode);}
+		int width = channelMode == CHANNELS_MIXDOWN ? 1 : mChannelCount;
+		Resampler resampler = new Resampler(mSampleRate, sampleRate, width);
+		float[] block = new float[DECODE_BLOCK_SIZE * width];
+		float[] output = new float[(int)Math.min(resampler.getOutputLength(initialFrames()), Integer.MAX_VALUE - 8) * width];
+		int frames = 0;
+		while(true)
+		{
+			int read = read(block, 0, DECODE_BLOCK_SIZE, channelMode);
+			if(read < 0){break;}
+			int required = (frames + resampler.getMaxOutputFrames(read)) * width;
+			if(required > output.length)
+			{
+				output = Arrays.copyOf(output, Math.max(2 * output.length, required));
+			}
+			frames += resampler.process(block, 0, read, output, frames * width);
+		}
+		int required = (frames + resampler.getFlushFrames()) * width;
+		if(required > output.length)
+		{
+			output = Arrays.copyOf(output, required);
+		}
+		frames += resampler.flush(output, frames * width);
+		return frames * width == output.length ? output : Arrays.copyOf(output, frames * width);
+	}
+
+	/**
+	 * Decode all remaining frames into one array per channel.
+	 *
+	 * @return float arrays of audio, one per channel
+	 * @throws IOException if the source cannot be read
+	 */
+	public float[][] readAllDeinterleaved() throws IOException
+	{
+		float[][] output = new float[mChannelCount][initialFrames()];
+		int frames = 0;
+		while(true)
+		{
+			if(frames == output[0].length)
+			{
+				if(mFrameCount != LENGTH_UNKNOWN && frames >= mFrameCount){break;}
+				for(int channel = 0; channel < mChannelCount; channel++)
+				{
+					output[channel] = Arrays.copyOf(output[channel], Math.max(2 * frames, DECODE_BLOCK_SIZE));
+				}
+			}
+			int read = read(output, frames, output[0].length - frames);
+			if(read < 0){break;}
+			frames += read;
+		}
+		if(frames != output[0].length)
+		{
+			for(int channel = 0; channel < mChannelCount; channel++)
+			{
+				output[channel] = Arrays.copyOf(output[channel], frames);
+			}
+		}
+		return output;
+	}
+
+	/**
+	 * @return number of samples decoded so far, counting every channel
+	 */
+	public long getSamplesDecoded()
+	{
+		return mSamplesDecoded;
+	}
+
+	/**
+	 * @return time spent converting samples so far in nanoseconds, excluding reading the source
+	 */
+	public long getDecodeNanos()
+	{
+		return mDecodeNanos;
+	}
+
+	/**
+	 * @return decoding throughput so far in samples per second, counting every channel and
+	 * excluding time spent reading the source, or 0 if nothing has been decoded
+	 */
+	public double getSamplesPerSecond()
+	{
+		return mDecodeNanos == 0 ? 0 : mSamplesDecoded * 1e9 / mDecodeNanos;
+	}
+
+	private int initialFrames()
+	{
+		return mFrameCount == LENGTH_UNKNOWN ? 0 : (int)Math.min(mFrameCount, Integer.MAX_VALUE - 8);
+	}
+
+	private void record(long start, long samples)
+	{
+		mDecodeNanos += System.nanoTime() - start;
+		mSamplesDecoded += samples;
+	}
+
+	/**
+	 * Make sure at least one whole frame is buffered.
+	 *
+	 * @return false at the end of the data
+	 */
+	private boolean fill() throws IOException
+	{
+		if(mBlock.remaining() >= mFrameBytes){return true;}
+		if(mEnded){return false;}
+		mBlock.compact();
+		while(mBlock.position() < mFrameBytes || mBlock.hasRemaining())
+		{
+			if(mData.read(mBlock) < 0)
+			{
+				mEnded = true;
+				break;
+			}
+		}
+		mBlock.flip();
+		return mBlock.remaining() >= mFrameBytes;
+	}
+
+	private static void checkBounds(int length, int offset, int frames, int width)
+	{
+		if(offset < 0 || frames < 0 || offset > length - (long)frames * width)
+		{
+			throw new IndexOutOfBoundsException("Invalid read of " + frames + " frames at " + offset);
+		}
+	}
+
+	/**
+	 * @param format format code from the header
+	 * @param bitsPerSample container size of each sample
+	 * @return kernel for the format, or null if it is not supported
+	 */
+	static Kernel kernelFor(int format, int bitsPerSample)
+	{
+		if(format == WaveFileParser.FMT_PCM)
+		{
+			switch(bitsPerSample)
+			{
+				case 8: return UNSIGNED_8;
+				case 16: return SIGNED_16;
+				case 24: return SIGNED_24;
+				case 32: return SIGNED_32;
+			}
+		}
+		else if(format == WaveFileParser.FMT_IEEE_FLOAT)
+		{
+			switch(bitsPerSample)
+			{
+				case 32: return FLOAT_32;
+				case 64: return FLOAT_64;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Conversion of one sample format to float. Samples are read with absolute indexing from a
+	 * little-endian buffer, so the buffer's position is not used and it may be shared. Each
+	 * kernel runs a loop specialised for its format, with no per-sample dispatch.
+	 */
+	static abstract class Kernel
+	{
+		final int mBytesPerSample;
+
+		Kernel(int bytesPerSample)
+		{
+			mBytesPerSample = bytesPerSample;
+		}
+
+		/**
+		 * @param src little-endian source buffer
+		 * @param index byte index of the first sample
+		 * @param stride bytes from one sample to the next
+		 * @param count number of samples
+		 * @param dst destination array
+		 * @param offset index in {@code dst} of the first sample to write
+		 * @param gain factor applied to each sample
+		 */
+		abstract void decode(ByteBuffer src, int index, int stride, int count, float[] dst, int offset, float gain);
+
+		/**
+		 * As {@link #decode}, but adds each sample to the destination.
+		 */
+		abstract void accumulate(ByteBuffer src, int index, int stride, int count, float[] dst, int offset, float gain);
+	}
+
+	private static final Kernel UNSIGNED_8 = new Kernel(1)
+	{
+		@Override
+		void decode(ByteBuffer src, int index, int stride, int count, float[] dst, int offset, float gain)
+		{
+			float scale = gain / 128.0f;
+			for(int c = 0; c < count; c++, index += stride)
+			{
+				dst[offset + c] = ((src.get(index) & 0xFF) - 128) * scale;
+			}
+		}
+
+		@Override
+		void accumulate(ByteBuffer src, int index, int stride, int count, float[] dst, int offset, float gain)
+		{
+			float scale = gain / 128.0f;
+			for(int c = 0; c < count; c++, index += stride)
+			{
+				dst[offset + c] += ((src.get(index) & 0xFF) - 128) * scale;
+			}
+		}
+	};
+
+	private static final Kernel SIGNED_16 = new Kernel(2)
+	{
+		@Override
+		void decode(ByteBuffer src, int index, int stride, int count, float[] dst, int offset, float gain)
+		{
+			float scale = gain / 32768.0f;
+			for(int c = 0; c < count; c++, index += stride)
+			{
+				dst[offset + c] = src.getShort(index) * scale;
+			}
+		}
+
+		@Override
+		void accumulate(ByteBuffer src, int index, int stride, int count, float[] dst, int offset, float gain)
+		{
+			float scale = gain / 32768.0f;
+			for(int c = 0; c < count; c++, index += stride)
+			{
+				dst[offset + c] += src.getShort(index) * scale;
+			}
+		}
+	};
+
+	private static final Kernel SIGNED_24 = new Kernel(3)
+	{
+		@Override
+		void decode(ByteBuffer src, int index, int stride, int count, float[] dst, int offset, float gain)
+		{
+			float scale = gain / 8388608.0f;
+			for(int c = 0; c < count; c++, index += stride)
+			{
+				int value = (src.get(index) & 0xFF) | (src.get(index + 1) & 0xFF) << 8 | src.get(index + 2) << 16;
+				dst[offset + c] = value * scale;
+			}
+		}
+
+		@Override
+		void accumulate(ByteBuffer src, int index, int stride, int count, float[] dst, int offset, float gain)
+		{
+			float scale = gain / 8388608.0f;
+			for(int c = 0; c < count; c++, index += stride)
+			{
+				int value = (src.get(index) & 0xFF) | (src.get(index + 1) & 0xFF) << 8 | src.get(index + 2) << 16;
+				dst[offset + c] += value * scale;
+			}
+		}
+	};
+
+	private static final Kernel SIGNED_32 = new Kernel(4)
+	{
+		@Override
+		void decode(ByteBuffer src, int index, int stride, int count, float[] dst, int offset, float gain)
+		{
+			float scale = gain / 2147483648.0f;
+			for(int c = 0; c < count; c++, index += stride)
+			{
+				dst[offset + c] = src.getInt(index) * scale;
+			}
+		}
+
+		@Override
+		void accumulate(ByteBuffer src, int index, int stride, int count, float[] dst, int offset, float gain)
+		{
+			float scale = gain / 2147483648.0f;
+			for(int c = 0; c < count; c++, index += stride)
+			{
+				dst[offset + c] += src.getInt(index) * scale;
+			}
+		}
+	};
+
+	private static final Kernel FLOAT_32 = new Kernel(4)
+	{
+		@Override
+		void decode(ByteBuffer src, int index, int stride, int count, float[] dst, int offset, float gain)
+		{
+			for(int c = 0; c < count; c++, index += stride)
+			{
+				dst[offset + c] = src.getFloat(index) * gain;
+			}
+		}
+
+		@Override
+		void accumulate(ByteBuffer src, int index, int stride, int count, float[] dst, int offset, float gain)
+		{
+			for(int c = 0; c < count; c++, index += stride)
+			{
+				dst[offset + c] += src.getFloat(index) * gain;
+			}
+		}
+	};
+
+	private static final Kernel FLOAT_64 = new Kernel(8)
+	{
+		@Override
+		void decode(ByteBuffer src, int index, int stride, int count, float[] dst, int offset, float gain)
+		{
+			for(int c = 0; c < count; c++, index += stride)
+			{
+				dst[offset + c] = (float)src.getDouble(index) * gain;
+			}
+		}
+
+		@Override
+		void accumulate(ByteBuffer src, int index, int stride, int count, float[] dst, int offset, float gain)
+		{
+			for(int c = 0; c < count; c++, index += stride)
+			{
+				dst[offset + c] += (float)src.getDouble(index) * gain;
+			}
+		}
+	};
+}
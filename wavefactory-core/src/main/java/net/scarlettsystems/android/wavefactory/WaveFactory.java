@@ -0,0 +1,918 @@
+package net.scarlettsystems.android.wavefactory;
+
+import android.support.annotation.IntDef;
+
+import java.io.IOException;
+import java.lang.annotation.Retention;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+import static java.lang.annotation.RetentionPolicy.SOURCE;
+
+@SuppressWarnings("unused, WeakerAccess")
+public class WaveFactory
+{
+	@Retention(SOURCE)
+	@IntDef({ENCODING_PCM_8BIT, ENCODING_PCM_16BIT, ENCODING_PCM_FLOAT})
+	public @interface Format {}
+	//Same values as the android.media.AudioFormat encodings, without depending on Android
+	public static final int ENCODING_PCM_8BIT = 3;
+	public static final int ENCODING_PCM_16BIT = 2;
+	public static final int ENCODING_PCM_FLOAT = 4;
+
+	@Retention(SOURCE)
+	@IntDef({WAVEFORM_SINE, WAVEFORM_SQUARE, WAVEFORM_TRIANGULAR, WAVEFORM_SAWTOOTH})
+	public @interface Waveform {}
+	public static final int WAVEFORM_SINE = 0;
+	public static final int WAVEFORM_SQUARE = 1;
+	public static final int WAVEFORM_TRIANGULAR = 2;
+	public static final int WAVEFORM_SAWTOOTH = 3;
+
+	@Retention(SOURCE)
+	@IntDef({NOISE_WHITE, NOISE_PINK, NOISE_BROWN})
+	public @interface Noise {}
+	public static final int NOISE_WHITE = 0;
+	public static final int NOISE_PINK = 1;
+	public static final int NOISE_BROWN = 2;
+
+	/**
+	 * Default maximum phase error, in cycles, at the end of a {@code *ToneRound*} tone. This is
+	 * the phase at which a unit sine wave rises to 0.005.
+	 */
+	public static final double DEFAULT_LOOP_TOLERANCE = 0.005 / (2 * Math.PI);
+
+	private static final long DEFAULT_TONE_CACHE_CAPACITY = 4 * 1024 * 1024;
+	private static final ToneLoops.Cache TONE_CACHE = new ToneLoops.Cache(DEFAULT_TONE_CACHE_CAPACITY);
+
+	private static volatile boolean sParallelRendering = false;
+	private static volatile DiskWaveCache sDiskCache;
+
+	/**
+	 * Generate a sine wave of specified frequency, duration, and sample rate, with a fade-in and
+	 * fade-out ramp of specified fraction at the start and end.
+	 *
+	 * @param frequency frequency of the waveform in Hz
+	 * @param duration duration of the waveform in seconds
+	 * @param sampleRate sample rate of the waveform in Hz
+	 * @param ramp fraction of the waveform to ramp (0.0~0.5 range)
+	 * @return 16-bit PCM array of the generated waveform
+	 */
+	public static byte[] getSineWavePCM16(float frequency, float duration, int sampleRate, float ramp)
+	{
+		validateInputs(frequency, duration, sampleRate, ramp);
+		int numSamples = (int)Math.floor(duration * sampleRate);
+		byte[] waveBytes = new byte[2 * numSamples];
+		generateWavePCM16(wrapPCM16(waveBytes), numSamples, WAVEFORM_SINE, frequency, sampleRate, ramp);
+		return waveBytes;
+	}
+
+	/**
+	 * Generate a sine wave of specified frequency, duration, and sample rate, with a fade-in and
+	 * fade-out ramp of specified fraction at the start and end, into a heap or direct buffer.
+	 *
+	 * @param frequency frequency of the waveform in Hz
+	 * @param duration duration of the waveform in seconds
+	 * @param sampleRate sample rate of the waveform in Hz
+	 * @param ramp fraction of the waveform to ramp (0.0~0.5 range)
+	 * @param dst destination for 16-bit PCM, written from its position in its byte order
+	 * @return number of samples written
+	 */
+	public static int getSineWavePCM16(float frequency, float duration, int sampleRate, float ramp, ByteBuffer dst)
+	{
+		validateInputs(frequency, duration, sampleRate, ramp);
+		int numSamples = (int)Math.floor(duration * sampleRate);
+		generateWavePCM16(dst, numSamples, WAVEFORM_SINE, frequency, sampleRate, ramp);
+		return numSamples;
+	}
+
+	/**
+	 * Generate a sine wave of specified frequency, duration, and sample rate, with a fade-in and
+	 * fade-out ramp of specified fraction at the start and end.
+	 *
+	 * @param frequency frequency of the waveform in Hz
+	 * @param duration duration of the waveform in seconds
+	 * @param sampleRate sample rate of the waveform in Hz
+	 * @param ramp fraction of the waveform to ramp (0.0~0.5 range)
+	 * @return 32-bit float PCM array of the generated waveform
+	 */
+	public static float[] getSineWavePCMFloat(float frequency, float duration, int sampleRate, float ramp)
+	{
+		validateInputs(frequency, duration, sampleRate, ramp);
+		int numSamples = (int)Math.floor(duration * sampleRate);
+		float[] waveFloats = new float[numSamples];
+		generateWavePCMFloat(waveFloats, WAVEFORM_SINE, frequency, sampleRate, ramp);
+		return waveFloats;
+	}
+
+	/**
+	 * Generate a square wave of specified frequency, duration, and sample rate, with a fade-in and
+	 * fade-out ramp of specified fraction at the start and end.
+	 *
+	 * @param frequency frequency of the waveform in Hz
+	 * @param duration duration of the waveform in seconds
+	 * @param sampleRate sample rate of the waveform in Hz
+	 * @param ramp fraction of the waveform to ramp (0.0~0.5 range)
+	 * @return 16-bit PCM array of the generated waveform
+	 */
+	public static byte[] getSquareWavePCM16(float frequency, float duration, int sampleRate, float ramp)
+	{
+		validateInputs(frequency, duration, sampleRate, ramp);
+		int numSamples = (int)Math.floor(duration * sampleRate);
+		byte[] waveBytes = new byte[2 * numSamples];
+		generateWavePCM16(wrapPCM16(waveBytes), numSamples, WAVEFORM_SQUARE, frequency, sampleRate, ramp);
+		return waveBytes;
+	}
+
+	/**
+	 * Generate a square wave of specified frequency, duration, and sample rate, with a fade-in and
+	 * fade-out ramp of specified fraction at the start and end, into a heap or direct buffer.
+	 *
+	 * @param frequency frequency of the waveform in Hz
+	 * @param duration duration of the waveform in seconds
+	 * @param sampleRate sample rate of the waveform in Hz
+	 * @param ramp fraction of the waveform to ramp (0.0~0.5 range)
+	 * @param dst destination for 16-bit PCM, written from its position in its byte order
+	 * @return number of samples written
+	 */
+	public static int getSquareWavePCM16(float frequency, float duration, int sampleRate, float ramp, ByteBuffer dst)
+	{
+		validateInputs(frequency, duration, sampleRate, ramp);
+		int numSamples = (int)Math.floor(duration * sampleRate);
+		generateWavePCM16(dst, numSamples, WAVEFORM_SQUARE, frequency, sampleRate, ramp);
+		return numSamples;
+	}
+
+	/**
+	 * Generate a square wave of specified frequency, duration, and sample rate, with a fade-in and
+	 * fade-out ramp of specified fraction at the start and end.
+	 *
+	 * @param frequency frequency of the waveform in Hz
+	 * @param duration duration of the waveform in seconds
+	 * @param sampleRate sample rate of the waveform in Hz
+	 * @param ramp fraction of the waveform to ramp (0.0~0.5 range)
+	 * @return 32-bit float PCM array of the generated waveform
+	 */
+	public static float[] getSquareWavePCMFloat(float frequency, float duration, int sampleRate, float ramp)
+	{
+		validateInputs(frequency, duration, sampleRate, ramp);
+		int numSamples = (int)Math.floor(duration * sampleRate);
+		float[] waveFloats = new float[numSamples];
+		generateWavePCMFloat(waveFloats, WAVEFORM_SQUARE, frequency, sampleRate, ramp);
+		return waveFloats;
+	}
+
+	/**
+	 * Generate a triangular wave of specified frequency, duration, and sample rate, with a fade-in and
+	 * fade-out ramp of specified fraction at the start and end.
+	 *
+	 * @param frequency frequency of the waveform in Hz
+	 * @param duration duration of the waveform in seconds
+	 * @param sampleRate sample rate of the waveform in Hz
+	 * @param ramp fraction of the waveform to ramp (0.0~0.5 range)
+	 * @return 16-bit PCM array of the generated waveform
+	 */
+	public static byte[] getTriangularWavePCM16(float frequency, float duration, int sampleRate, float ramp)
+	{
+		validateInputs(frequency, duration, sampleRate, ramp);
+		int numSamples = (int)Math.floor(duration * sampleRate);
+		byte[] waveBytes = new byte[2 * numSamples];
+		generateWavePCM16(wrapPCM16(waveBytes), numSamples, WAVEFORM_TRIANGULAR, frequency, sampleRate, ramp);
+		return waveBytes;
+	}
+
+	/**
+	 * Generate a triangular wave of specified frequency, duration, and sample rate, with a fade-in and
+	 * fade-out ramp of specified fraction at the start and end, into a heap or direct buffer.
+	 *
+	 * @param frequency frequency of the waveform in Hz
+	 * @param duration duration of the waveform in seconds
+	 * @param sampleRate sample rate of the waveform in Hz
+	 * @param ramp fraction of the waveform to ramp (0.0~0.5 range)
+	 * @param dst destination for 16-bit PCM, written from its position in its byte order
+	 * @return number of samples written
+	 */
+	public static int getTriangularWavePCM16(float frequency, float duration, int sampleRate, float ramp, ByteBuffer dst)
+	{
+		validateInputs(frequency, duration, sampleRate, ramp);
+		int numSamples = (int)Math.floor(duration * sampleRate);
+		generateWavePCM16(dst, numSamples, WAVEFORM_TRIANGULAR, frequency, sampleRate, ramp);
+		return numSamples;
+	}
+
+	/**
+	 * Generate a triangular wave of specified frequency, duration, and sample rate, with a fade-in and
+	 * fade-out ramp of specified fraction at the start and end.
+	 *
+	 * @param frequency frequency of the waveform in Hz
+	 * @param duration duration of the waveform in seconds
+	 * @param sampleRate sample rate of the waveform in Hz
+	 * @param ramp fraction of the waveform to ramp (0.0~0.5 range)
+	 * @return 32-bit float PCM array of the generated waveform
+	 */
+	public static float[] getTriangularWavePCMFloat(float frequency, float duration, int sampleRate, float ramp)
+	{
+		validateInputs(frequency, duration, sampleRate, ramp);
+		int numSamples = (int)Math.floor(duration * sampleRate);
+		float[] waveFloats = new float[numSamples];
+		generateWavePCMFloat(waveFloats, WAVEFORM_TRIANGULAR, frequency, sampleRate, ramp);
+		return waveFloats;
+	}
+
+	/**
+	 * Generate a sawtooth wave of specified frequency, duration, and sample rate, with a fade-in and
+	 * fade-out ramp of specified fraction at the start and end.
+	 *
+	 * @param frequency frequency of the waveform in Hz
+	 * @param duration duration of the waveform in seconds
+	 * @param sampleRate sample rate of the waveform in Hz
+	 * @param ramp fraction of the waveform to ramp (0.0~0.5 range)
+	 * @return 16-bit PCM array of the generated waveform
+	 */
+	public static byte[] getSawtoothWavePCM16(float frequency, float duration, int sampleRate, float ramp)
+	{
+		validateInputs(frequency, duration, sampleRate, ramp);
+		int numSamples = (int)Math.floor(duration * sampleRate);
+		byte[] waveBytes = new byte[2 * numSamples];
+		generateWavePCM16(wrapPCM16(waveBytes), numSamples, WAVEFORM_SAWTOOTH, frequency, sampleRate, ramp);
+		return waveBytes;
+	}
+
+	/**
+	 * Generate a sawtooth wave of specified frequency, duration, and sample rate, with a fade-in and
+	 * fade-out ramp of specified fraction at the start and end, into a heap or direct buffer.
+	 *
+	 * @param frequency frequency of the waveform in Hz
+	 * @param duration duration of the waveform in seconds
+	 * @param sampleRate sample rate of the waveform in Hz
+	 * @param ramp fraction of the waveform to ramp (0.0~0.5 range)
+	 * @param dst destination for 16-bit PCM, written from its position in its byte order
+	 * @return number of samples written
+	 */
+	public static int getSawtoothWavePCM16(float frequency, float duration, int sampleRate, float ramp, ByteBuffer dst)
+	{
+		validateInputs(frequency, duration, sampleRate, ramp);
+		int numSamples = (int)Math.floor(duration * sampleRate);
+		generateWavePCM16(dst, numSamples, WAVEFORM_SAWTOOTH, frequency, sampleRate, ramp);
+		return numSamples;
+	}
+
+	/**
+	 * Generate a sawtooth wave of specified frequency, duration, and sample rate, with a fade-in and
+	 * fade-out ramp of specified fraction at the start and end.
+	 *
+	 * @param frequency frequency of the waveform in Hz
+	 * @param duration duration of the waveform in seconds
+	 * @param sampleRate sample rate of the waveform in Hz
+	 * @param ramp fraction of the waveform to ramp (0.0~0.5 range)
+	 * @return 32-bit float PCM array of the generated waveform
+	 */
+	public static float[] getSawtoothWavePCMFloat(float frequency, float duration, int sampleRate, float ramp)
+	{
+		validateInputs(frequency, duration, sampleRate, ramp);
+		int numSamples = (int)Math.floor(duration * sampleRate);
+		float[] waveFloats = new float[numSamples];
+		generateWavePCMFloat(waveFloats, WAVEFORM_SAWTOOTH, frequency, sampleRate, ramp);
+		return waveFloats;
+	}
+
+	/**
+	 * Generate an additive tone of specified fundamental frequency, duration, and sample rate, with
+	 * a fade-in and fade-out ramp of specified fraction at the start and end. The tone is the sum of
+	 * sine partials at the given multiples of the fundamental, all starting at zero phase. Partials
+	 * at or above the nyquist frequency are left out.
+	 *
+	 * @param frequency fundamental frequency of the tone in Hz
+	 * @param duration duration of the tone in seconds
+	 * @param sampleRate sample rate of the tone in Hz
+	 * @param ramp fraction of the tone to ramp (0.0~0.5 range)
+	 * @param ratios frequency of each partial as a multiple of the fundamental
+	 * @param amplitudes amplitude of each partial; sums beyond full scale are clamped
+	 * @return 16-bit PCM array of the generated tone
+	 * @see AdditiveOscillator
+	 */
+	public static byte[] getAdditiveWavePCM16(float frequency, float duration, int sampleRate, float ramp, double[] ratios, float[] amplitudes)
+	{
+		return getAdditiveWavePCM16(frequency, duration, sampleRate, ramp, ratios, amplitudes, null);
+	}
+
+	/**
+	 * Generate an additive tone of specified fundamental frequency, duration, and sample rate, with
+	 * a fade-in and fade-out ramp of specified fraction at the start and end. The tone is the sum of
+	 * sine partials at the given multiples of the fundamental. Partials at or above the nyquist
+	 * frequency are left out.
+	 *
+	 * @param frequency fundamental frequency of the tone in Hz
+	 * @param duration duration of the tone in seconds
+	 * @param sampleRate sample rate of the tone in Hz
+	 * @param ramp fraction of the tone to ramp (0.0~0.5 range)
+	 * @param ratios frequency of each partial as a multiple of the fundamental
+	 * @param amplitudes amplitude of each partial; sums beyond full scale are clamped
+	 * @param phases starting phase of each partial in cycles
+	 * @return 16-bit PCM array of the generated tone
+	 * @see AdditiveOscillator
+	 */
+	public static byte[] getAdditiveWavePCM16(float frequency, float duration, int sampleRate, float ramp, double[] ratios, float[] amplitudes, double[] phases)
+	{
+		validateInputs(frequency, duration, sampleRate, ramp);
+		int numSamples = (int)Math.floor(duration * sampleRate);
+		byte[] waveBytes = new byte[2 * numSamples];
+		boolean timed = WaveMetrics.isEnabled();
+		long start = timed ? System.nanoTime() : 0;
+		createAdditiveOscillator(frequency, sampleRate, numSamples, ramp, ratios, amplitudes, phases).render(wrapPCM16(waveBytes), numSamples);
+		if(timed){WaveMetrics.recordGenerate(WaveMetrics.GENERATOR_ADDITIVE, numSamples, start);}
+		return waveBytes;
+	}
+
+	/**
+	 * Generate an additive tone of specified fundamental frequency, duration, and sample rate, with
+	 * a fade-in and fade-out ramp of specified fraction at the start and end. The tone is the sum of
+	 * sine partials at the given multiples of the fundamental, all starting at zero phase. Partials
+	 * at or above the nyquist frequency are left out.
+	 *
+	 * @param frequency fundamental frequency of the tone in Hz
+	 * @param duration duration of the tone in seconds
+	 * @param sampleRate sample rate of the tone in Hz
+	 * @param ramp fraction of the tone to ramp (0.0~0.5 range)
+	 * @param ratios frequency of each partial as a multiple of the fundamental
+	 * @param amplitudes amplitude of each partial
+	 * @return 32-bit float PCM array of the generated tone
+	 * @see AdditiveOscillator
+	 */
+	public static float[] getAdditiveWavePCMFloat(float frequency, float duration, int sampleRate, float ramp, double[] ratios, float[] amplitudes)
+	{
+		return getAdditiveWavePCMFloat(frequency, duration, sampleRate, ramp, ratios, amplitudes, null);
+	}
+
+	/**
+	 * Generate an additive tone of specified fundamental frequency, duration, and sample rate, with
+	 * a fade-in and fade-out ramp of specified fraction at the start and end. The tone is the sum of
+	 * sine partials at the given multiples of the fundamental. Partials at or above the nyquist
+	 * frequency are left out.
+	 *
+	 * @param frequency fundamental frequency of the tone in Hz
+	 * @param duration duration of the tone in seconds
+	 * @param sampleRate sample rate of the tone in Hz
+	 * @param ramp fraction of the tone to ramp (0.0~0.5 range)
+	 * @param ratios frequency of each partial as a multiple of the fundamental
+	 * @param amplitudes amplitude of each partial
+	 * @param phases starting phase of each partial in cycles
+	 * @return 32-bit float PCM array of the generated tone
+	 * @see AdditiveOscillator
+	 */
+	public static float[] getAdditiveWavePCMFloat(float frequency, float duration, int sampleRate, float ramp, double[] ratios, float[] amplitudes, double[] phases)
+	{
+		validateInputs(frequency, duration, sampleRate, ramp);
+		int numSamples = (int)Math.floor(duration * sampleRate);
+		float[] waveFloats = new float[numSamples];
+		boolean timed = WaveMetrics.isEnabled();
+		long start = timed ? System.nanoTime() : 0;
+		createAdditiveOscillator(frequency, sampleRate, numSamples, ramp, ratios, amplitudes, phases).render(waveFloats, 0, numSamples);
+		if(timed){WaveMetrics.recordGenerate(WaveMetrics.GENERATOR_ADDITIVE, numSamples, start);}
+		return waveFloats;
+	}
+
+	/**
+	 * Generate a sine wave of specified frequency and sample rate, with a minimum duration of
+	 * {@code minDuration}, but with additional extra wave cycles to ensure the zero crossover point
+	 * coincides with a sample. This is useful when a smooth concatenation to a subsequent wave
+	 * (e.g. in a looped tone) is more important than the absolute length.
+	 *
+	 * @param frequency frequency of the waveform in Hz
+	 * @param minDuration minimum duration of the waveform in seconds
+	 * @param sampleRate sample rate of the waveform in Hz
+	 * @return 16-bit PCM array of the generated waveform
+	 */
+	public static byte[] getSineToneRoundPCM16(double frequency, double minDuration, int sampleRate)
+	{
+		return WaveConversion.floatToPcm(getLoopedTone(WAVEFORM_SINE, frequency, minDuration, sampleRate, 1.0f, DEFAULT_LOOP_TOLERANCE));
+	}
+
+	/**
+	 * Generate a sine wave of specified frequency and sample rate, with a minimum duration of
+	 * {@code minDuration}, but with additional extra wave cycles to ensure the zero crossover point
+	 * coincides with a sample, into a heap or direct buffer.
+	 *
+	 * @param frequency frequency of the waveform in Hz
+	 * @param minDuration minimum duration of the waveform in seconds
+	 * @param sampleRate sample rate of the waveform in Hz
+	 * @param dst destination for 16-bit PCM, written from its position in its byte order
+	 * @return number of samples written
+	 */
+	public static int getSineToneRoundPCM16(double frequency, double minDuration, int sampleRate, ByteBuffer dst)
+	{
+		float[] tone = getLoopedTone(WAVEFORM_SINE, frequency, minDuration, sampleRate, 1.0f, DEFAULT_LOOP_TOLERANCE);
+		WaveConversion.floatToPcm(tone, dst);
+		return tone.length;
+	}
+
+	/**
+	 * Generate a sine wave of specified frequency and sample rate, with a minimum duration of
+	 * {@code minDuration}, but with additional extra wave cycles to ensure the zero crossover point
+	 * coincides with a sample. This is useful when a smooth concatenation to a subsequent wave
+	 * (e.g. in a looped tone) is more important than the absolute length.
+	 *
+	 * @param frequency frequency of the waveform in Hz
+	 * @param minDuration minimum duration of the waveform in seconds
+	 * @param sampleRate sample rate of the waveform in Hz
+	 * @return 32-bit float PCM array of the generated waveform
+	 */
+	public static float[] getSineToneRoundPCMFloat(double frequency, double minDuration, int sampleRate)
+	{
+		return getSineToneRoundPCMFloat(frequency, minDuration, sampleRate, DEFAULT_LOOP_TOLERANCE);
+	}
+
+	/**
+	 * Generate a sine wave of specified frequency and sample rate, with a minimum duration of
+	 * {@code minDuration}, but with additional extra wave cycles so that the wave ends within
+	 * {@code tolerance} cycles of a whole cycle. A smaller tolerance gives a cleaner loop point at
+	 * the cost of a potentially longer tone.
+	 *
+	 * @param frequency frequency of the waveform in Hz
+	 * @param minDuration minimum duration of the waveform in seconds
+	 * @param sampleRate sample rate of the waveform in Hz
+	 * @param tolerance maximum phase error at the loop point in cycles (0.0~0.5 range)
+	 * @return 32-bit float PCM array of the generated waveform
+	 */
+	public static float[] getSineToneRoundPCMFloat(double frequency, double minDuration, int sampleRate, double tolerance)
+	{
+		return getLoopedTone(WAVEFORM_SINE, frequency, minDuration, sampleRate, 1.0f, tolerance).clone();
+	}
+
+	/**
+	 * Generate a square wave of specified frequency and sample rate, with a minimum duration of
+	 * {@code minDuration}, but with additional extra wave cycles to ensure the zero crossover point
+	 * coincides with a sample. This is useful when a smooth concatenation to a subsequent wave
+	 * (e.g. in a looped tone) is more important than the absolute length.
+	 *
+	 * @param frequency frequency of the waveform in Hz
+	 * @param minDuration minimum duration of the waveform in seconds
+	 * @param sampleRate sample rate of the waveform in Hz
+	 * @return 16-bit PCM array of the generated waveform
+	 */
+	public static byte[] getSquareToneRoundPCM16(double frequency, double minDuration, int sampleRate)
+	{
+		return getSquareToneRoundPCM16(frequency, minDuration, sampleRate, 1.0f);
+	}
+
+	/**
+	 * Generate a square wave of specified frequency and sample rate, with a minimum duration of
+	 * {@code minDuration}, but with additional extra wave cycles to ensure the zero crossover point
+	 * coincides with a sample. This is useful when a smooth concatenation to a subsequent wave
+	 * (e.g. in a looped tone) is more important than the absolute length.
+	 *
+	 * @param frequency frequency of the waveform in Hz
+	 * @param minDuration minimum duration of the waveform in seconds
+	 * @param sampleRate sample rate of the waveform in Hz
+	 * @param amplitude magnitude from 0 to 1 of the generated waveform
+	 * @return 16-bit PCM array of the generated waveform
+	 */
+	public static byte[] getSquareToneRoundPCM16(double frequency, double minDuration, int sampleRate, float amplitude)
+	{
+		return WaveConversion.floatToPcm(getLoopedTone(WAVEFORM_SQUARE, frequency, minDuration, sampleRate, amplitude, DEFAULT_LOOP_TOLERANCE));
+	}
+
+	/**
+	 * Generate a square wave of specified frequency and sample rate, with a minimum duration of
+	 * {@code minDuration}, but with additional extra wave cycles to ensure the zero crossover point
+	 * coincides with a sample, into a heap or direct buffer.
+	 *
+	 * @param frequency frequency of the waveform in Hz
+	 * @param minDuration minimum duration of the waveform in seconds
+	 * @param sampleRate sample rate of the waveform in Hz
+	 * @param amplitude magnitude from 0 to 1 of the generated waveform
+	 * @param dst destination for 16-bit PCM, written from its position in its byte order
+	 * @return number of samples written
+	 */
+	public static int getSquareToneRoundPCM16(double frequency, double minDuration, int sampleRate, float amplitude, ByteBuffer dst)
+	{
+		float[] tone = getLoopedTone(WAVEFORM_SQUARE, frequency, minDuration, sampleRate, amplitude, DEFAULT_LOOP_TOLERANCE);
+		WaveConversion.floatToPcm(tone, dst);
+		return tone.length;
+	}
+
+	/**
+	 * Generate a square wave of specified frequency and sample rate, with a minimum duration of
+	 * {@code minDuration}, but with additional extra wave cycles to ensure the zero crossover point
+	 * coincides with a sample. This is useful when a smooth concatenation to a subsequent wave
+	 * (e.g. in a looped tone) is more important than the absolute length.
+	 *
+	 * @param frequency frequency of the waveform in Hz
+	 * @param minDuration minimum duration of the waveform in seconds
+	 * @param sampleRate sample rate of the waveform in Hz
+	 * @param amplitude magnitude from 0 to 1 of the generated waveform
+	 * @return 32-bit float PCM array of the generated waveform
+	 */
+	public static float[] getSquareToneRoundPCMFloat(double frequency, double minDuration, int sampleRate, float amplitude)
+	{
+		return getSquareToneRoundPCMFloat(frequency, minDuration, sampleRate, amplitude, DEFAULT_LOOP_TOLERANCE);
+	}
+
+	/**
+	 * Generate a square wave of specified frequency and sample rate, with a minimum duration of
+	 * {@code minDuration}, but with additional extra wave cycles so that the wave ends within
+	 * {@code tolerance} cycles of a whole cycle. A smaller tolerance gives a cleaner loop point at
+	 * the cost of a potentially longer tone.
+	 *
+	 * @param frequency frequency of the waveform in Hz
+	 * @param minDuration minimum duration of the waveform in seconds
+	 * @param sampleRate sample rate of the waveform in Hz
+	 * @param amplitude magnitude from 0 to 1 of the generated waveform
+	 * @param tolerance maximum phase error at the loop point in cycles (0.0~0.5 range)
+	 * @return 32-bit float PCM array of the generated waveform
+	 */
+	public static float[] getSquareToneRoundPCMFloat(double frequency, double minDuration, int sampleRate, float amplitude, double tolerance)
+	{
+		return getLoopedTone(WAVEFORM_SQUARE, frequency, minDuration, sampleRate, amplitude, tolerance).clone();
+	}
+
+	/**
+	 * Generate a square wave of specified frequency and sample rate, with a minimum duration of
+	 * {@code minDuration}, but with additional extra wave cycles to ensure the zero crossover point
+	 * coincides with a sample. This is useful when a smooth concatenation to a subsequent wave
+	 * (e.g. in a looped tone) is more important than the absolute length.
+	 *
+	 * @param frequency frequency of the waveform in Hz
+	 * @param minDuration minimum duration of the waveform in seconds
+	 * @param sampleRate sample rate of the waveform in Hz
+	 * @return 32-bit float PCM array of the generated waveform
+	 */
+	public static float[] getSquareToneRoundPCMFloat(double frequency, double minDuration, int sampleRate)
+	{
+		return getSquareToneRoundPCMFloat(frequency, minDuration, sampleRate, 1.0f);
+	}
+
+	/**
+	 * Generate a block of silence of the specified duration and sampling rate
+	 *
+	 * @param duration duration in seconds
+	 * @param sampleRate sample rate in Hz
+	 * @return 16-bit PCM array of silence
+	 */
+	public static byte[] getSilencePCM16(float duration, int sampleRate)
+	{
+		int numSamples = (int) (Math.floor(duration * sampleRate));
+		byte[] generatedSnd = new byte[2 * numSamples];
+		int idx = 0;
+		for (int i = 0; i < numSamples; ++i)
+		{
+			generatedSnd[idx++] = 0;
+			generatedSnd[idx++] = 0;
+		}
+		return generatedSnd;
+	}
+
+	/**
+	 * Generate a block of silence of the specified duration and sampling rate into a heap or
+	 * direct buffer
+	 *
+	 * @param duration duration in seconds
+	 * @param sampleRate sample rate in Hz
+	 * @param dst destination for 16-bit PCM, written from its position
+	 * @return number of samples written
+	 */
+	public static int getSilencePCM16(float duration, int sampleRate, ByteBuffer dst)
+	{
+		int numSamples = (int) (Math.floor(duration * sampleRate));
+		ShortBuffer view = Pcm16.view(dst, numSamples);
+		short[] zeros = new short[Math.max(1, Math.min(numSamples, Pcm16.BLOCK_SIZE))];
+		for (int i = 0; i < numSamples; i += zeros.length)
+		{
+			view.put(zeros, 0, Math.min(zeros.length, numSamples - i));
+		}
+		dst.position(dst.position() + 2 * numSamples);
+		return numSamples;
+	}
+
+	/**
+	 * Generate a block of silence of the specified duration and sampling rate
+	 *
+	 * @param duration duration in seconds
+	 * @param sampleRate sample rate in Hz
+	 * @return 32-bit float PCM array of silence
+	 */
+	public static float[] getSilencePCMFloat(float duration, int sampleRate)
+	{
+		int numSamples = (int) (Math.floor(duration * sampleRate));
+		float[] generatedSnd = new float[numSamples];
+		int idx = 0;
+		for (int i = 0; i < numSamples; i++)
+		{
+			generatedSnd[i] = 0;
+		}
+		return generatedSnd;
+	}
+
+	/**
+	 * Generate noise of specified colour, duration, and sample rate, with a fade-in and fade-out
+	 * ramp of specified fraction at the start and end. The same seed always generates the same
+	 * noise.
+	 *
+	 * @param color colour of the noise
+	 * @param duration duration of the noise in seconds
+	 * @param sampleRate sample rate of the noise in Hz
+	 * @param ramp fraction of the noise to ramp (0.0~0.5 range)
+	 * @param seed seed of the random sequence
+	 * @return 16-bit PCM array of the generated noise
+	 * @see NoiseGenerator
+	 */
+	public static byte[] getNoisePCM16(@Noise int color, float duration, int sampleRate, float ramp, long seed)
+	{
+		validateNoiseInputs(sampleRate, ramp);
+		int numSamples = (int)Math.floor(duration * sampleRate);
+		byte[] noiseBytes = new byte[2 * numSamples];
+		boolean timed = WaveMetrics.isEnabled();
+		long start = timed ? System.nanoTime() : 0;
+		createNoiseGenerator(color, sampleRate, numSamples, ramp, seed).render(wrapPCM16(noiseBytes), numSamples);
+		if(timed){WaveMetrics.recordGenerate(WaveMetrics.GENERATOR_NOISE, numSamples, start);}
+		return noiseBytes;
+	}
+
+	/**
+	 * Generate noise of specified colour, duration, and sample rate into a heap or direct buffer,
+	 * with a fade-in and fade-out ramp of specified fraction at the start and end. The same seed
+	 * always generates the same noise.
+	 *
+	 * @param color colour of the noise
+	 * @param duration duration of the noise in seconds
+	 * @param sampleRate sample rate of the noise in Hz
+	 * @param ramp fraction of the noise to ramp (0.0~0.5 range)
+	 * @param seed seed of the random sequence
+	 * @param dst destination for 16-bit PCM, written from its position
+	 * @return number of samples written
+	 * @see NoiseGenerator
+	 */
+	public static int getNoisePCM16(@Noise int color, float duration, int sampleRate, float ramp, long seed, ByteBuffer dst)
+	{
+		validateNoiseInputs(sampleRate, ramp);
+		int numSamples = (int)Math.floor(duration * sampleRate);
+		boolean timed = WaveMetrics.isEnabled();
+		long start = timed ? System.nanoTime() : 0;
+		createNoiseGenerator(color, sampleRate, numSamples, ramp, seed).render(dst, numSamples);
+		if(timed){WaveMetrics.recordGenerate(WaveMetrics.GENERATOR_NOISE, numSamples, start);}
+		return numSamples;
+	}
+
+	/**
+	 * Generate noise of specified colour, duration, and sample rate, with a fade-in and fade-out
+	 * ramp of specified fraction at the start and end. The same seed always generates the same
+	 * noise.
+	 *
+	 * @param color colour of the noise
+	 * @param duration duration of the noise in seconds
+	 * @param sampleRate sample rate of the noise in Hz
+	 * @param ramp fraction of the noise to ramp (0.0~0.5 range)
+	 * @param seed seed of the random sequence
+	 * @return 32-bit float PCM array of the generated noise
+	 * @see NoiseGenerator
+	 */
+	public static float[] getNoisePCMFloat(@Noise int color, float duration, int sampleRate, float ramp, long seed)
+	{
+		validateNoiseInputs(sampleRate, ramp);
+		int numSamples = (int)Math.floor(duration * sampleRate);
+		float[] noiseFloats = new float[numSamples];
+		boolean timed = WaveMetrics.isEnabled();
+		long start = timed ? System.nanoTime() : 0;
+		createNoiseGenerator(color, sampleRate, numSamples, ramp, seed).render(noiseFloats, 0, numSamples);
+		if(timed){WaveMetrics.recordGenerate(WaveMetrics.GENERATOR_NOISE, numSamples, start);}
+		return noiseFloats;
+	}
+
+	/**
+	 * Set the memory budget for cached loop tones. The {@code *ToneRound*} generators keep their
+	 * results in a least-recently-used cache, so repeated requests for the same tone are served
+	 * without generating it again.
+	 *
+	 * @param capacityBytes total size of cached samples in bytes; 0 disables caching
+	 */
+	public static void setToneCacheCapacity(long capacityBytes)
+	{
+		TONE_CACHE.setCapacity(capacityBytes);
+	}
+
+	/**
+	 * Remove all cached loop tones.
+	 */
+	public static void clearToneCache()
+	{
+		TONE_CACHE.clear();
+	}
+
+	static long getToneCacheSizeBytes()
+	{
+		return TONE_CACHE.getSizeBytes();
+	}
+
+	/**
+	 * Keep loop tones on disk as well as in memory, so the {@code *ToneRound*} generators map
+	 * tones made by earlier runs instead of generating them again. Since those generators return
+	 * arrays, a mapped tone is copied once into the memory cache. Tones are written as they are
+	 * generated; write errors are logged and otherwise ignored.
+	 *
+	 * @param cache disk cache for loop tones, or null to use only the memory cache, by default
+	 */
+	public static void setDiskCache(DiskWaveCache cache)
+	{
+		sDiskCache = cache;
+	}
+
+	public static DiskWaveCache getDiskCache()
+	{
+		return sDiskCache;
+	}
+
+	/**
+	 * Render long waves on all available cores. The output is identical to sequential rendering.
+	 * Waves shorter than a few seconds are always rendered on the calling thread.
+	 *
+	 * @param enabled true to render in parallel; false by default
+	 */
+	public static void setParallelRendering(boolean enabled)
+	{
+		sParallelRendering = enabled;
+	}
+
+	public static boolean isParallelRendering()
+	{
+		return sParallelRendering;
+	}
+
+	private static float[] getLoopedTone(@Waveform int waveform, double frequency, double minDuration, int sampleRate, float amplitude, double tolerance)
+	{
+		if(frequency <= 0)
+		{
+			throw new IllegalArgumentException("Frequency must be greater than zero.");
+		}
+		if(sampleRate <= 0)
+		{
+			throw new IllegalArgumentException("Sampling rate must be greater than zero.");
+		}
+		if(tolerance < 0 || tolerance > 0.5)
+		{
+			throw new IllegalArgumentException("Tolerance must be a positive fraction of a cycle between 0 and 0.5.");
+		}
+		//Amplitude sanity checks
+		if(amplitude < 0){amplitude = 0;}
+		if(amplitude > 1){amplitude = 1;}
+
+		int minSamples = (int) (Math.floor(minDuration * sampleRate));
+		ToneLoops.Key key = new ToneLoops.Key(waveform, frequency, sampleRate, amplitude, minSamples, tolerance);
+		float[] output = TONE_CACHE.get(key);
+		if(output != null)
+		{
+			return output;
+		}
+		DiskWaveCache diskCache = sDiskCache;
+		if(diskCache != null)
+		{
+			SampleBuffer stored = diskCache.get(key.toDiskKey());
+			if(stored != null)
+			{
+				//Every tone method returns or converts an array, so the mapped tone is copied once
+				//into the memory cache, and later requests skip the disk
+				output = stored.toFloatArray();
+				TONE_CACHE.put(key, output);
+				return output;
+			}
+		}
+
+		boolean timed = WaveMetrics.isEnabled();
+		long start = timed ? System.nanoTime() : 0;
+		int numSamples = ToneLoops.loopLength(frequency, sampleRate, minSamples, tolerance);
+		long increment = OscillatorEngine.phaseIncrement(frequency, sampleRate);
+		output = new float[numSamples];
+		if(waveform == WAVEFORM_SQUARE)
+		{
+			//Each cycle starts high, so the wave is continuous when looped
+			long phase = 0;
+			for (int c = 0; c < numSamples; c++)
+			{
+				output[c] = phase >= 0 ? amplitude : -amplitude;
+				phase += increment;
+			}
+		}
+		else
+		{
+			OscillatorEngine.render(waveform, OscillatorEngine.EVAL_RECURRENCE, 0, increment, 0, null, false, output, 0, numSamples);
+		}
+		if(timed){WaveMetrics.recordGenerate(waveform, numSamples, start);}
+		TONE_CACHE.put(key, output);
+		if(diskCache != null)
+		{
+			try
+			{
+				diskCache.put(key.toDiskKey(), SampleBuffer.wrap(output));
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+		}
+		return output;
+	}
+
+	static void validateInputs(float frequency, float duration, int sampleRate, float ramp)
+	{
+		if(frequency <= 0)
+		{
+			throw new IllegalArgumentException("Frequency must be greater than zero.");
+		}
+		if(frequency > sampleRate/2f)
+		{
+			throw new IllegalArgumentException("Frequency must be smaller than the nyquist frequency; i.e., half of the sampling rate.");
+		}
+		if(sampleRate <= 0)
+		{
+			throw new IllegalArgumentException("Sampling rate must be greater than zero.");
+		}
+		if(ramp < 0 || ramp > 0.5)
+		{
+			throw new IllegalArgumentException("Ramp must be a positive fraction between 0 and 0.5.");
+		}
+	}
+
+	private static void validateNoiseInputs(int sampleRate, float ramp)
+	{
+		if(sampleRate <= 0)
+		{
+			throw new IllegalArgumentException("Sampling rate must be greater than zero.");
+		}
+		if(ramp < 0 || ramp > 0.5)
+		{
+			throw new IllegalArgumentException("Ramp must be a positive fraction between 0 and 0.5.");
+		}
+	}
+
+	private static void generateWavePCM16(ByteBuffer output, int numSamples, @Waveform int waveform, float frequency, int sampleRate, float ramp)
+	{
+		boolean timed = WaveMetrics.isEnabled();
+		long start = timed ? System.nanoTime() : 0;
+		if(sParallelRendering && ParallelRenderer.isWorthwhile(numSamples))
+		{
+			ParallelRenderer.renderPcm16(output, numSamples, waveform, frequency, sampleRate, ramp);
+		}
+		else
+		{
+			createOscillator(waveform, frequency, sampleRate, numSamples, ramp).render(output, numSamples);
+		}
+		if(timed){WaveMetrics.recordGenerate(waveform, numSamples, start);}
+	}
+
+	private static void generateWavePCMFloat(float[] output, @Waveform int waveform, float frequency, int sampleRate, float ramp)
+	{
+		int numSamples = output.length;
+		boolean timed = WaveMetrics.isEnabled();
+		long start = timed ? System.nanoTime() : 0;
+		if(sParallelRendering && ParallelRenderer.isWorthwhile(numSamples))
+		{
+			ParallelRenderer.renderFloat(output, waveform, frequency, sampleRate, ramp);
+		}
+		else
+		{
+			createOscillator(waveform, frequency, sampleRate, numSamples, ramp).render(output, 0, numSamples);
+		}
+		if(timed){WaveMetrics.recordGenerate(waveform, numSamples, start);}
+	}
+
+	private static ByteBuffer wrapPCM16(byte[] bytes)
+	{
+		// in 16 bit wav PCM, first byte is the low order byte
+		return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	static Oscillator createOscillator(@Waveform int waveform, float frequency, int sampleRate, int numSamples, float ramp)
+	{
+		Oscillator oscillator = new Oscillator(waveform, frequency, sampleRate);
+		configureOscillator(oscillator, waveform, frequency, numSamples, ramp);
+		return oscillator;
+	}
+
+	private static AdditiveOscillator createAdditiveOscillator(float frequency, int sampleRate, int numSamples, float ramp, double[] ratios, float[] amplitudes, double[] phases)
+	{
+		AdditiveOscillator oscillator = new AdditiveOscillator(frequency, sampleRate, ratios, amplitudes, phases);
+		oscillator.setLength(numSamples);
+		oscillator.setRamp(Math.round((float)numSamples * ramp));
+		return oscillator;
+	}
+
+	private static NoiseGenerator createNoiseGenerator(@Noise int color, int sampleRate, int numSamples, float ramp, long seed)
+	{
+		NoiseGenerator generator = new NoiseGenerator(color, sampleRate, seed);
+		generator.setLength(numSamples);
+		generator.setRamp(Math.round((float)numSamples * ramp));
+		return generator;
+	}
+
+	/**
+	 * Set up an oscillator, new or reused, to generate a wave exactly as the generator methods do.
+	 */
+	static void configureOscillator(Oscillator oscillator, @Waveform int waveform, float frequency, int numSamples, float ramp)
+	{
+		oscillator.setWaveform(waveform);
+		oscillator.setFrequency(frequency);
+		oscillator.setEvaluation(Oscillator.EVALUATION_RECURRENCE);
+		oscillator.setLength(numSamples);
+		oscillator.setRamp(Math.round((float)numSamples * ramp));                                  // Amplitude ramp as a percent of sample count
+		oscillator.reset();
+	}
+}
@@ -0,0 +1,301 @@
+package net.scarlettsystems.android.wavefactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Streaming RIFF/WAVE header parser. Chunk headers are walked using their declared sizes, so
+ * parsing reads only the chunk headers and the format chunk. Unknown chunks are skipped in O(1)
+ * each, and parsing stops as soon as the {@code data} chunk is reached. The source is then
+ * positioned at the first sample and can be read through {@link #getDataChannel()} or
+ * {@link #getDataStream()}.
+ */
+@SuppressWarnings("unused")
+class WaveFileParser
+{
+	private int mFormat = -1;
+	private int mChannelCount = 0;
+	private long mSampleRate = 0;
+	private int mBitsPerSample = 0;
+	private int mBlockAlign = 0;
+	private long mDataLength = 0;
+	private long mDataStartIndex = 0;
+	private ReadableByteChannel mChannel;
+	private final ByteBuffer mHeader = ByteBuffer.allocate(HEADER_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+	public static final int FMT_UNKNOWN = -1;
+	public static final int FMT_PCM = 1;
+	public static final int FMT_IEEE_FLOAT = 3;
+	//Only seen in the header; getFormat() reports the sub-format it wraps
+	private static final int FMT_EXTENSIBLE = 0xFFFE;
+
+	/**
+	 * Data length reported when the {@code data} chunk declares its size as {@code 0xFFFFFFFF}, as
+	 * written by streaming encoders that cannot seek back. The data then runs to the end of the
+	 * source.
+	 */
+	public static final long LENGTH_UNKNOWN = -1;
+
+	private static final int HEADER_BUFFER_SIZE = 4096;
+	private static final int RIFF_HEADER_SIZE = 12;
+	private static final int CHUNK_HEADER_SIZE = 8;
+	private static final int FMT_MIN_SIZE = 16;
+	private static final int FMT_EXTENSIBLE_SIZE = 40;
+	private static final int ID_RIFF = 0x46464952;
+	private static final int ID_WAVE = 0x45564157;
+	private static final int ID_FMT = 0x20746D66;
+	private static final int ID_DATA = 0x61746164;
+
+	/**
+	 * Parse a complete wave file held in memory.
+	 *
+	 * @param bytes bytes of the file
+	 * @throws IllegalArgumentException if the bytes are not a RIFF/WAVE file
+	 */
+	WaveFileParser(byte[] bytes)
+	{
+		try
+		{
+			parse(Channels.newChannel(new ByteArrayInputStream(bytes)));
+		}
+		catch (IOException e)
+		{
+			throw new IllegalArgumentException("Malformed wave file: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Parse the header of a wave file from a stream, leaving the stream positioned at the first
+	 * sample.
+	 *
+	 * @param stream stream positioned at the start of the file
+	 * @throws IOException if the stream cannot be read or is not a RIFF/WAVE file
+	 */
+	WaveFileParser(InputStream stream) throws IOException
+	{
+		this(Channels.newChannel(stream));
+	}
+
+	/**
+	 * Parse the header of a wave file from a channel, leaving the channel positioned at the first
+	 * sample. File channels are skipped over by repositioning instead of reading.
+	 *
+	 * @param channel channel positioned at the start of the file
+	 * @throws IOException if the channel cannot be read or is not a RIFF/WAVE file
+	 */
+	WaveFileParser(ReadableByteChannel channel) throws IOException
+	{
+		parse(channel);
+	}
+
+	private void parse(ReadableByteChannel channel) throws IOException
+	{
+		mChannel = channel;
+		long position = 0;
+
+		readFully(RIFF_HEADER_SIZE);
+		if(mHeader.getInt() != ID_RIFF)
+		{
+			throw new IOException("Missing RIFF header.");
+		}
+		mHeader.getInt();
+		if(mHeader.getInt() != ID_WAVE)
+		{
+			throw new IOException("RIFF form type is not WAVE.");
+		}
+		position += RIFF_HEADER_SIZE;
+
+		while(true)
+		{
+			readFully(CHUNK_HEADER_SIZE);
+			int id = mHeader.getInt();
+			long size = mHeader.getInt() & 0xFFFFFFFFL;
+			position += CHUNK_HEADER_SIZE;
+
+			if(id == ID_DATA)
+			{
+				mDataStartIndex = position;
+				//A size of zero is a valid empty chunk, which may be followed by other chunks
+				mDataLength = size == 0xFFFFFFFFL ? LENGTH_UNKNOWN : size;
+				return;
+			}
+
+			//Chunks are word aligned, with a pad byte after odd-sized chunks
+			long remaining = size + (size & 1);
+			if(id == ID_FMT)
+			{
+				if(size < FMT_MIN_SIZE)
+				{
+					throw new IOException("Format chunk is too short.");
+				}
+				int readable = (int)Math.min(size, HEADER_BUFFER_SIZE);
+				readFully(readable);
+				mFormat = mHeader.getShort() & 0xFFFF;
+				mChannelCount = mHeader.getShort() & 0xFFFF;
+				mSampleRate = mHeader.getInt() & 0xFFFFFFFFL;
+				mHeader.getInt();
+				mBlockAlign = mHeader.getShort() & 0xFFFF;
+				mBitsPerSample = mHeader.getShort() & 0xFFFF;
+				if(mFormat == FMT_EXTENSIBLE)
+				{
+					if(size < FMT_EXTENSIBLE_SIZE)
+					{
+						throw new IOException("Extensible format chunk is too short.");
+					}
+					//Skip the extension size, valid bits and channel mask; the sub-format GUID
+					//starts with the format code
+					mHeader.position(mHeader.position() + 8);
+					mFormat = mHeader.getShort() & 0xFFFF;
+				}
+				remaining -= readable;
+			}
+			skip(remaining);
+			position += size + (size & 1);
+		}
+	}
+
+	private void readFully(int length) throws IOException
+	{
+		mHeader.clear();
+		mHeader.limit(length);
+		while(mHeader.hasRemaining())
+		{
+			if(mChannel.read(mHeader) < 0)
+			{
+				throw new EOFException("Wave file ended before the data chunk.");
+			}
+		}
+		mHeader.flip();
+	}
+
+	private void skip(long length) throws IOException
+	{
+		if(length <= 0){return;}
+		if(mChannel instanceof FileChannel)
+		{
+			FileChannel file = (FileChannel)mChannel;
+			file.position(file.position() + length);
+			return;
+		}
+		while(length > 0)
+		{
+			readFully((int)Math.min(length, HEADER_BUFFER_SIZE));
+			length -= mHeader.limit();
+		}
+	}
+
+	/**
+	 * Channel that reads the sample data following the header, and ends with the {@code data}
+	 * chunk. Only available when parsing from a stream or channel.
+	 *
+	 * @return channel over the sample data
+	 */
+	ReadableByteChannel getDataChannel()
+	{
+		return new DataChannel(mChannel, mDataLength);
+	}
+
+	/**
+	 * Stream that reads the sample data following the header, and ends with the {@code data}
+	 * chunk. Only available when parsing from a stream or channel.
+	 *
+	 * @return stream over the sample data
+	 */
+	InputStream getDataStream()
+	{
+		return Channels.newInputStream(getDataChannel());
+	}
+
+	/**
+	 * @return format code, with {@code WAVE_FORMAT_EXTENSIBLE} resolved to its sub-format
+	 */
+	int getFormat()
+	{
+		return mFormat;
+	}
+
+	int getChannelCount()
+	{
+		return mChannelCount;
+	}
+
+	long getSampleRate()
+	{
+		return mSampleRate;
+	}
+
+	int getBitsPerSample()
+	{
+		return mBitsPerSample;
+	}
+
+	int getBlockAlign()
+	{
+		return mBlockAlign;
+	}
+
+	/**
+	 * @return length of the sample data in bytes, or {@link #LENGTH_UNKNOWN}
+	 */
+	long getDataLength()
+	{
+		return mDataLength;
+	}
+
+	int getDataStartIndex()
+	{
+		return (int)mDataStartIndex;
+	}
+
+	private static class DataChannel implements ReadableByteChannel
+	{
+		private final ReadableByteChannel mSource;
+		private long mRemaining;
+
+		DataChannel(ReadableByteChannel source, long length)
+		{
+			mSource = source;
+			mRemaining = length == LENGTH_UNKNOWN ? Long.MAX_VALUE : length;
+		}
+
+		@Override
+		public int read(ByteBuffer dst) throws IOException
+		{
+			if(mRemaining <= 0){return -1;}
+			int limit = dst.limit();
+			if(dst.remaining() > mRemaining)
+			{
+				dst.limit(dst.position() + (int)mRemaining);
+			}
+			try
+			{
+				int read = mSource.read(dst);
+				if(read > 0){mRemaining -= read;}
+				return read;
+			}
+			finally
+			{
+				dst.limit(limit);
+			}
+		}
+
+		@Override
+		public boolean isOpen()
+		{
+			return mSource.isOpen();
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			mSource.close();
+		}
+	}
+}
@@ -0,0 +1,453 @@
+package net.scarlettsystems.android.wavefactory;
+
+import android.support.annotation.IntDef;
+
+import java.lang.annotation.Retention;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static java.lang.annotation.RetentionPolicy.SOURCE;
+
+/**
+ * Counters and latency histograms for {@code WaveLoader} and {@link WaveFactory}: cache hits and
+ * misses, decodes and their duration, samples generated per generator, and memory held by caches.
+ *
+ * Collection is off by default. While it is off, instrumented code only reads one volatile flag.
+ * While it is on, each event costs a few atomic increments and a clock read, and is passed to any
+ * registered {@link Listener}. Totals can be read at any time with {@link #snapshot()}, for
+ * example to forward them to a telemetry service on a schedule.
+ *
+ * Latencies are recorded in nanoseconds into power-of-two buckets, so percentiles are accurate to
+ * within a factor of two and recording never allocates.
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public final class WaveMetrics
+{
+	/**
+	 * Kinds of generated audio that samples are counted for. The single-waveform generators share
+	 * the values of their {@link WaveFactory.Waveform}.
+	 */
+	@Retention(SOURCE)
+	@IntDef({GENERATOR_SINE, GENERATOR_SQUARE, GENERATOR_TRIANGULAR, GENERATOR_SAWTOOTH, GENERATOR_ADDITIVE, GENERATOR_NOISE})
+	public @interface Generator {}
+	public static final int GENERATOR_SINE = WaveFactory.WAVEFORM_SINE;
+	public static final int GENERATOR_SQUARE = WaveFactory.WAVEFORM_SQUARE;
+	public static final int GENERATOR_TRIANGULAR = WaveFactory.WAVEFORM_TRIANGULAR;
+	public static final int GENERATOR_SAWTOOTH = WaveFactory.WAVEFORM_SAWTOOTH;
+	/**
+	 * Additive tones from {@code WaveFactory.getAdditiveWave*}.
+	 */
+	public static final int GENERATOR_ADDITIVE = 4;
+	/**
+	 * Noise of every colour from {@code WaveFactory.getNoise*}.
+	 */
+	public static final int GENERATOR_NOISE = 5;
+
+	private static final int GENERATOR_COUNT = GENERATOR_NOISE + 1;
+
+	private static volatile boolean sEnabled = false;
+	private static volatile WaveCache sSoundCache;
+	private static final CopyOnWriteArrayList<Listener> sListeners = new CopyOnWriteArrayList<>();
+
+	private static final AtomicLong sCacheHits = new AtomicLong();
+	private static final AtomicLong sCacheMisses = new AtomicLong();
+	private static final AtomicLong sDecodeFailures = new AtomicLong();
+	private static final AtomicLong sBytesDecoded = new AtomicLong();
+	private static final Recorder sDecodeLatency = new Recorder();
+	private static final AtomicLongArray sSamplesGenerated = new AtomicLongArray(GENERATOR_COUNT);
+	private static final Recorder sGenerateLatency = new Recorder();
+
+	private WaveMetrics(){}
+
+	/**
+	 * Receiver of individual events, called on the thread that caused them. Implementations must
+	 * be thread-safe and quick, since they run inside decoding and generation.
+	 */
+	public interface Listener
+	{
+		/**
+		 * @param resId raw resource ID that was looked up
+		 * @param hit true if the sound was already loaded
+		 */
+		void onCacheLookup(int resId, boolean hit);
+
+		/**
+		 * @param resId raw resource ID that was decoded
+		 * @param success false if the resource could not be read or decoded
+		 * @param bytes size of the decoded sound in memory, which is 0 for an empty sound
+		 * @param nanos time taken to read and decode the resource
+		 */
+		void onDecoded(int resId, boolean success, long bytes, long nanos);
+
+		/**
+		 * @param generator kind of audio that was generated
+		 * @param samples number of samples generated
+		 * @param nanos time taken to generate them
+		 */
+		void onGenerated(@Generator int generator, long samples, long nanos);
+	}
+
+	/**
+	 * @param enabled true to collect metrics; false by default
+	 */
+	public static void setEnabled(boolean enabled)
+	{
+		sEnabled = enabled;
+	}
+
+	public static boolean isEnabled()
+	{
+		return sEnabled;
+	}
+
+	public static void addListener(Listener listener)
+	{
+		if(listener == null)
+		{
+			throw new IllegalArgumentException("Listener must not be null.");
+		}
+		sListeners.addIfAbsent(listener);
+	}
+
+	public static void removeListener(Listener listener)
+	{
+		sListeners.remove(listener);
+	}
+
+	/**
+	 * Reset every counter and histogram to zero. Listeners stay registered.
+	 */
+	public static void reset()
+	{
+		sCacheHits.set(0);
+		sCacheMisses.set(0);
+		sDecodeFailures.set(0);
+		sBytesDecoded.set(0);
+		sDecodeLatency.reset();
+		for(int c = 0; c < GENERATOR_COUNT; c++)
+		{
+			sSamplesGenerated.set(c, 0);
+		}
+		sGenerateLatency.reset();
+	}
+
+	/**
+	 * Read the current totals. Each value is read atomically, but events recorded while the
+	 * snapshot is taken may be reflected in some values and not yet in others.
+	 *
+	 * @return snapshot of every metric
+	 */
+	public static Snapshot snapshot()
+	{
+		return new Snapshot();
+	}
+
+	/**
+	 * Report the size of a sound cache as the resident bytes of every snapshot.
+	 *
+	 * @param cache cache holding loaded sounds, or null
+	 */
+	static void setSoundCache(WaveCache cache)
+	{
+		sSoundCache = cache;
+	}
+
+	static void recordCacheLookup(int resId, boolean hit)
+	{
+		(hit ? sCacheHits : sCacheMisses).incrementAndGet();
+		if(sListeners.isEmpty()){return;}
+		for(Listener listener : sListeners)
+		{
+			listener.onCacheLookup(resId, hit);
+		}
+	}
+
+	static void recordDecode(int resId, boolean success, long bytes, long startNanos)
+	{
+		long nanos = System.nanoTime() - startNanos;
+		if(!success){sDecodeFailures.incrementAndGet();}
+		sBytesDecoded.addAndGet(bytes);
+		sDecodeLatency.record(nanos);
+		if(sListeners.isEmpty()){return;}
+		for(Listener listener : sListeners)
+		{
+			listener.onDecoded(resId, success, bytes, nanos);
+		}
+	}
+
+	static void recordGenerate(@Generator int generator, long samples, long startNanos)
+	{
+		long nanos = System.nanoTime() - startNanos;
+		sSamplesGenerated.addAndGet(generator, samples);
+		sGenerateLatency.record(nanos);
+		if(sListeners.isEmpty()){return;}
+		for(Listener listener : sListeners)
+		{
+			listener.onGenerated(generator, samples, nanos);
+		}
+	}
+
+	/**
+	 * Live log2 histogram; bucket i counts values in [2^i, 2^(i + 1)), with 0 counted in bucket 0.
+	 */
+	private static final class Recorder
+	{
+		private final AtomicLongArray mBuckets = new AtomicLongArray(Histogram.BUCKET_COUNT);
+		private final AtomicLong mCount = new AtomicLong();
+		private final AtomicLong mSum = new AtomicLong();
+		private final AtomicLong mMax = new AtomicLong();
+
+		void record(long value)
+		{
+			if(value < 0){value = 0;}
+			mBuckets.incrementAndGet(Histogram.bucketOf(value));
+			mCount.incrementAndGet();
+			mSum.addAndGet(value);
+			long max = mMax.get();
+			while(value > max && !mMax.compareAndSet(max, value))
+			{
+				max = mMax.get();
+			}
+		}
+
+		void reset()
+		{
+			for(int c = 0; c < Histogram.BUCKET_COUNT; c++)
+			{
+				mBuckets.set(c, 0);
+			}
+			mCount.set(0);
+			mSum.set(0);
+			mMax.set(0);
+		}
+
+		Histogram snapshot()
+		{
+			long[] buckets = new long[Histogram.BUCKET_COUNT];
+			for(int c = 0; c < buckets.length; c++)
+			{
+				buckets[c] = mBuckets.get(c);
+			}
+			return new Histogram(buckets, mCount.get(), mSum.get(), mMax.get());
+		}
+	}
+
+	/**
+	 * Immutable latency distribution in nanoseconds, bucketed by powers of two.
+	 */
+	public static final class Histogram
+	{
+		public static final int BUCKET_COUNT = 64;
+
+		private final long[] mBuckets;
+		private final long mCount;
+		private final long mSum;
+		private final long mMax;
+
+		Histogram(long[] buckets, long count, long sum, long max)
+		{
+			mBuckets = buckets;
+			mCount = count;
+			mSum = sum;
+			mMax = max;
+		}
+
+		static int bucketOf(long value)
+		{
+			return value <= 1 ? 0 : 63 - Long.numberOfLeadingZeros(value);
+		}
+
+		public long getCount()
+		{
+			return mCount;
+		}
+
+		/**
+		 * @return sum of all recorded latencies in nanoseconds
+		 */
+		public long getSumNanos()
+		{
+			return mSum;
+		}
+
+		public long getMaxNanos()
+		{
+			return mMax;
+		}
+
+		public double getMeanNanos()
+		{
+			return mCount == 0 ? 0 : mSum / (double)mCount;
+		}
+
+		/**
+		 * @param bucket bucket index, counting latencies from 2^bucket up to 2^(bucket + 1) ns
+		 * @return number of latencies in the bucket
+		 */
+		public long getBucketCount(int bucket)
+		{
+			return mBuckets[bucket];
+		}
+
+		/**
+		 * Estimate a percentile as the upper bound of the bucket it falls in, capped at the
+		 * maximum recorded latency.
+		 *
+		 * @param percentile percentile (0~100 range)
+		 * @return latency in nanoseconds, or 0 if nothing was recorded
+		 */
+		public long getPercentileNanos(double percentile)
+		{
+			if(percentile < 0 || percentile > 100)
+			{
+				throw new IllegalArgumentException("Percentile must be within 0~100.");
+			}
+			long total = 0;
+			for(long count : mBuckets)
+			{
+				total += count;
+			}
+			if(total == 0){return 0;}
+			long rank = Math.max(1, (long)Math.ceil(percentile / 100 * total));
+			long seen = 0;
+			for(int c = 0; c < BUCKET_COUNT; c++)
+			{
+				seen += mBuckets[c];
+				if(seen >= rank)
+				{
+					long upper = c >= 62 ? Long.MAX_VALUE : (2L << c) - 1;
+					return Math.min(upper, mMax);
+				}
+			}
+			return mMax;
+		}
+	}
+
+	/**
+	 * Totals of every metric at the time of {@link WaveMetrics#snapshot()}.
+	 */
+	public static final class Snapshot
+	{
+		private final long mTimestampNanos = System.nanoTime();
+		private final long mCacheHits = sCacheHits.get();
+		private final long mCacheMisses = sCacheMisses.get();
+		private final long mDecodeFailures = sDecodeFailures.get();
+		private final long mBytesDecoded = sBytesDecoded.get();
+		private final Histogram mDecodeLatency = sDecodeLatency.snapshot();
+		private final long[] mSamplesGenerated = new long[GENERATOR_COUNT];
+		private final Histogram mGenerateLatency = sGenerateLatency.snapshot();
+		private final long mBytesResident = sSoundCache == null ? 0 : sSoundCache.getSizeBytes();
+		private final long mToneCacheBytes = WaveFactory.getToneCacheSizeBytes();
+
+		private Snapshot()
+		{
+			for(int c = 0; c < GENERATOR_COUNT; c++)
+			{
+				mSamplesGenerated[c] = sSamplesGenerated.get(c);
+			}
+		}
+
+		/**
+		 * @return value of {@link System#nanoTime()} when the snapshot was taken
+		 */
+		public long getTimestampNanos()
+		{
+			return mTimestampNanos;
+		}
+
+		public long getCacheHits()
+		{
+			return mCacheHits;
+		}
+
+		public long getCacheMisses()
+		{
+			return mCacheMisses;
+		}
+
+		/**
+		 * @return share of sound lookups served from the cache (0.0~1.0 range), or 0 if none
+		 */
+		public double getCacheHitRate()
+		{
+			long lookups = mCacheHits + mCacheMisses;
+			return lookups == 0 ? 0 : mCacheHits / (double)lookups;
+		}
+
+		/**
+		 * @return number of resources decoded, including failures
+		 */
+		public long getDecodeCount()
+		{
+			return mDecodeLatency.getCount();
+		}
+
+		public long getDecodeFailures()
+		{
+			return mDecodeFailures;
+		}
+
+		/**
+		 * @return total size in memory of every sound decoded
+		 */
+		public long getBytesDecoded()
+		{
+			return mBytesDecoded;
+		}
+
+		/**
+		 * @return distribution of the time taken to decode one resource
+		 */
+		public Histogram getDecodeLatency()
+		{
+			return mDecodeLatency;
+		}
+
+		/**
+		 * @param generator kind of audio to report
+		 * @return number of samples of that kind generated
+		 */
+		public long getSamplesGenerated(@Generator int generator)
+		{
+			return mSamplesGenerated[generator];
+		}
+
+		/**
+		 * @return number of samples generated by every generator
+		 */
+		public long getSamplesGenerated()
+		{
+			long total = 0;
+			for(long samples : mSamplesGenerated)
+			{
+				total += samples;
+			}
+			return total;
+		}
+
+		/**
+		 * @return distribution of the time taken to generate one wave
+		 */
+		public Histogram getGenerateLatency()
+		{
+			return mGenerateLatency;
+		}
+
+		/**
+		 * @return bytes held by the {@code WaveLoader} sound cache
+		 */
+		public long getBytesResident()
+		{
+			return mBytesResident;
+		}
+
+		/**
+		 * @return bytes held by the {@link WaveFactory} loop tone cache
+		 */
+		public long getToneCacheBytes()
+		{
+			return mToneCacheBytes;
+		}
+	}
+}
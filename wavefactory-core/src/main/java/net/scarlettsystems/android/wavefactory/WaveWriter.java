@@ -0,0 +1,412 @@
+package net.scarlettsystems.android.wavefactory;
+
+import android.support.annotation.IntDef;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Retention;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+import static java.lang.annotation.RetentionPolicy.SOURCE;
+
+/**
+ * Streaming RIFF/WAVE encoder. Float or 16-bit blocks are converted into one reusable direct
+ * buffer and written through to a channel, so a render of any length is written in constant
+ * memory. The header is written up front with placeholder sizes, which {@link #close()} patches
+ * once the length is known.
+ *
+ * File channels, and streams that write to files, are patched in place. Other streams cannot be
+ * rewound, so their header declares the sizes as unknown, which {@link WaveDecoder} and most
+ * players read as running to the end of the file.
+ *
+ * Samples of several channels are interleaved frame by frame. Instances are not thread-safe.
+ */
+@SuppressWarnings("unused, WeakerAccess")
+public final class WaveWriter implements Closeable
+{
+	@Retention(SOURCE)
+	@IntDef({ENCODING_PCM_16BIT, ENCODING_PCM_24BIT, ENCODING_FLOAT})
+	public @interface Encoding {}
+	/**
+	 * Signed 16-bit PCM.
+	 */
+	public static final int ENCODING_PCM_16BIT = 16;
+	/**
+	 * Signed 24-bit PCM, packed in three bytes.
+	 */
+	public static final int ENCODING_PCM_24BIT = 24;
+	/**
+	 * 32-bit IEEE float, written without clamping.
+	 */
+	public static final int ENCODING_FLOAT = 32;
+
+	private static final int BUFFER_SIZE = 16384;
+	private static final int ID_RIFF = 0x46464952;
+	private static final int ID_WAVE = 0x45564157;
+	private static final int ID_FMT = 0x20746D66;
+	private static final int ID_FACT = 0x74636166;
+	private static final int ID_DATA = 0x61746164;
+	private static final int SIZE_UNKNOWN = 0xFFFFFFFF;
+	private static final long MAX_DATA_LENGTH = 0xFFFFFFFFL - 64;
+	private static final float SCALE_24 = 8388608.0f;
+
+	private final WritableByteChannel mChannel;
+	//Null when the header cannot be patched
+	private final FileChannel mFile;
+	private final long mStart;
+	private final int mEncoding;
+	private final int mChannelCount;
+	private final int mFrameBytes;
+	private final int mHeaderSize;
+	private final ByteBuffer mBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+	private final short[] mScratch = new short[Pcm16.BLOCK_SIZE];
+	private long mDataLength = 0;
+	private boolean mClosed = false;
+
+	/**
+	 * Create a wave file, replacing any file already there.
+	 *
+	 * @param file file to write
+	 * @param sampleRate sample rate in Hz
+	 * @param channelCount number of interleaved channels
+	 * @param encoding sample encoding
+	 * @throws IOException if the file cannot be created
+	 */
+	public WaveWriter(File file, int sampleRate, int channelCount, @Encoding int encoding) throws IOException
+	{
+		this(new FileOutputStream(file).getChannel(), sampleRate, channelCount, encoding, true);
+	}
+
+	/**
+	 * Write a wave file to a stream. Streams that write to files are written through their channel,
+	 * so the header can be patched.
+	 *
+	 * @param stream stream to write to, which is closed by {@link #close()}
+	 * @param sampleRate sample rate in Hz
+	 * @param channelCount number of interleaved channels
+	 * @param encoding sample encoding
+	 * @throws IOException if the header cannot be written
+	 */
+	public WaveWriter(OutputStream stream, int sampleRate, int channelCount, @Encoding int encoding) throws IOException
+	{
+		this(stream instanceof FileOutputStream ? ((FileOutputStream)stream).getChannel() : Channels.newChannel(stream),
+				sampleRate, channelCount, encoding);
+	}
+
+	/**
+	 * Write a wave file to a channel, starting at its current position. File channels have their
+	 * header patched on close.
+	 *
+	 * @param channel channel to write to, which is closed by {@link #close()}
+	 * @param sampleRate sample rate in Hz
+	 * @param channelCount number of interleaved channels
+	 * @param encoding sample encoding
+	 * @throws IOException if the header cannot be written
+	 */
+	public WaveWriter(WritableByteChannel channel, int sampleRate, int channelCount, @Encoding int encoding) throws IOException
+	{
+		this(channel, sampleRate, channelCount, encoding, false);
+	}
+
+	/**
+	 * @param closeOnFailure whether the channel was opened for this writer, and has to be closed if
+	 *                       construction fails since the caller never gets to close it
+	 */
+	private WaveWriter(WritableByteChannel channel, int sampleRate, int channelCount, @Encoding int encoding, boolean closeOnFailure) throws IOException
+	{
+		boolean constructed = false;
+		try
+		{
+			if(sampleRate <= 0)
+			{
+				throw new IllegalArgumentException("Sampling rate must be greater than zero.");
+			}
+			//The block align of a frame must fit in 16 bits
+			if(channelCount < 1 || channelCount > 0xFFFF / 4)
+			{
+				throw new IllegalArgumentException("Invalid channel count " + channelCount + ".");
+			}
+			if(encoding != ENCODING_PCM_16BIT && encoding != ENCODING_PCM_24BIT && encoding != ENCODING_FLOAT)
+			{
+				throw new IllegalArgumentException("Invalid encoding " + encoding + ".");
+			}
+			mChannel = channel;
+			mFile = channel instanceof FileChannel ? (FileChannel)channel : null;
+			mStart = mFile == null ? 0 : mFile.position();
+			mEncoding = encoding;
+			mChannelCount = channelCount;
+			mFrameBytes = channelCount * encoding / 8;
+			//Float data has an 18-byte format chunk followed by a fact chunk
+			mHeaderSize = encoding == ENCODING_FLOAT ? 58 : 44;
+			writeHeader(sampleRate);
+			constructed = true;
+		}
+		finally
+		{
+			if(!constructed && closeOnFailure)
+			{
+				try
+				{
+					channel.close();
+				}
+				catch (IOException e)
+				{
+					//Keep the exception that made construction fail
+				}
+			}
+		}
+	}
+
+	public int getChannelCount()
+	{
+		return mChannelCount;
+	}
+
+	@Encoding
+	public int getEncoding()
+	{
+		return mEncoding;
+	}
+
+	/**
+	 * @return number of frames written so far
+	 */
+	public long getFramesWritten()
+	{
+		return mDataLength / mFrameBytes;
+	}
+
+	/**
+	 * Write interleaved float samples. PCM encodings clamp samples to [-1, 1].
+	 *
+	 * @param src interleaved samples
+	 * @param offset index of the first sample
+	 * @param frames number of frames to write
+	 * @throws IOException if the samples cannot be written
+	 */
+	public void write(float[] src, int offset, int frames) throws IOException
+	{
+		int length = checkWrite(src.length, offset, frames);
+		int end = offset + length;
+		while(offset < end)
+		{
+			int count = Math.min(end - offset, room());
+			switch(mEncoding)
+			{
+				case ENCODING_PCM_16BIT:
+					ShortBuffer view = mBuffer.asShortBuffer();
+					Pcm16.quantize(src, offset, count, Pcm16.SCALE_CONVERSION, mScratch, view);
+					mBuffer.position(mBuffer.position() + 2 * count);
+					break;
+				case ENCODING_PCM_24BIT:
+					put24(src, offset, count);
+					break;
+				default:
+					mBuffer.asFloatBuffer().put(src, offset, count);
+					mBuffer.position(mBuffer.position() + 4 * count);
+					break;
+			}
+			offset += count;
+			flushIfFull();
+		}
+		mDataLength += (long)length * (mEncoding / 8);
+	}
+
+	/**
+	 * Write interleaved 16-bit samples, as rendered by {@link Oscillator#render(short[], int, int)}.
+	 *
+	 * @param src interleaved samples
+	 * @param offset index of the first sample
+	 * @param frames number of frames to write
+	 * @throws IOException if the samples cannot be written
+	 */
+	public void write(short[] src, int offset, int frames) throws IOException
+	{
+		int length = checkWrite(src.length, offset, frames);
+		int end = offset + length;
+		while(offset < end)
+		{
+			int count = Math.min(end - offset, room());
+			switch(mEncoding)
+			{
+				case ENCODING_PCM_16BIT:
+					mBuffer.asShortBuffer().put(src, offset, count);
+					mBuffer.position(mBuffer.position() + 2 * count);
+					break;
+				case ENCODING_PCM_24BIT:
+					for(int c = 0; c < count; c++)
+					{
+						int sample = src[offset + c];
+						mBuffer.put((byte)0).putShort((short)sample);
+					}
+					break;
+				default:
+					for(int c = 0; c < count; c++)
+					{
+						mBuffer.putFloat(src[offset + c] / 32768.0f);
+					}
+					break;
+			}
+			offset += count;
+			flushIfFull();
+		}
+		mDataLength += (long)length * (mEncoding / 8);
+	}
+
+	/**
+	 * Write any buffered samples to the channel without finishing the file.
+	 *
+	 * @throws IOException if the samples cannot be written
+	 */
+	public void flush() throws IOException
+	{
+		checkOpen();
+		drain();
+	}
+
+	/**
+	 * Write any buffered samples, patch the header with the final sizes where possible, and close
+	 * the channel. Closing again has no effect.
+	 *
+	 * @throws IOException if the file cannot be finished
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		if(mClosed){return;}
+		mClosed = true;
+		try
+		{
+			//Chunks are word aligned, so an odd-sized data chunk is followed by a pad byte
+			if((mDataLength & 1) != 0)
+			{
+				mBuffer.put((byte)0);
+			}
+			drain();
+			if(mFile != null)
+			{
+				patchHeader();
+			}
+		}
+		finally
+		{
+			mChannel.close();
+		}
+	}
+
+	private void writeHeader(int sampleRate) throws IOException
+	{
+		int bitsPerSample = mEncoding;
+		mBuffer.putInt(ID_RIFF).putInt(SIZE_UNKNOWN).putInt(ID_WAVE);
+		mBuffer.putInt(ID_FMT).putInt(mEncoding == ENCODING_FLOAT ? 18 : 16)
+				.putShort((short)(mEncoding == ENCODING_FLOAT ? WaveFileParser.FMT_IEEE_FLOAT : WaveFileParser.FMT_PCM))
+				.putShort((short)mChannelCount)
+				.putInt(sampleRate)
+				.putInt(sampleRate * mFrameBytes)
+				.putShort((short)mFrameBytes)
+				.putShort((short)bitsPerSample);
+		if(mEncoding == ENCODING_FLOAT)
+		{
+			mBuffer.putShort((short)0);
+			mBuffer.putInt(ID_FACT).putInt(4).putInt(SIZE_UNKNOWN);
+		}
+		mBuffer.putInt(ID_DATA).putInt(SIZE_UNKNOWN);
+		drain();
+	}
+
+	private void patchHeader() throws IOException
+	{
+		long end = mFile.position();
+		ByteBuffer field = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+		patch(field, 4, mHeaderSize - 8 + mDataLength + (mDataLength & 1));
+		if(mEncoding == ENCODING_FLOAT)
+		{
+			patch(field, 46, getFramesWritten());
+		}
+		patch(field, mHeaderSize - 4, mDataLength);
+		mFile.position(end);
+	}
+
+	private void patch(ByteBuffer field, long position, long value) throws IOException
+	{
+		field.clear();
+		field.putInt((int)value).flip();
+		while(field.hasRemaining())
+		{
+			mFile.write(field, mStart + position + field.position());
+		}
+	}
+
+	private void put24(float[] src, int offset, int count)
+	{
+		for(int c = 0; c < count; c++)
+		{
+			float value = src[offset + c] * SCALE_24;
+			if(value > 8388607.0f){value = 8388607.0f;}
+			if(value < -8388608.0f){value = -8388608.0f;}
+			int sample = (int)value;
+			mBuffer.put((byte)sample).putShort((short)(sample >> 8));
+		}
+	}
+
+	private int checkWrite(int arrayLength, int offset, int frames) throws IOException
+	{
+		checkOpen();
+		if(frames < 0 || (long)frames * mChannelCount > Integer.MAX_VALUE)
+		{
+			throw new IllegalArgumentException("Invalid frame count " + frames + ".");
+		}
+		int length = frames * mChannelCount;
+		if(offset < 0 || offset > arrayLength - length)
+		{
+			throw new IndexOutOfBoundsException("Range [" + offset + ", " + offset + " + " + length + ") out of bounds for length " + arrayLength);
+		}
+		if(mDataLength + (long)frames * mFrameBytes > MAX_DATA_LENGTH)
+		{
+			throw new IOException("Wave file would exceed the 4 GiB RIFF limit.");
+		}
+		return length;
+	}
+
+	private void checkOpen()
+	{
+		if(mClosed)
+		{
+			throw new IllegalStateException("Writer is closed.");
+		}
+	}
+
+	/**
+	 * @return number of samples that fit in the buffer
+	 */
+	private int room()
+	{
+		return mBuffer.remaining() / (mEncoding / 8);
+	}
+
+	private void flushIfFull() throws IOException
+	{
+		if(mBuffer.remaining() < 4)
+		{
+			drain();
+		}
+	}
+
+	private void drain() throws IOException
+	{
+		mBuffer.flip();
+		while(mBuffer.hasRemaining())
+		{
+			mChannel.write(mBuffer);
+		}
+		mBuffer.clear();
+	}
+}
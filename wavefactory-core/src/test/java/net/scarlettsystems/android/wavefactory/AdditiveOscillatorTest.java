@@ -0,0 +1,54 @@
+package net.scarlettsystems.android.wavefactory;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AdditiveOscillatorTest
+{
+	private static final int SAMPLE_RATE = 44100;
+	private static final float FREQUENCY = 220f;
+	private static final double[] RATIOS = {1, 2, 3.5, 7, 150};
+	private static final float[] AMPLITUDES = {0.4f, 0.2f, 0.1f, 0.05f, 0.5f};
+	private static final double[] PHASES = {0, 0.25, 0.1, 0.5, 0};
+
+	@Test
+	public void render_matchesDirectSineSum()
+	{
+		int numSamples = 3 * SAMPLE_RATE;
+		float[] output = new float[numSamples];
+		new AdditiveOscillator(FREQUENCY, SAMPLE_RATE, RATIOS, AMPLITUDES, PHASES).render(output, 0, numSamples);
+		double maxError = 0;
+		for(int n = 0; n < numSamples; n++)
+		{
+			double expected = 0;
+			for(int p = 0; p < RATIOS.length; p++)
+			{
+				//The 150th harmonic is above Nyquist and must be left out
+				if(RATIOS[p] * FREQUENCY >= SAMPLE_RATE / 2.0){continue;}
+				expected += AMPLITUDES[p] * Math.sin(2 * Math.PI * (RATIOS[p] * FREQUENCY * n / SAMPLE_RATE + PHASES[p]));
+			}
+			maxError = Math.max(maxError, Math.abs(expected - output[n]));
+		}
+		assertTrue("Maximum error " + maxError, maxError < 1e-5);
+	}
+
+	@Test
+	public void render_isIndependentOfBlockSplit()
+	{
+		int numSamples = 30000;
+		float[] whole = new float[numSamples];
+		new AdditiveOscillator(FREQUENCY, SAMPLE_RATE, RATIOS, AMPLITUDES, PHASES).render(whole, 0, numSamples);
+		final AdditiveOscillator oscillator = new AdditiveOscillator(FREQUENCY, SAMPLE_RATE, RATIOS, AMPLITUDES, PHASES);
+		float[] split = new float[numSamples];
+		RenderTestUtils.renderInRandomBlocks(new RenderTestUtils.BlockRenderer()
+		{
+			@Override
+			public void render(float[] dst, int offset, int length)
+			{
+				oscillator.render(dst, offset, length);
+			}
+		}, split, 1000, 1);
+		assertArrayEquals(whole, split, 0);
+	}
+}
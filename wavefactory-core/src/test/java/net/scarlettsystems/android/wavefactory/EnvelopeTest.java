@@ -0,0 +1,55 @@
+package net.scarlettsystems.android.wavefactory;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class EnvelopeTest
+{
+	private static final int NUM_SAMPLES = 30000;
+
+	@Test
+	public void apply_isIndependentOfBlockSplit()
+	{
+		for(int shape = Envelope.SHAPE_LINEAR; shape <= Envelope.SHAPE_EXPONENTIAL; shape++)
+		{
+			float[] whole = new float[NUM_SAMPLES];
+			Arrays.fill(whole, 1f);
+			create(shape).apply(whole, 0, NUM_SAMPLES);
+			final Envelope envelope = create(shape);
+			float[] split = new float[NUM_SAMPLES];
+			Arrays.fill(split, 1f);
+			RenderTestUtils.renderInRandomBlocks(new RenderTestUtils.BlockRenderer()
+			{
+				@Override
+				public void render(float[] dst, int offset, int length)
+				{
+					envelope.apply(dst, offset, length);
+				}
+			}, split, 600, shape);
+			assertArrayEquals("Shape " + shape, whole, split, 0);
+		}
+	}
+
+	@Test
+	public void ramp_fadesInAndOutLinearly()
+	{
+		float[] samples = new float[1000];
+		Arrays.fill(samples, 1f);
+		Envelope.ramp(100, samples.length).apply(samples, 0, samples.length);
+		assertEquals(0f, samples[0], 0);
+		assertEquals(0.5f, samples[50], 1e-6f);
+		assertEquals(1f, samples[500], 0);
+		assertEquals(0.5f, samples[950], 1e-6f);
+		assertEquals(0.01f, samples[samples.length - 1], 1e-6f);
+	}
+
+	private static Envelope create(int shape)
+	{
+		Envelope envelope = Envelope.adsr(3000, 5000, 0.5f, 9000, shape);
+		envelope.setLength(NUM_SAMPLES - 1000);
+		return envelope;
+	}
+}
@@ -0,0 +1,40 @@
+package net.scarlettsystems.android.wavefactory;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MixBusTest
+{
+	@Test
+	public void tanh_isWithinTolerance()
+	{
+		double maxError = 0;
+		for(float x = -12f; x <= 12f; x += 0.0005f)
+		{
+			float y = MixBus.tanh(x);
+			assertTrue(y >= -1 && y <= 1);
+			maxError = Math.max(maxError, Math.abs(y - Math.tanh(x)));
+		}
+		assertTrue("Maximum error " + maxError, maxError <= 1e-4);
+	}
+
+	@Test
+	public void render_isIndependentOfAdditionOrder()
+	{
+		float[] first = new float[1000];
+		float[] second = new float[700];
+		for(int c = 0; c < first.length; c++)
+		{
+			first[c] = (float)Math.sin(c * 0.05);
+		}
+		for(int c = 0; c < second.length; c++)
+		{
+			second[c] = (float)Math.sin(c * 0.07) * 0.8f;
+		}
+		float[] forward = new MixBus().add(first, 0, 0.7f).add(second, 300, 0.9f).render();
+		float[] backward = new MixBus().add(second, 300, 0.9f).add(first, 0, 0.7f).render();
+		assertEquals(1000, forward.length);
+		assertArrayEquals(forward, backward, 0);
+	}
+}
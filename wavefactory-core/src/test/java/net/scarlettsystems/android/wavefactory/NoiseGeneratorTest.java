@@ -0,0 +1,75 @@
+package net.scarlettsystems.android.wavefactory;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class NoiseGeneratorTest
+{
+	private static final int SAMPLE_RATE = 44100;
+	private static final int NUM_SAMPLES = 10 * SAMPLE_RATE;
+
+	@Test
+	public void render_isReproducibleFromSeed()
+	{
+		for(int color = WaveFactory.NOISE_WHITE; color <= WaveFactory.NOISE_BROWN; color++)
+		{
+			float[] first = WaveFactory.getNoisePCMFloat(color, 1f, SAMPLE_RATE, 0f, 42);
+			float[] second = WaveFactory.getNoisePCMFloat(color, 1f, SAMPLE_RATE, 0f, 42);
+			float[] other = WaveFactory.getNoisePCMFloat(color, 1f, SAMPLE_RATE, 0f, 43);
+			assertArrayEquals(first, second, 0);
+			assertFalse(Arrays.equals(first, other));
+		}
+	}
+
+	@Test
+	public void reset_restartsSequence()
+	{
+		NoiseGenerator generator = new NoiseGenerator(WaveFactory.NOISE_PINK, SAMPLE_RATE, 7);
+		float[] first = new float[5000];
+		generator.render(first, 0, first.length);
+		generator.reset();
+		float[] second = new float[5000];
+		generator.render(second, 0, second.length);
+		assertArrayEquals(first, second, 0);
+	}
+
+	@Test
+	public void render_isIndependentOfBlockSplit()
+	{
+		for(int color = WaveFactory.NOISE_WHITE; color <= WaveFactory.NOISE_BROWN; color++)
+		{
+			float[] whole = new float[NUM_SAMPLES];
+			new NoiseGenerator(color, SAMPLE_RATE, 3).render(whole, 0, NUM_SAMPLES);
+			final NoiseGenerator generator = new NoiseGenerator(color, SAMPLE_RATE, 3);
+			float[] split = new float[NUM_SAMPLES];
+			RenderTestUtils.renderInRandomBlocks(new RenderTestUtils.BlockRenderer()
+			{
+				@Override
+				public void render(float[] dst, int offset, int length)
+				{
+					generator.render(dst, offset, length);
+				}
+			}, split, 1000, color);
+			assertArrayEquals("Colour " + color, whole, split, 0);
+		}
+	}
+
+	@Test
+	public void render_hasNominalLevel()
+	{
+		for(int color = WaveFactory.NOISE_WHITE; color <= WaveFactory.NOISE_BROWN; color++)
+		{
+			float[] noise = WaveFactory.getNoisePCMFloat(color, 10f, SAMPLE_RATE, 0f, 5);
+			double sum = 0;
+			for(float sample : noise)
+			{
+				assertTrue(sample >= -1 && sample <= 1);
+				sum += sample * sample;
+			}
+			assertEquals("Colour " + color, 0.25, Math.sqrt(sum / noise.length), 0.02);
+		}
+	}
+}
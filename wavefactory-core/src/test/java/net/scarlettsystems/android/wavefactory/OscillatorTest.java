@@ -0,0 +1,82 @@
+package net.scarlettsystems.android.wavefactory;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class OscillatorTest
+{
+	private static final int SAMPLE_RATE = 48000;
+	private static final int NUM_SAMPLES = 20000;
+
+	@Test
+	public void render_isIndependentOfBlockSplit()
+	{
+		for(int waveform = WaveFactory.WAVEFORM_SINE; waveform <= WaveFactory.WAVEFORM_SAWTOOTH; waveform++)
+		{
+			float[] whole = new float[NUM_SAMPLES];
+			WaveFactory.createOscillator(waveform, 1234.5f, SAMPLE_RATE, NUM_SAMPLES, 0.2f).render(whole, 0, NUM_SAMPLES);
+			final Oscillator oscillator = WaveFactory.createOscillator(waveform, 1234.5f, SAMPLE_RATE, NUM_SAMPLES, 0.2f);
+			float[] split = new float[NUM_SAMPLES];
+			RenderTestUtils.renderInRandomBlocks(new RenderTestUtils.BlockRenderer()
+			{
+				@Override
+				public void render(float[] dst, int offset, int length)
+				{
+					oscillator.render(dst, offset, length);
+				}
+			}, split, 700, waveform);
+			assertArrayEquals("Waveform " + waveform, whole, split, 0);
+		}
+	}
+
+	@Test
+	public void seek_matchesContinuousRender()
+	{
+		float[] whole = new float[NUM_SAMPLES];
+		WaveFactory.createOscillator(WaveFactory.WAVEFORM_SINE, 440f, SAMPLE_RATE, NUM_SAMPLES, 0.1f).render(whole, 0, NUM_SAMPLES);
+		Oscillator oscillator = WaveFactory.createOscillator(WaveFactory.WAVEFORM_SINE, 440f, SAMPLE_RATE, NUM_SAMPLES, 0.1f);
+		//Start between resync points, then continue in small blocks
+		oscillator.seek(1000);
+		float[] seeked = new float[NUM_SAMPLES];
+		for(int position = 1000; position < NUM_SAMPLES; position += 32)
+		{
+			oscillator.render(seeked, position, Math.min(32, NUM_SAMPLES - position));
+		}
+		for(int c = 1000; c < NUM_SAMPLES; c++)
+		{
+			assertEquals(whole[c], seeked[c], 0);
+		}
+	}
+
+	@Test
+	public void setEvaluation_rejectsUnknownValues()
+	{
+		Oscillator oscillator = new Oscillator(WaveFactory.WAVEFORM_SINE, 440f, SAMPLE_RATE);
+		try
+		{
+			oscillator.setEvaluation(2);
+			fail("Unknown evaluation accepted");
+		}
+		catch (IllegalArgumentException e)
+		{
+			//Expected
+		}
+	}
+
+	@Test
+	public void renderShort_matchesWaveFactory()
+	{
+		byte[] expected = WaveFactory.getSawtoothWavePCM16(440f, 0.5f, SAMPLE_RATE, 0.05f);
+		int numSamples = expected.length / 2;
+		short[] samples = new short[numSamples];
+		WaveFactory.createOscillator(WaveFactory.WAVEFORM_SAWTOOTH, 440f, SAMPLE_RATE, numSamples, 0.05f).render(samples, 0, numSamples);
+		byte[] actual = new byte[expected.length];
+		for(int c = 0; c < numSamples; c++)
+		{
+			actual[2 * c] = (byte)samples[c];
+			actual[2 * c + 1] = (byte)(samples[c] >> 8);
+		}
+		assertArrayEquals(expected, actual);
+	}
+}
@@ -0,0 +1,44 @@
+package net.scarlettsystems.android.wavefactory;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Chunked rendering must be bit-identical to rendering the whole tone with one oscillator.
+ */
+public class ParallelRendererTest
+{
+	private static final int SAMPLE_RATE = 44100;
+	//Long enough to be split into several chunks even on a single core
+	private static final int NUM_SAMPLES = 5 * ParallelRenderer.MIN_CHUNK_SAMPLES + 1234;
+
+	@Test
+	public void renderFloat_matchesSequential()
+	{
+		for(int waveform = WaveFactory.WAVEFORM_SINE; waveform <= WaveFactory.WAVEFORM_SAWTOOTH; waveform++)
+		{
+			float[] sequential = new float[NUM_SAMPLES];
+			WaveFactory.createOscillator(waveform, 440.5f, SAMPLE_RATE, NUM_SAMPLES, 0.1f).render(sequential, 0, NUM_SAMPLES);
+			float[] parallel = new float[NUM_SAMPLES];
+			ParallelRenderer.renderFloat(parallel, waveform, 440.5f, SAMPLE_RATE, 0.1f);
+			assertArrayEquals("Waveform " + waveform, sequential, parallel, 0);
+		}
+	}
+
+	@Test
+	public void renderPcm16_matchesSequential()
+	{
+		ByteBuffer sequential = ByteBuffer.allocate(2 * NUM_SAMPLES).order(ByteOrder.LITTLE_ENDIAN);
+		WaveFactory.createOscillator(WaveFactory.WAVEFORM_SINE, 997f, SAMPLE_RATE, NUM_SAMPLES, 0.05f).render(sequential, NUM_SAMPLES);
+		ByteBuffer parallel = ByteBuffer.allocateDirect(2 * NUM_SAMPLES).order(ByteOrder.LITTLE_ENDIAN);
+		ParallelRenderer.renderPcm16(parallel, NUM_SAMPLES, WaveFactory.WAVEFORM_SINE, 997f, SAMPLE_RATE, 0.05f);
+		assertEquals(2 * NUM_SAMPLES, parallel.position());
+		sequential.flip();
+		parallel.flip();
+		assertEquals(sequential, parallel);
+	}
+}
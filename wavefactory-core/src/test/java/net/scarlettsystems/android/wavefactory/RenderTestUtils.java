@@ -0,0 +1,36 @@
+package net.scarlettsystems.android.wavefactory;
+
+import java.util.Random;
+
+/**
+ * Helpers shared by the rendering tests.
+ */
+final class RenderTestUtils
+{
+	interface BlockRenderer
+	{
+		void render(float[] dst, int offset, int length);
+	}
+
+	private RenderTestUtils(){}
+
+	/**
+	 * Fill an array through a series of render calls of random length, to check that output does
+	 * not depend on how it is split into blocks.
+	 *
+	 * @param renderer renderer to call for each block
+	 * @param dst destination array
+	 * @param maxBlock upper bound, exclusive, of the block lengths
+	 * @param seed seed of the block lengths
+	 */
+	static void renderInRandomBlocks(BlockRenderer renderer, float[] dst, int maxBlock, long seed)
+	{
+		Random random = new Random(seed);
+		for(int position = 0; position < dst.length; )
+		{
+			int length = Math.min(dst.length - position, random.nextInt(maxBlock));
+			renderer.render(dst, position, length);
+			position += length;
+		}
+	}
+}
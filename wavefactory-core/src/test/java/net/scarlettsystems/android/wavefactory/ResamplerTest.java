@@ -0,0 +1,76 @@
+package net.scarlettsystems.android.wavefactory;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ResamplerTest
+{
+	private static final int[][] RATES = {{44100, 48000}, {48000, 44100}, {22050, 44100}, {44100, 8000}, {32000, 32000}};
+
+	@Test
+	public void resample_outputLengthIsCeilOfRatio()
+	{
+		for(int[] rates : RATES)
+		{
+			for(int frames : new int[]{0, 1, 7, 1000, 44101})
+			{
+				float[] output = Resampler.resample(new float[frames], 1, rates[0], rates[1]);
+				long expected = ((long)frames * rates[1] + rates[0] - 1) / rates[0];
+				assertEquals(rates[0] + " to " + rates[1] + ", " + frames + " frames", expected, output.length);
+			}
+		}
+	}
+
+	@Test
+	public void isSupported_matchesConstructor()
+	{
+		assertTrue(Resampler.isSupported(44100, 48000));
+		assertTrue(Resampler.isSupported(8000, 44100));
+		assertFalse(Resampler.isSupported(44056, 48000));
+		assertFalse(Resampler.isSupported(0, 48000));
+		try
+		{
+			new Resampler(44056, 48000, 1);
+			fail("Unsupported ratio accepted");
+		}
+		catch (IllegalArgumentException e)
+		{
+			//Expected
+		}
+	}
+
+	@Test
+	public void process_isIndependentOfBlockSplit()
+	{
+		float[] input = new float[2 * 20000];
+		Random random = new Random(9);
+		for(int c = 0; c < input.length; c++)
+		{
+			input[c] = random.nextFloat() * 2 - 1;
+		}
+		for(int[] rates : RATES)
+		{
+			float[] whole = Resampler.resample(input, 2, rates[0], rates[1]);
+			Resampler resampler = new Resampler(rates[0], rates[1], 2);
+			float[] split = new float[whole.length];
+			int written = 0;
+			for(int frame = 0; frame < input.length / 2; )
+			{
+				int frames = Math.min(input.length / 2 - frame, random.nextInt(3000));
+				float[] block = new float[2 * resampler.getMaxOutputFrames(frames)];
+				int count = resampler.process(input, 2 * frame, frames, block, 0);
+				System.arraycopy(block, 0, split, 2 * written, 2 * count);
+				written += count;
+				frame += frames;
+			}
+			float[] block = new float[2 * resampler.getFlushFrames()];
+			int count = resampler.flush(block, 0);
+			System.arraycopy(block, 0, split, 2 * written, 2 * count);
+			assertEquals(whole.length, 2 * (written + count));
+			assertArrayEquals(rates[0] + " to " + rates[1], whole, split, 0);
+		}
+	}
+}
@@ -0,0 +1,39 @@
+package net.scarlettsystems.android.wavefactory;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SampleBufferTest
+{
+	@Test
+	public void read_matchesAcrossStorageForms()
+	{
+		short[] pcm = new short[3000];
+		Random random = new Random(3);
+		for(int c = 0; c < pcm.length; c++)
+		{
+			pcm[c] = (short)random.nextInt();
+		}
+		ShortBuffer direct = ByteBuffer.allocateDirect(2 * pcm.length).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+		direct.put(pcm);
+		direct.clear();
+		float[] expected = new float[2000];
+		float[] actual = new float[2000];
+		SampleBuffer.wrap(pcm).read(100, expected, 5, 1700);
+		SampleBuffer.wrap(direct).read(100, actual, 5, 1700);
+		assertArrayEquals(expected, actual, 0);
+		//Reads are absolute, so they leave the shared buffer alone
+		assertEquals(0, direct.position());
+
+		float[] floats = SampleBuffer.wrap(pcm).toFloatArray();
+		SampleBuffer.wrap(FloatBuffer.wrap(floats)).read(100, actual, 5, 1700);
+		assertArrayEquals(expected, actual, 0);
+	}
+}
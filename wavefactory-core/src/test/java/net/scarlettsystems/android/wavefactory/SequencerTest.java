@@ -0,0 +1,31 @@
+package net.scarlettsystems.android.wavefactory;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SequencerTest
+{
+	private static final int SAMPLE_RATE = 44100;
+
+	@Test
+	public void unboundedOscillator_playsUntilReleased()
+	{
+		Sequencer sequencer = new Sequencer(SAMPLE_RATE);
+		sequencer.setSaturation(MixBus.SATURATION_NONE);
+		Oscillator oscillator = new Oscillator(WaveFactory.WAVEFORM_SQUARE, 441f, SAMPLE_RATE);
+		oscillator.setBandLimited(false);
+		oscillator.setAmplitude(0.5f);
+		sequencer.trigger(100, oscillator, 1f);
+
+		float[] output = new float[3000];
+		sequencer.render(output, 0, output.length);
+		assertEquals(0f, output[99], 0);
+		assertEquals(0.5f, Math.abs(output[150]), 0);
+		assertEquals(1, sequencer.getActiveVoiceCount());
+
+		oscillator.release();
+		sequencer.render(output, 0, output.length);
+		assertTrue(sequencer.isIdle());
+	}
+}
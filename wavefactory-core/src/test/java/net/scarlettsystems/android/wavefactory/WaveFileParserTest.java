@@ -0,0 +1,38 @@
+package net.scarlettsystems.android.wavefactory;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+public class WaveFileParserTest
+{
+	@Test
+	public void emptyDataChunk_isEmpty()
+	{
+		//An empty data chunk followed by a LIST chunk, which must not be read as audio
+		ByteBuffer file = header(0);
+		file.putInt(0x5453494C).putInt(4).putInt(0x4F464E49);
+		WaveFileParser parser = new WaveFileParser(file.array());
+		assertEquals(0, parser.getDataLength());
+	}
+
+	@Test
+	public void unknownDataSize_isLengthUnknown()
+	{
+		ByteBuffer file = header(0xFFFFFFFF);
+		WaveFileParser parser = new WaveFileParser(file.array());
+		assertEquals(WaveFileParser.LENGTH_UNKNOWN, parser.getDataLength());
+	}
+
+	private static ByteBuffer header(int dataSize)
+	{
+		ByteBuffer file = ByteBuffer.allocate(56).order(ByteOrder.LITTLE_ENDIAN);
+		file.putInt(0x46464952).putInt(48).putInt(0x45564157);
+		file.putInt(0x20746D66).putInt(16).putShort((short)1).putShort((short)1).putInt(8000).putInt(16000).putShort((short)2).putShort((short)16);
+		file.putInt(0x61746164).putInt(dataSize);
+		return file;
+	}
+}
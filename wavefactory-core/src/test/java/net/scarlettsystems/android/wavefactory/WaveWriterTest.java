@@ -0,0 +1,103 @@
+package net.scarlettsystems.android.wavefactory;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Files written by {@link WaveWriter} must decode back to the samples written, to within the
+ * precision of the encoding.
+ */
+public class WaveWriterTest
+{
+	private static final int SAMPLE_RATE = 22050;
+	private static final int CHANNELS = 2;
+	private static final int FRAMES = 5001;
+
+	@Test
+	public void roundTrip_pcm16()
+	{
+		roundTrip(WaveWriter.ENCODING_PCM_16BIT, 1 / 32768f);
+	}
+
+	@Test
+	public void roundTrip_pcm24()
+	{
+		roundTrip(WaveWriter.ENCODING_PCM_24BIT, 1 / 8388608f);
+	}
+
+	@Test
+	public void roundTrip_float()
+	{
+		roundTrip(WaveWriter.ENCODING_FLOAT, 0);
+	}
+
+	@Test
+	public void stream_declaresUnknownLength() throws IOException
+	{
+		float[] samples = createSamples();
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		WaveWriter writer = new WaveWriter(stream, SAMPLE_RATE, CHANNELS, WaveWriter.ENCODING_PCM_16BIT);
+		writer.write(samples, 0, FRAMES);
+		writer.close();
+		WaveDecoder decoder = new WaveDecoder(new ByteArrayInputStream(stream.toByteArray()));
+		assertEquals(WaveDecoder.LENGTH_UNKNOWN, decoder.getFrameCount());
+		assertEquals(samples.length, decoder.readAll(WaveDecoder.CHANNELS_INTERLEAVED).length);
+	}
+
+	private static void roundTrip(int encoding, float tolerance)
+	{
+		float[] samples = createSamples();
+		try
+		{
+			File file = File.createTempFile("wavewriter", ".wav");
+			try
+			{
+				WaveWriter writer = new WaveWriter(file, SAMPLE_RATE, CHANNELS, encoding);
+				//Uneven writes, so samples span the writer's internal buffer
+				writer.write(samples, 0, 1000);
+				writer.write(samples, 2 * 1000, FRAMES - 1000);
+				writer.close();
+
+				FileInputStream stream = new FileInputStream(file);
+				try
+				{
+					WaveDecoder decoder = new WaveDecoder(stream);
+					assertEquals(SAMPLE_RATE, decoder.getSampleRate());
+					assertEquals(CHANNELS, decoder.getChannelCount());
+					assertEquals(FRAMES, decoder.getFrameCount());
+					assertArrayEquals(samples, decoder.readAll(WaveDecoder.CHANNELS_INTERLEAVED), tolerance);
+				}
+				finally
+				{
+					stream.close();
+				}
+			}
+			finally
+			{
+				file.delete();
+			}
+		}
+		catch (IOException e)
+		{
+			throw new AssertionError(e);
+		}
+	}
+
+	private static float[] createSamples()
+	{
+		float[] samples = new float[CHANNELS * FRAMES];
+		for(int c = 0; c < FRAMES; c++)
+		{
+			samples[2 * c] = (float)Math.sin(c * 0.01) * 0.9f;
+			samples[2 * c + 1] = (float)Math.cos(c * 0.003) * 0.5f;
+		}
+		return samples;
+	}
+}
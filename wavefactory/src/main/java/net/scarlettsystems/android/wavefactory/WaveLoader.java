@@ -1,147 +1,777 @@
 package net.scarlettsystems.android.wavefactory;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.pm.PackageManager;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.Configuration;
+import android.support.annotation.IntDef;
 import android.support.annotation.RawRes;
-import android.util.SparseArray;
+import android.util.Log;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.io.InputStream;
+import java.lang.annotation.Retention;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.annotation.RetentionPolicy.SOURCE;
 
 @SuppressWarnings("unused, WeakerAccess")
 public class WaveLoader
 {
-	private static WaveLoader INSTANCE = null;
-	private SparseArray<float[]> mLoadedSounds;
+	@Retention(SOURCE)
+	@IntDef({STORAGE_FLOAT, STORAGE_PCM16, STORAGE_PCM16_DIRECT})
+	public @interface StorageMode {}
+	/**
+	 * Keep decoded sounds as float samples, ready to use without conversion. Sounds loaded from a
+	 * {@link DiskWaveCache} are mapped float samples instead of arrays.
+	 */
+	public static final int STORAGE_FLOAT = 0;
+	/**
+	 * Keep decoded sounds as 16-bit PCM on the Java heap, in half the memory of float samples.
+	 * Sounds in other formats, or mixed down from several channels, are kept as float.
+	 */
+	public static final int STORAGE_PCM16 = 1;
+	/**
+	 * Keep decoded sounds as 16-bit PCM in direct buffers, outside the Java heap. Sounds in other
+	 * formats, or mixed down from several channels, are kept as float.
+	 */
+	public static final int STORAGE_PCM16_DIRECT = 2;
 
-	private WaveLoader()
+	/**
+	 * Target sample rate that keeps every sound at the rate it was recorded at.
+	 */
+	public static final int SAMPLE_RATE_ORIGINAL = 0;
+
+	private volatile WaveCache mLoadedSounds;
+	private volatile int mStorageMode = STORAGE_FLOAT;
+	private volatile int mChannelMode = WaveDecoder.CHANNELS_INTERLEAVED;
+	private volatile int mTargetSampleRate = SAMPLE_RATE_ORIGINAL;
+	private volatile DiskWaveCache mDiskCache;
+	//Fetched once, since it cannot change while the app is running
+	private volatile long mLastUpdateTime = -1;
+	private final ConcurrentHashMap<Integer, DecodeTask> mInFlight = new ConcurrentHashMap<>();
+	private final ExecutorService mDecoder;
+
+	private static final String TAG = "WaveLoader";
+	private static final int MAX_DECODE_THREADS = 4;
+	//Share of the heap that decoded sounds may occupy by default
+	private static final int DEFAULT_CACHE_HEAP_DIVISOR = 8;
+	//Part of every disk cache key; bump it whenever decoded sounds change, to ignore old entries
+	private static final int DECODER_VERSION = 1;
+
+	private static final Runnable NO_OP = new Runnable()
 	{
-		mLoadedSounds = new SparseArray<>();
-	}
+		@Override
+		public void run(){}
+	};
 
-	public static WaveLoader getInstance()
+	private final ComponentCallbacks2 mMemoryCallbacks = new ComponentCallbacks2()
 	{
-		if(INSTANCE == null)
+		@Override
+		public void onTrimMemory(int level)
 		{
-			INSTANCE = new WaveLoader();
+			WaveLoader.this.onTrimMemory(level);
 		}
-		return INSTANCE;
+
+		@Override
+		public void onLowMemory()
+		{
+			WaveLoader.this.onTrimMemory(TRIM_MEMORY_COMPLETE);
+		}
+
+		@Override
+		public void onConfigurationChanged(Configuration newConfig){}
+	};
+
+	/**
+	 * Listener notified on a decoder thread when a preloaded sound is ready.
+	 */
+	public interface OnLoadListener
+	{
+		void onLoaded(@RawRes int resId, SampleBuffer samples);
+	}
+
+	private static class InstanceHolder
+	{
+		static final WaveLoader INSTANCE = new WaveLoader();
+	}
+
+	private WaveLoader()
+	{
+		mLoadedSounds = new LruWaveCache(Runtime.getRuntime().maxMemory() / DEFAULT_CACHE_HEAP_DIVISOR);
+		WaveMetrics.setSoundCache(mLoadedSounds);
+		int threads = Math.max(1, Math.min(MAX_DECODE_THREADS, Runtime.getRuntime().availableProcessors() - 1));
+		ThreadPoolExecutor decoder = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+		{
+			private final AtomicInteger mCount = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, "WaveLoader-decode-" + mCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		decoder.allowCoreThreadTimeOut(true);
+		mDecoder = decoder;
 	}
 
+	public static WaveLoader getInstance()
+	{
+		return InstanceHolder.INSTANCE;
+	}
 
 	/**
 	 * Mix a sound into another sound via addition and hyperbolic tangent compression.
-	 * If the full length of the sample cannot fit into the destination at the specified offset,
-	 * the sample will be truncated.
 	 *
 	 * @param sound sound sample to mix
 	 * @param destination destination array
 	 * @param offset offset index from the start at which to start writing the sound sample
+	 * @see WaveConversion#mixWaves(float[], float[], int)
 	 */
 	public static void mixWaves(float[] sound, float[] destination, int offset)
 	{
-		int writeAbleSamples = Math.min(sound.length, destination.length - offset);
+		WaveConversion.mixWaves(sound, destination, offset);
+	}
+
+	/**
+	 * Mix a sound into another sound via addition and hyperbolic tangent compression, converting
+	 * it to float a block at a time.
+	 *
+	 * @param sound sound sample to mix
+	 * @param destination destination array
+	 * @param offset offset index from the start at which to start writing the sound sample
+	 * @see WaveConversion#mixWaves(SampleBuffer, float[], int)
+	 */
+	public static void mixWaves(SampleBuffer sound, float[] destination, int offset)
+	{
+		WaveConversion.mixWaves(sound, destination, offset);
+	}
 
-		for(int c = 0; c < writeAbleSamples; c++)
+	/**
+	 * Get the decoded samples of a wave resource as a float array, decoding it on the calling
+	 * thread if it is not already loaded. If another thread is already decoding the same resource,
+	 * this waits for that result instead of decoding it twice. Safe to call from any thread.
+	 *
+	 * With a 16-bit {@link StorageMode}, or for a sound mapped from the disk cache, each call
+	 * copies the sound into a new array; use {@link #getSamples(int, Context)} to read it without
+	 * the copy.
+	 *
+	 * @param resId raw resource ID of a wave file
+	 * @param context context to open the resource with
+	 * @return float array of audio, or an empty array if the resource could not be decoded
+	 */
+	public float[] getWaveFromResource(@RawRes int resId, Context context)
+	{
+		return getSamples(resId, context).toFloatArray();
+	}
+
+	/**
+	 * Get the decoded samples of a wave resource in the form they are stored in, decoding it on
+	 * the calling thread if it is not already loaded. If another thread is already decoding the
+	 * same resource, this waits for that result instead of decoding it twice. Safe to call from
+	 * any thread.
+	 *
+	 * @param resId raw resource ID of a wave file
+	 * @param context context to open the resource with
+	 * @return decoded samples, which are empty if the resource could not be decoded
+	 */
+	public SampleBuffer getSamples(@RawRes int resId, Context context)
+	{
+		SampleBuffer result = lookup(resId);
+		if(result != null)
 		{
-			destination[c + offset] = (float)Math.tanh(sound[c] + destination[c + offset]);
+			return result;
 		}
+		DecodeTask task = getDecodeTask(resId, context);
+		//Runs the decode here unless another thread has already started it
+		task.run();
+		return awaitDecode(task);
 	}
 
-	@SuppressWarnings("ResultOfMethodCallIgnored")
-	public float[] getWaveFromResource(@RawRes int resId, Context context)
+	/**
+	 * Decode a wave resource in the background. Concurrent requests for the same resource share
+	 * one decode.
+	 *
+	 * @param resId raw resource ID of a wave file
+	 * @param context context to open the resource with
+	 * @return future yielding the decoded samples, which are empty if decoding failed
+	 */
+	public Future<SampleBuffer> preload(@RawRes int resId, Context context)
+	{
+		SampleBuffer result = lookup(resId);
+		if(result != null)
+		{
+			FutureTask<SampleBuffer> done = new FutureTask<>(NO_OP, result);
+			done.run();
+			return done;
+		}
+		DecodeTask task = getDecodeTask(resId, context);
+		mDecoder.execute(task);
+		return task;
+	}
+
+	/**
+	 * Decode several wave resources in the background on a bounded pool of decoder threads.
+	 *
+	 * @param context context to open the resources with
+	 * @param resIds raw resource IDs of wave files
+	 * @return futures yielding the decoded samples, in the order of {@code resIds}
+	 */
+	public List<Future<SampleBuffer>> preload(Context context, @RawRes int... resIds)
+	{
+		List<Future<SampleBuffer>> futures = new ArrayList<>(resIds.length);
+		for(int resId : resIds)
+		{
+			futures.add(preload(resId, context));
+		}
+		return futures;
+	}
+
+	/**
+	 * Decode several wave resources in the background, notifying a listener as each one is ready.
+	 *
+	 * @param context context to open the resources with
+	 * @param listener listener called on a decoder thread for each resource
+	 * @param resIds raw resource IDs of wave files
+	 */
+	public void preload(Context context, OnLoadListener listener, @RawRes int... resIds)
 	{
-		if(mLoadedSounds.indexOfKey(resId)<0)
+		for(int resId : resIds)
+		{
+			SampleBuffer result = lookup(resId);
+			if(result != null)
+			{
+				listener.onLoaded(resId, result);
+				continue;
+			}
+			DecodeTask task = getDecodeTask(resId, context);
+			task.addListener(listener);
+			mDecoder.execute(task);
+		}
+	}
+
+	private SampleBuffer lookup(int resId)
+	{
+		SampleBuffer result = mLoadedSounds.get(resId);
+		if(WaveMetrics.isEnabled()){WaveMetrics.recordCacheLookup(resId, result != null);}
+		return result;
+	}
+
+	private DecodeTask getDecodeTask(int resId, Context context)
+	{
+		DecodeTask task = mInFlight.get(resId);
+		if(task != null)
+		{
+			return task;
+		}
+		Context appContext = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+		task = new DecodeTask(resId, appContext);
+		DecodeTask existing = mInFlight.putIfAbsent(resId, task);
+		return existing != null ? existing : task;
+	}
+
+	private static SampleBuffer awaitDecode(Future<SampleBuffer> task)
+	{
+		boolean interrupted = false;
+		try
+		{
+			while(true)
+			{
+				try
+				{
+					return task.get();
+				}
+				catch (InterruptedException e)
+				{
+					interrupted = true;
+				}
+				catch (ExecutionException e)
+				{
+					e.printStackTrace();
+					return SampleBuffer.wrap(new float[]{});
+				}
+			}
+		}
+		finally
+		{
+			if(interrupted){Thread.currentThread().interrupt();}
+		}
+	}
+
+	/**
+	 * Map a resource from the disk cache, or decode it and store it there.
+	 *
+	 * @return samples, or null if the resource could not be decoded
+	 */
+	private SampleBuffer loadResource(int resId, Context context)
+	{
+		int storageMode = mStorageMode;
+		int channelMode = mChannelMode;
+		int sampleRate = mTargetSampleRate;
+		DiskWaveCache diskCache = mDiskCache;
+		String diskKey = diskCache == null ? null : getDiskKey(resId, context, storageMode, channelMode, sampleRate);
+		if(diskKey != null)
+		{
+			SampleBuffer stored = diskCache.get(diskKey);
+			if(stored != null)
+			{
+				//Kept mapped in every storage mode; only getWaveFromResource needs an array
+				return stored;
+			}
+		}
+
+		boolean timed = WaveMetrics.isEnabled();
+		long start = timed ? System.nanoTime() : 0;
+		SampleBuffer result = decodeResource(resId, context, storageMode, channelMode, sampleRate);
+		boolean success = result != null;
+		if(timed){WaveMetrics.recordDecode(resId, success, success ? result.getSizeBytes() : 0, start);}
+		if(!success){return null;}
+		if(diskKey != null)
 		{
-			float[] result;
 			try
 			{
-				byte[] fileBytes;
-				InputStream inStream = context.getResources().openRawResource(resId);
-				int length = inStream.available();
-				fileBytes = new byte[length];
-				inStream.read(fileBytes);
-				inStream.close();
-				WaveFileParser info = new WaveFileParser(fileBytes);
-				int start = info.getDataStartIndex();
-				int len = (int)info.getDataLength();
-				byte[] dataBytes = Arrays.copyOfRange(fileBytes, start, len);
-				result = pcmToFloat(dataBytes);
+				diskCache.put(diskKey, result);
 			}
-			catch (Exception e)
+			catch (IOException e)
 			{
 				e.printStackTrace();
-				result = new float[]{};
 			}
-			mLoadedSounds.put(resId, result);
 		}
-		return mLoadedSounds.get(resId);
+		return result;
 	}
 
 	/**
-	 * Convert a PCM byte array into a float array
+	 * Resources can only change when the app is updated, so the update time stands in for a hash
+	 * of their contents.
 	 *
-	 * @param bytes byte array of PCM audio
-	 * @return float array of audio
+	 * @return disk cache key of a resource decoded with the given settings, or null if the app's
+	 * update time is not available
 	 */
-	public static float[] pcmToFloat(byte[] bytes)
+	private String getDiskKey(int resId, Context context, int storageMode, int channelMode, int sampleRate)
 	{
-		return toFloat(toShort(bytes));
+		long lastUpdateTime = mLastUpdateTime;
+		if(lastUpdateTime < 0)
+		{
+			try
+			{
+				lastUpdateTime = context.getPackageManager().getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+			}
+			catch (PackageManager.NameNotFoundException e)
+			{
+				return null;
+			}
+			mLastUpdateTime = lastUpdateTime;
+		}
+		return "res/" + DECODER_VERSION + "/" + context.getPackageName() + "/" + resId + "/" + lastUpdateTime
+				+ "/" + storageMode + "/" + channelMode + "/" + sampleRate;
 	}
 
 	/**
-	 * Convert a float audio array to a PCM byte array
+	 * @return decoded samples, or null if the resource could not be read or decoded
+	 */
+	private static SampleBuffer decodeResource(int resId, Context context, @StorageMode int storageMode, @WaveDecoder.ChannelMode int channelMode, int sampleRate)
+	{
+		SampleBuffer result;
+		InputStream inStream = context.getResources().openRawResource(resId);
+		try
+		{
+			WaveFileParser info = new WaveFileParser(inStream);
+			boolean convertRate = sampleRate != SAMPLE_RATE_ORIGINAL && sampleRate != info.getSampleRate();
+			if(convertRate && !Resampler.isSupported((int)info.getSampleRate(), sampleRate))
+			{
+				Log.w(TAG, "Cannot convert resource " + resId + " from " + info.getSampleRate() + " Hz to " + sampleRate + " Hz; keeping its original rate.");
+				convertRate = false;
+			}
+			//16-bit PCM can be stored as read, unless its channels have to be mixed or its rate converted
+			boolean asRead = info.getFormat() == WaveFileParser.FMT_PCM && info.getBitsPerSample() == 16 && !convertRate
+					&& (channelMode == WaveDecoder.CHANNELS_INTERLEAVED || info.getChannelCount() == 1);
+			if(asRead && storageMode == STORAGE_PCM16)
+			{
+				result = SampleBuffer.wrap(WaveConversion.readPcm16(info.getDataChannel(), info.getDataLength()));
+			}
+			else if(asRead && storageMode == STORAGE_PCM16_DIRECT)
+			{
+				result = SampleBuffer.wrap(WaveConversion.readPcm16Direct(info.getDataChannel(), info.getDataLength()));
+			}
+			else if(convertRate)
+			{
+				result = SampleBuffer.wrap(new WaveDecoder(info).readAll(channelMode, sampleRate));
+			}
+			else
+			{
+				result = SampleBuffer.wrap(new WaveDecoder(info).readAll(channelMode));
+			}
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			result = null;
+		}
+		finally
+		{
+			closeQuietly(inStream);
+		}
+		return result;
+	}
+
+	/**
+	 * Choose how sounds decoded from now on are kept in memory. Sounds that are already loaded
+	 * keep their current form until they are evicted.
 	 *
-	 * @param floats float array of audio
-	 * @return byte array of PCM audio
+	 * @param storageMode storage mode, {@link #STORAGE_FLOAT} by default
 	 */
-	public static byte[] floatToPcm(float[] floats)
+	public void setStorageMode(@StorageMode int storageMode)
 	{
-		return fromShort(fromFloat(floats));
+		if(storageMode != STORAGE_FLOAT && storageMode != STORAGE_PCM16 && storageMode != STORAGE_PCM16_DIRECT)
+		{
+			throw new IllegalArgumentException("Invalid storage mode.");
+		}
+		mStorageMode = storageMode;
 	}
 
-	private static float[] toFloat(short[] PCMs)
+	public @StorageMode int getStorageMode()
+	{
+		return mStorageMode;
+	}
+
+	/**
+	 * Choose whether multichannel sounds decoded from now on keep their channels interleaved, or
+	 * are mixed down to mono. Sounds that are already loaded are not affected.
+	 *
+	 * @param channelMode channel mode, {@link WaveDecoder#CHANNELS_INTERLEAVED} by default
+	 */
+	public void setChannelMode(@WaveDecoder.ChannelMode int channelMode)
 	{
-		float[] floaters = new float[PCMs.length];
-		for (int i = 0; i < PCMs.length; i++)
+		if(channelMode != WaveDecoder.CHANNELS_INTERLEAVED && channelMode != WaveDecoder.CHANNELS_MIXDOWN)
 		{
-			floaters[i] = (float)PCMs[i]/32768.0f;
+			throw new IllegalArgumentException("Invalid channel mode.");
 		}
-		return floaters;
+		mChannelMode = channelMode;
 	}
 
-	private static short[] toShort(byte[] bytes)
+	public @WaveDecoder.ChannelMode int getChannelMode()
 	{
-		short[] out = new short[bytes.length / 2];
-		ByteBuffer bb = ByteBuffer.wrap(bytes);
-		bb.order(ByteOrder.LITTLE_ENDIAN);
-		for (int i = 0; i < out.length; i++)
+		return mChannelMode;
+	}
+
+	/**
+	 * Choose the sample rate that sounds decoded from now on are converted to, such as the output
+	 * rate of the audio sink. Sounds recorded at another rate are resampled while they are decoded
+	 * and cached at the target rate, as float samples whatever the {@link StorageMode}. Sounds
+	 * that are already loaded are not affected. A sound whose rate cannot be converted to the
+	 * target, as {@link Resampler#isSupported(int, int)} tells, keeps its original rate and a
+	 * warning is logged.
+	 *
+	 * @param sampleRate target sample rate in Hz, or {@link #SAMPLE_RATE_ORIGINAL} by default
+	 * @see Resampler
+	 */
+	public void setTargetSampleRate(int sampleRate)
+	{
+		if(sampleRate < 0)
 		{
-			out[i] = bb.getShort();
+			throw new IllegalArgumentException("Sampling rate must not be negative.");
 		}
-		return out;
+		mTargetSampleRate = sampleRate;
 	}
 
-	private static short[] fromFloat(float[] floats)
+	public int getTargetSampleRate()
+	{
+		return mTargetSampleRate;
+	}
+
+	/**
+	 * Replace the cache that holds decoded sounds. Sounds in the previous cache are not carried
+	 * over. The default is an {@link LruWaveCache} limited to an eighth of the maximum heap size.
+	 *
+	 * @param cache cache for decoded sounds
+	 */
+	public void setCache(WaveCache cache)
 	{
-		short[] shorts = new short[floats.length];
-		for (int i = 0; i < floats.length; i++)
+		if(cache == null)
 		{
-			shorts[i] = (short)(floats[i] * 32768.0f);
+			throw new IllegalArgumentException("Cache must not be null.");
 		}
-		return shorts;
+		mLoadedSounds = cache;
+		WaveMetrics.setSoundCache(cache);
+	}
+
+	public WaveCache getCache()
+	{
+		return mLoadedSounds;
+	}
+
+	/**
+	 * Keep decoded sounds on disk, so that later runs map them instead of decoding them again.
+	 * Entries are keyed by resource, decode settings and the time the app was last updated, so an
+	 * app update decodes every sound again. Old entries are not deleted automatically; call
+	 * {@link DiskWaveCache#trim(long)} to bound the cache. Sounds loaded from the disk cache stay
+	 * mapped in every storage mode, so {@link #getSamples(int, Context)} reads them in place, while
+	 * {@link #getWaveFromResource(int, Context)} copies them into a new array on each call.
+	 *
+	 * <pre>loader.setDiskCache(new DiskWaveCache(new File(context.getCacheDir(), "waves")));</pre>
+	 *
+	 * @param cache disk cache for decoded sounds, or null to decode every run, by default
+	 */
+	public void setDiskCache(DiskWaveCache cache)
+	{
+		mDiskCache = cache;
+	}
+
+	public DiskWaveCache getDiskCache()
+	{
+		return mDiskCache;
+	}
+
+	/**
+	 * Keep a sound in memory regardless of the cache budget, until it is unpinned.
+	 *
+	 * @param resId raw resource ID of the sound
+	 */
+	public void pin(@RawRes int resId)
+	{
+		mLoadedSounds.pin(resId);
+	}
+
+	/**
+	 * @param resId raw resource ID of the sound
+	 */
+	public void unpin(@RawRes int resId)
+	{
+		mLoadedSounds.unpin(resId);
 	}
 
-	private static byte[] fromShort(short[] shorts)
+	/**
+	 * Drop a decoded sound from memory. It will be decoded again when next requested.
+	 *
+	 * @param resId raw resource ID of the sound
+	 * @return true if the sound was loaded
+	 */
+	public boolean evict(@RawRes int resId)
 	{
-		byte[] bytes = new byte[shorts.length * 2];
-		ByteBuffer bb = ByteBuffer.wrap(bytes);
-		bb.order(ByteOrder.LITTLE_ENDIAN);
-		for(short value : shorts)
+		return mLoadedSounds.evict(resId);
+	}
+
+	/**
+	 * Drop unpinned sounds until the decoded sounds occupy at most {@code maxBytes}.
+	 *
+	 * @param maxBytes size to shrink to in bytes
+	 */
+	public void trim(long maxBytes)
+	{
+		mLoadedSounds.trim(maxBytes);
+	}
+
+	/**
+	 * Shrink the cache in response to a system memory warning, as delivered to
+	 * {@link ComponentCallbacks2#onTrimMemory(int)}. Higher levels release more.
+	 *
+	 * @param level trim level from {@link ComponentCallbacks2}
+	 */
+	public void onTrimMemory(int level)
+	{
+		long capacity = mLoadedSounds.getCapacityBytes();
+		if(level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE)
 		{
-			bb.putShort(value);
+			trim(0);
 		}
-		return bytes;
+		else if(level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE)
+		{
+			trim(capacity / 4);
+		}
+		else if(level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW)
+		{
+			trim(capacity / 2);
+		}
+	}
+
+	/**
+	 * Have the system's memory warnings trim the cache automatically.
+	 *
+	 * @param context any context; callbacks are registered on the application context
+	 */
+	public void registerMemoryCallbacks(Context context)
+	{
+		context.getApplicationContext().registerComponentCallbacks(mMemoryCallbacks);
+	}
+
+	/**
+	 * @param context context previously passed to {@link #registerMemoryCallbacks(Context)}
+	 */
+	public void unregisterMemoryCallbacks(Context context)
+	{
+		context.getApplicationContext().unregisterComponentCallbacks(mMemoryCallbacks);
+	}
+
+	/**
+	 * Open a raw resource as a memory-mapped source that decodes samples on demand, instead of
+	 * loading it into memory. This suits long recordings. The resource must be stored uncompressed
+	 * in the APK, which is the default for wave files.
+	 *
+	 * @param resId raw resource ID of a wave file
+	 * @param context context to open the resource with
+	 * @return mapped wave source
+	 * @throws IOException if the resource cannot be mapped
+	 */
+	public static MappedWaveSource openWaveSource(@RawRes int resId, Context context) throws IOException
+	{
+		AssetFileDescriptor descriptor = context.getResources().openRawResourceFd(resId);
+		if(descriptor == null)
+		{
+			throw new IOException("Resource is compressed and cannot be mapped.");
+		}
+		try
+		{
+			return new MappedWaveSource(descriptor.getFileDescriptor(), descriptor.getStartOffset(), descriptor.getLength());
+		}
+		finally
+		{
+			closeQuietly(descriptor);
+		}
+	}
+
+	/**
+	 * Decode of one resource, shared by every caller that requests it while it is in flight.
+	 * Running it more than once has no effect, so whichever thread gets there first decodes.
+	 */
+	private class DecodeTask extends FutureTask<SampleBuffer>
+	{
+		private final int mResId;
+		private final List<OnLoadListener> mListeners = new ArrayList<>(1);
+
+		DecodeTask(final int resId, final Context context)
+		{
+			super(new Callable<SampleBuffer>()
+			{
+				@Override
+				public SampleBuffer call()
+				{
+					//The sound may have been cached since the task was created
+					SampleBuffer result = mLoadedSounds.get(resId);
+					if(result == null)
+					{
+						result = loadResource(resId, context);
+						if(result == null)
+						{
+							//Failed decodes load as silence, and are retried next time rather than stored
+							return SampleBuffer.wrap(new float[]{});
+						}
+						mLoadedSounds.put(resId, result);
+					}
+					return result;
+				}
+			});
+			mResId = resId;
+		}
+
+		void addListener(OnLoadListener listener)
+		{
+			synchronized(mListeners)
+			{
+				if(!isDone())
+				{
+					mListeners.add(listener);
+					return;
+				}
+			}
+			listener.onLoaded(mResId, awaitDecode(this));
+		}
+
+		@Override
+		protected void done()
+		{
+			mInFlight.remove(mResId, this);
+			List<OnLoadListener> listeners;
+			synchronized(mListeners)
+			{
+				listeners = new ArrayList<>(mListeners);
+				mListeners.clear();
+			}
+			if(listeners.isEmpty()){return;}
+			SampleBuffer result = awaitDecode(this);
+			for(OnLoadListener listener : listeners)
+			{
+				listener.onLoaded(mResId, result);
+			}
+		}
+	}
+
+	private static void closeQuietly(Closeable closeable)
+	{
+		try
+		{
+			closeable.close();
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Convert a PCM byte array into a float array
+	 *
+	 * @param bytes byte array of PCM audio
+	 * @return float array of audio
+	 * @see WaveConversion#pcmToFloat(byte[])
+	 */
+	public static float[] pcmToFloat(byte[] bytes)
+	{
+		return WaveConversion.pcmToFloat(bytes);
+	}
+
+	/**
+	 * Convert a float audio array to a PCM byte array
+	 *
+	 * @param floats float array of audio
+	 * @return byte array of PCM audio
+	 * @see WaveConversion#floatToPcm(float[])
+	 */
+	public static byte[] floatToPcm(float[] floats)
+	{
+		return WaveConversion.floatToPcm(floats);
+	}
+
+	/**
+	 * Convert a float audio array to PCM in a heap or direct buffer.
+	 *
+	 * @param floats float array of audio
+	 * @param dst destination buffer
+	 * @see WaveConversion#floatToPcm(float[], ByteBuffer)
+	 */
+	public static void floatToPcm(float[] floats, ByteBuffer dst)
+	{
+		WaveConversion.floatToPcm(floats, dst);
+	}
+
+	/**
+	 * Convert part of a float audio array to PCM in a heap or direct buffer.
+	 *
+	 * @param floats float array of audio
+	 * @param offset index of the first sample to convert
+	 * @param length number of samples to convert
+	 * @param dst destination buffer
+	 * @see WaveConversion#floatToPcm(float[], int, int, ByteBuffer)
+	 */
+	public static void floatToPcm(float[] floats, int offset, int length, ByteBuffer dst)
+	{
+		WaveConversion.floatToPcm(floats, offset, length, dst);
 	}
 }